@@ -0,0 +1,33 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the whole-matrix algorithms: AllConnectedComponents and SubmarineCounter.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentsBenchmark {
+
+    @Benchmark
+    public HashSet<HashSet<Index>> allConnectedComponents(LegacyGridState state) {
+        return new AllConnectedComponents().getAllConnectedComponents(new TraversableMatrix(state.binary));
+    }
+
+    @Benchmark
+    public int submarineCounter(LegacyGridState state) {
+        return new SubmarineCounter().countSubmarines(new TraversableMatrix(state.binary));
+    }
+}
@@ -0,0 +1,29 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * GridState holds matrices from 10x10 to 4000x4000 cells, for the searches that scale to them.
+ */
+@State(Scope.Benchmark)
+public class GridState extends MatrixState {
+
+    @Param({"10", "100", "1000", "4000"})
+    public int size;
+
+    // The fraction of cells with value 1 (the others are 0 in the binary matrix, 2..9 in the weighted one)
+    @Param({"0.3", "0.6", "0.9"})
+    public double density;
+
+    @Param({"42"})
+    public long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate(size, density, seed);
+    }
+}
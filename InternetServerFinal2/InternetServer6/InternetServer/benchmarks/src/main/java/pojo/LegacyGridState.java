@@ -0,0 +1,31 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * LegacyGridState holds matrices of up to 40x40 cells, for DfsVisit, DfsVisitTls and the component algorithms built on them:
+ * their working Stack is searched with contains() on every push, so a traversal is quadratic in the cells of its component
+ * and larger matrices take minutes per operation, although AllConnectedComponents runs one traversal per component.
+ */
+@State(Scope.Benchmark)
+public class LegacyGridState extends MatrixState {
+
+    @Param({"10", "20", "40"})
+    public int size;
+
+    // The fraction of cells with value 1 (the others are 0 in the binary matrix, 2..9 in the weighted one)
+    @Param({"0.3", "0.6", "0.9"})
+    public double density;
+
+    @Param({"42"})
+    public long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate(size, density, seed);
+    }
+}
@@ -0,0 +1,56 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ComputePool;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the lightest path engines: the original Dijkstra, WeightAwareDijkstra and DeltaSteppingDijkstra,
+ * all answering the same corner to corner query on the weighted matrix.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LightestPathBenchmark {
+
+    @Benchmark
+    public HashSet<List<Node<Index>>> dijkstra(PathGridState state) {
+        return new Dijkstra().findLightestPaths(new TraversableMatrix(state.weighted), state.source, state.destination);
+    }
+
+    @Benchmark
+    public HashSet<List<Node<Index>>> weightAwareDijkstra(PathGridState state) {
+        return new WeightAwareDijkstra().findLightestPaths(new TraversableMatrix(state.weighted), state.source, state.destination);
+    }
+
+    @Benchmark
+    public HashSet<List<Node<Index>>> deltaSteppingDijkstra(PathGridState state) {
+        return new DeltaSteppingDijkstra(ComputePool.get()).findLightestPaths(new TraversableMatrix(state.weighted), state.source, state.destination);
+    }
+
+    /**
+     * The search of WeightAwareDijkstra without the enumeration of the paths, which is the part that scales to large matrices.
+     */
+    @Benchmark
+    public PathDag weightAwareDijkstraDistances(GridState state) {
+        WeightedGrid grid = state.weighted.getWeightedGrid();
+        return new WeightAwareDijkstra().computeDistances(grid, grid.idOf(state.source), grid.idOf(state.destination));
+    }
+
+    @Benchmark
+    public PathDag deltaSteppingDijkstraDistances(GridState state) {
+        WeightedGrid grid = state.weighted.getWeightedGrid();
+        return new DeltaSteppingDijkstra(ComputePool.get()).computeDistances(grid, grid.idOf(state.source), grid.idOf(state.destination));
+    }
+}
@@ -0,0 +1,72 @@
+package pojo;
+
+import java.util.Random;
+
+/**
+ * MatrixState is the base of the benchmark states: the random square matrices of one trial.
+ * The matrices are generated from the size, density and seed parameters of the state,
+ * so two runs with the same parameters measure the same inputs.
+ */
+public abstract class MatrixState {
+
+    // A matrix of 0 and 1 cells, for the traversals and the connected components
+    Matrix binary;
+
+    // A matrix of 1..9 cells, for the lightest paths
+    Matrix weighted;
+
+    // The paths go from corner to corner
+    Index source;
+    Index destination;
+
+    /**
+     * Generates the matrices and the source and destination cells.
+     * @param size    The side of the matrices.
+     * @param density The probability of a cell to be 1.
+     * @param seed    The seed of the random generator.
+     */
+    void generate(int size, double density, long seed) {
+        binary = binaryMatrix(size, density, seed);
+        weighted = weightedMatrix(size, density, seed);
+        source = new Index(0, 0);
+        destination = new Index(size - 1, size - 1);
+    }
+
+    /**
+     * Generates a square matrix of 0 and 1 cells whose corners are 1, so the paths can go from corner to corner.
+     * @param size    The side of the matrix.
+     * @param density The probability of a cell to be 1.
+     * @param seed    The seed of the random generator.
+     * @return The matrix.
+     */
+    static Matrix binaryMatrix(int size, double density, long seed) {
+        Random random = new Random(seed);
+        int[][] cells = new int[size][size];
+        for (int[] row : cells) {
+            for (int j = 0; j < size; j++) {
+                row[j] = random.nextDouble() < density ? 1 : 0;
+            }
+        }
+        cells[0][0] = 1;
+        cells[size - 1][size - 1] = 1;
+        return new Matrix(cells);
+    }
+
+    /**
+     * Generates a square matrix of 1..9 cells.
+     * @param size    The side of the matrix.
+     * @param density The probability of a cell to be 1, the other cells are 2..9.
+     * @param seed    The seed of the random generator.
+     * @return The matrix.
+     */
+    static Matrix weightedMatrix(int size, double density, long seed) {
+        Random random = new Random(seed);
+        int[][] cells = new int[size][size];
+        for (int[] row : cells) {
+            for (int j = 0; j < size; j++) {
+                row[j] = random.nextDouble() < density ? 1 : 2 + random.nextInt(8);
+            }
+        }
+        return new Matrix(cells);
+    }
+}
@@ -0,0 +1,30 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PathGridState holds matrices of up to 10x10 cells, for the queries that return every shortest or lightest path:
+ * the number of such paths grows exponentially with the distance, so larger matrices do not fit in memory.
+ */
+@State(Scope.Benchmark)
+public class PathGridState extends MatrixState {
+
+    @Param({"4", "7", "10"})
+    public int size;
+
+    // The fraction of cells with value 1 (the others are 0 in the binary matrix, 2..9 in the weighted one)
+    @Param({"0.3", "0.5"})
+    public double density;
+
+    @Param({"42"})
+    public long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate(size, density, seed);
+    }
+}
@@ -0,0 +1,70 @@
+package pojo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ComputePool;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the single-source traversals: DfsVisit, DfsVisitTls, BfsTls and ParallelBfs.
+ * Every invocation uses new algorithm and TraversableMatrix objects, like a request to the server does.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+
+    @Benchmark
+    public Set<Index> dfsVisitConnectedComponent(LegacyGridState state) {
+        TraversableMatrix traversable = new TraversableMatrix(state.binary);
+        traversable.setSource(state.source);
+        return new DfsVisit<Index>().traverse(traversable, true);
+    }
+
+    @Benchmark
+    public Set<Index> dfsVisitTlsConnectedComponent(LegacyGridState state) {
+        TraversableMatrix traversable = new TraversableMatrix(state.binary);
+        traversable.setSource(state.source);
+        return new DfsVisitTls<Index>().traverse(traversable, true);
+    }
+
+    @Benchmark
+    public Set<Index> dfsVisitTlsAllNeighbors(LegacyGridState state) {
+        TraversableMatrix traversable = new TraversableMatrix(state.binary);
+        traversable.setSource(state.source);
+        return new DfsVisitTls<Index>().traverse(traversable, false);
+    }
+
+    @Benchmark
+    public List<List<Node<Index>>> bfsTls(PathGridState state) {
+        TraversableMatrix traversable = new TraversableMatrix(state.binary);
+        traversable.setSource(state.source);
+        return new BfsTls<Index>().traverse(traversable, state.source, state.destination);
+    }
+
+    @Benchmark
+    public List<List<Node<Index>>> parallelBfs(PathGridState state) {
+        TraversableMatrix traversable = new TraversableMatrix(state.binary);
+        traversable.setSource(state.source);
+        return new ParallelBfs(ComputePool.get()).traverse(traversable, state.source, state.destination);
+    }
+
+    /**
+     * The search of ParallelBfs without the enumeration of the paths, which is the part that scales to large matrices.
+     */
+    @Benchmark
+    public PathDag parallelBfsLevels(GridState state) {
+        WeightedGrid grid = state.binary.getWeightedGrid();
+        return new ParallelBfs(ComputePool.get()).computeLevels(grid, grid.idOf(state.source), grid.idOf(state.destination));
+    }
+}
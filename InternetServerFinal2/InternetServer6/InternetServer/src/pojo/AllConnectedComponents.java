@@ -13,8 +13,9 @@ public class AllConnectedComponents implements Serializable {
     /*
     *
     1. Initialize an empty HashSet called allConnectedComponents to store the connected components.
-    2. Get a list of all traversable indexes in the TraversableMatrix.
-    3. Iterate over each index in the list.
+    2. Get a list of all traversable indexes in the TraversableMatrix: the cells that are not 0.
+    3. Iterate over each index in the list, skipping the indexes of the components already found,
+       so the DFS runs once per component and the work grows with the cells that are not 0.
     4. Set the current index as the source in the TraversableMatrix.
     5. Perform a depth-first search (DFS) traversal using the DfsVisitTls algorithm on the TraversableMatrix, considering diagonal neighbors as valid paths.
     6. Retrieve the set of nodes in the connected component obtained from the traversal.
@@ -32,17 +33,27 @@ public class AllConnectedComponents implements Serializable {
     public HashSet<HashSet<Index>> getAllConnectedComponents(TraversableMatrix aTraversable) {
         HashSet<HashSet<Index>> allConnectedComponents = new HashSet<>();
         Set<Index> connectedComponent;
+        Set<Index> found = new HashSet<>(); // The cells of the components found so far
         List<Index> indexList = aTraversable.getAllTraversableIndexes();
 
         for (Index index : indexList) {
+            if (found.contains(index)) {
+                continue;
+            }
             aTraversable.setSource(index);
 
             // Sending false as a parameter to indicate that we want to use also the diagonal neighbors as a valid path (inside it's using the 'getAllReachableNodes()').
             DfsVisitTls<Index> algorithm = new DfsVisitTls<>();
-            connectedComponent = algorithm.traverse(aTraversable, false);
+            try {
+                connectedComponent = algorithm.traverse(aTraversable, false);
+            } catch (ComputationTimeoutException timeout) {
+                // The components found before the time ran out
+                throw timeout.withPartialResult(allConnectedComponents);
+            }
 
             if (!allConnectedComponents.contains(connectedComponent) && aTraversable.getInnerMatrix().getValue(index) != 0) {
                 allConnectedComponents.add(new HashSet<>(connectedComponent));
+                found.addAll(connectedComponent);
             }
         }
         return allConnectedComponents;
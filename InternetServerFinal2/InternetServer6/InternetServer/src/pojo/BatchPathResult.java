@@ -0,0 +1,131 @@
+package pojo;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BatchPathResult is the answer of a batch path command: the paths of every (source, destination) pair of the batch,
+ * in the order of the request, together with the weight (or length) they share.
+ * The paths of every pair are held as CompactPaths, so a large batch is small on the wire.
+ */
+public class BatchPathResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Index[] sources;
+    private final Index[] destinations;
+    private final long[] costs;
+    private final CompactPaths[] paths;
+    private final int searches;
+    private final boolean infinitePaths;
+
+    /**
+     * Constructs a BatchPathResult.
+     * @param sources       The source of every pair.
+     * @param destinations  The destination of every pair.
+     * @param costs         The weight of the lightest paths (or the number of steps of the shortest paths) of every pair,
+     *                      -1 if the destination is not reachable or the pair was not answered.
+     * @param paths         The encoded paths of every pair, null for a pair that was not answered before the deadline.
+     * @param searches      The number of single-source searches that answered the batch.
+     * @param infinitePaths true if the matrix has infinitely many lightest paths, so no pair has paths.
+     */
+    public BatchPathResult(Index[] sources, Index[] destinations, long[] costs, CompactPaths[] paths,
+                           int searches, boolean infinitePaths) {
+        this.sources = sources;
+        this.destinations = destinations;
+        this.costs = costs;
+        this.paths = paths;
+        this.searches = searches;
+        this.infinitePaths = infinitePaths;
+    }
+
+    /**
+     * Returns the number of pairs of the batch.
+     * @return The number of pairs.
+     */
+    public int size() {
+        return sources.length;
+    }
+
+    /**
+     * Returns the source of a pair.
+     * @param pair The position of the pair in the batch.
+     * @return The source index.
+     */
+    public Index getSource(int pair) {
+        return sources[pair];
+    }
+
+    /**
+     * Returns the destination of a pair.
+     * @param pair The position of the pair in the batch.
+     * @return The destination index.
+     */
+    public Index getDestination(int pair) {
+        return destinations[pair];
+    }
+
+    /**
+     * Returns the weight of the lightest paths, or the number of steps of the shortest paths, of a pair.
+     * @param pair The position of the pair in the batch.
+     * @return The cost, or -1 if the destination is not reachable or the pair was not answered.
+     */
+    public long getCost(int pair) {
+        return costs[pair];
+    }
+
+    /**
+     * Returns the paths of a pair.
+     * @param pair The position of the pair in the batch.
+     * @return The paths from the source to the destination, empty if there is none, null if the pair was not answered.
+     */
+    public List<List<Node<Index>>> getPaths(int pair) {
+        return paths[pair] == null ? null : paths[pair].toNodePaths();
+    }
+
+    /**
+     * Returns the paths of a pair without decoding them.
+     * @param pair The position of the pair in the batch.
+     * @return The encoded paths, empty if there is none, null if the pair was not answered.
+     */
+    public CompactPaths getCompactPaths(int pair) {
+        return paths[pair];
+    }
+
+    /**
+     * Returns the number of single-source searches that answered the batch, one per distinct source.
+     * @return The number of searches.
+     */
+    public int getSearches() {
+        return searches;
+    }
+
+    /**
+     * Checks if the matrix has infinitely many lightest paths, as the "lightest paths" command reports.
+     * @return true if two zero cells touch each other.
+     */
+    public boolean hasInfinitePaths() {
+        return infinitePaths;
+    }
+
+    /**
+     * Checks if every pair was answered.
+     * @return false if the batch was stopped by its deadline first.
+     */
+    public boolean isComplete() {
+        for (CompactPaths pairPaths : paths) {
+            if (pairPaths == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        long answered = Arrays.stream(paths).filter(pairPaths -> pairPaths != null).count();
+        long reachable = Arrays.stream(paths).filter(pairPaths -> pairPaths != null && !pairPaths.isEmpty()).count();
+        return "Batch of " + size() + " pairs from " + searches + " sources: " + answered + " answered, " + reachable
+                + " reachable" + (infinitePaths ? ", infinite lightest paths" : "");
+    }
+}
@@ -0,0 +1,217 @@
+package pojo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+1. BatchPathSearch answers many "lightest paths" or "all shortest paths" queries on one matrix with one request.
+   A batch is an array of rows; every row holds a source followed by one or more destinations, so a row can be
+   a single (source, destination) pair or one source with many destinations.
+2. The pairs are grouped by their source. Every distinct source gets one single-source search, whatever the number
+   of rows and destinations it appears in:
+   - lightest paths run WeightAwareDijkstra.computeDistances with all the destinations of the source as targets,
+     and the search stops once the heaviest of them is settled,
+   - shortest paths run ParallelBfs.computeLevels, which stops after the level of the last destination.
+   The paths of every destination are then rebuilt from the one PathDag of the source and encoded as CompactPaths
+   by the task that found them.
+3. The distinct sources are searched in parallel on the compute pool, one task per source. Every task attaches
+   a child CancellationToken of the request, so each task counts its own cells and all of them share the deadline.
+4. The grids and indices the fast searches do not handle (jagged matrices, negative values, indices outside the
+   matrix, BFS sources that are not 1) are answered pair by pair by Dijkstra and BfsTls, as the single commands do.
+5. When the deadline stops the batch, the pairs answered so far are returned as the partial result.
+ */
+
+/**
+ * BatchPathSearch answers a batch of path queries with one search per distinct source, run in parallel.
+ */
+public class BatchPathSearch {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a BatchPathSearch running on the given pool.
+     * @param pool The ForkJoinPool the distinct sources are searched on.
+     */
+    public BatchPathSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the lightest paths of every pair of a batch, like the "lightest paths" command.
+     * @param matrix The matrix to search.
+     * @param batch  The rows of the batch, each a source followed by its destinations.
+     * @return The lightest paths and their weight for every pair, in the order of the batch.
+     * @throws IllegalArgumentException If a row has no source or no destination.
+     */
+    public BatchPathResult findLightestPaths(Matrix matrix, Index[][] batch) {
+        return search(matrix, batch, true);
+    }
+
+    /**
+     * Finds the shortest paths of every pair of a batch, like the "all shortest paths" command.
+     * @param matrix The matrix to search.
+     * @param batch  The rows of the batch, each a source followed by its destinations.
+     * @return The shortest paths and their number of steps for every pair, in the order of the batch.
+     * @throws IllegalArgumentException If a row has no source or no destination.
+     */
+    public BatchPathResult findShortestPaths(Matrix matrix, Index[][] batch) {
+        return search(matrix, batch, false);
+    }
+
+    /**
+     * Groups the pairs of a batch by source and runs one search per source.
+     */
+    private BatchPathResult search(Matrix matrix, Index[][] batch, boolean weighted) {
+        int numOfPairs = 0;
+        for (Index[] row : batch) {
+            if (row == null || row.length < 2) {
+                throw new IllegalArgumentException("Every row of a batch needs a source and at least one destination");
+            }
+            numOfPairs += row.length - 1;
+        }
+
+        Index[] sources = new Index[numOfPairs];
+        Index[] destinations = new Index[numOfPairs];
+        Map<Index, IntArrayList> pairsOfSource = new LinkedHashMap<>();
+        int pair = 0;
+        for (Index[] row : batch) {
+            IntArrayList pairs = pairsOfSource.computeIfAbsent(row[0], source -> new IntArrayList());
+            for (int i = 1; i < row.length; i++) {
+                sources[pair] = row[0];
+                destinations[pair] = row[i];
+                pairs.add(pair++);
+            }
+        }
+
+        long[] costs = new long[numOfPairs];
+        Arrays.fill(costs, -1);
+        AtomicReferenceArray<CompactPaths> answers = new AtomicReferenceArray<>(numOfPairs);
+        WeightedGrid grid = matrix.getWeightedGrid();
+
+        // If we have 2 zeros one next to each other than we have infinite lightest paths, as in Dijkstra.
+        if (weighted && grid.getStrategy() != WeightedGrid.Strategy.LEGACY && grid.hasTouchingZeroCells()) {
+            for (int i = 0; i < numOfPairs; i++) {
+                answers.set(i, CompactPaths.of(List.of()));
+            }
+            return result(sources, destinations, costs, answers, pairsOfSource.size(), true);
+        }
+
+        CancellationToken token = CancellationToken.current();
+        List<Map.Entry<Index, IntArrayList>> groups = new ArrayList<>(pairsOfSource.entrySet());
+        if (groups.size() == 1 || pool.getParallelism() == 1) {
+            try {
+                for (Map.Entry<Index, IntArrayList> group : groups) {
+                    answer(matrix, group.getKey(), group.getValue(), weighted, destinations, costs, answers);
+                }
+            } catch (ComputationTimeoutException timeout) {
+                throw timeout.withPartialResult(result(sources, destinations, costs, answers, groups.size(), false));
+            }
+            return result(sources, destinations, costs, answers, groups.size(), false);
+        }
+
+        List<CancellationToken> partTokens = new ArrayList<>();
+        List<ForkJoinTask<?>> parts = new ArrayList<>();
+        for (Map.Entry<Index, IntArrayList> group : groups) {
+            CancellationToken partToken = new CancellationToken(token);
+            partTokens.add(partToken);
+            parts.add(pool.submit(() -> {
+                // A worker that helps another task while it waits keeps the token of its own task afterward
+                CancellationToken previous = CancellationToken.current();
+                CancellationToken.attach(partToken);
+                try {
+                    answer(matrix, group.getKey(), group.getValue(), weighted, destinations, costs, answers);
+                } finally {
+                    CancellationToken.attach(previous);
+                }
+            }));
+        }
+
+        // Every part is joined before the result is built, so no part still writes into it
+        ComputationTimeoutException stopped = null;
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> part : parts) {
+            try {
+                part.join();
+            } catch (ComputationTimeoutException timeout) {
+                stopped = timeout;
+            } catch (RuntimeException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        BatchPathResult result = result(sources, destinations, costs, answers, groups.size(), false);
+        if (stopped != null) {
+            long expansions = partTokens.stream().mapToLong(CancellationToken::getCheckedExpansions).sum();
+            throw new ComputationTimeoutException(expansions, token.getElapsedNanos() / 1_000_000, stopped.isCancelled())
+                    .withPartialResult(result);
+        }
+        return result;
+    }
+
+    /**
+     * Answers the pairs of one source with one search, and the pairs the search does not handle one by one.
+     */
+    private void answer(Matrix matrix, Index source, IntArrayList pairs, boolean weighted, Index[] destinations,
+                        long[] costs, AtomicReferenceArray<CompactPaths> answers) {
+        WeightedGrid grid = matrix.getWeightedGrid();
+        boolean searchable = weighted
+                ? grid.getStrategy() != WeightedGrid.Strategy.LEGACY && grid.contains(source)
+                : grid.size() > 0 && grid.contains(source) && grid.weight(grid.idOf(source)) == 1;
+
+        PathDag dag = null;
+        if (searchable) {
+            IntArrayList targets = new IntArrayList();
+            for (int i = 0; i < pairs.size(); i++) {
+                Index destination = destinations[pairs.get(i)];
+                if (grid.contains(destination)) {
+                    targets.add(grid.idOf(destination));
+                }
+            }
+            dag = weighted
+                    ? new WeightAwareDijkstra().computeDistances(grid, grid.idOf(source), targets.toArray())
+                    : new ParallelBfs(pool).computeLevels(grid, grid.idOf(source), targets.toArray());
+        }
+
+        for (int i = 0; i < pairs.size(); i++) {
+            int pair = pairs.get(i);
+            Index destination = destinations[pair];
+            if (dag != null && grid.contains(destination)) {
+                int target = grid.idOf(destination);
+                answers.set(pair, CompactPaths.of(dag.enumeratePaths(target)));
+                costs[pair] = dag.getDistance(target) == WeightedGrid.UNREACHED ? -1 : dag.getDistance(target);
+            } else {
+                TraversableMatrix matrixAsGraph = new TraversableMatrix(matrix);
+                matrixAsGraph.setSource(source);
+                matrixAsGraph.setDestination(destination);
+                List<List<Node<Index>>> paths = weighted
+                        ? new ArrayList<>(new Dijkstra().findLightestPaths(matrixAsGraph, source, destination))
+                        : new BfsTls<Index>().traverse(matrixAsGraph, source, destination);
+                answers.set(pair, CompactPaths.of(paths));
+                if (!paths.isEmpty()) {
+                    costs[pair] = weighted ? matrixAsGraph.getPathWeight(paths.get(0)) : paths.get(0).size() - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the answers found so far into a result.
+     */
+    private static BatchPathResult result(Index[] sources, Index[] destinations, long[] costs,
+                                          AtomicReferenceArray<CompactPaths> answers, int searches,
+                                          boolean infinitePaths) {
+        CompactPaths[] paths = new CompactPaths[answers.length()];
+        for (int i = 0; i < answers.length(); i++) {
+            paths[i] = answers.get(i);
+        }
+        return new BatchPathResult(sources, destinations, costs.clone(), paths, searches, infinitePaths);
+    }
+}
@@ -71,6 +71,8 @@ public class BfsTls<T> implements Serializable {
 
             // Initialize the queue and enqueue the source node
             threadLocalEnqueue(sourceIndex);
+            long dequeued = 0;
+            CancellationToken token = CancellationToken.current();
 
             // Perform BFS traversal until the destination node is reached
             while (!threadLocalIsEmpty()) {
@@ -84,6 +86,8 @@ public class BfsTls<T> implements Serializable {
                 for (int i = 0; i < levelSize; i++) {
                     // Remove a node from the queue
                     Node<T> removed = threadLocalDequeue();
+                    dequeued++;
+                    token.checkpoint();
 
                     // Check if the removed node is the destination
                     if (removed.getData().equals(destinationIndex.getData())) {
@@ -123,6 +127,7 @@ public class BfsTls<T> implements Serializable {
 
             // Clean up the thread-local variables
             getQueue().remove();
+            CellsVisited.add(dequeued);
         }
 
         // Return the list of the shortest paths
@@ -0,0 +1,223 @@
+package pojo;
+
+import server.CommandMetrics;
+import server.ComputePool;
+import server.CountingOutputStream;
+import server.LatencyHistogram;
+import server.Log;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+1. A BulkJob answers "bulk job": the client names a command ("submarines" or "component statistics" and its minimum
+   size), then sends matrices one after the other and a null after the last one. Every matrix is answered with a
+   BulkResult that carries its position in the job, as soon as it is computed, and the job ends with a BulkJobSummary.
+2. The matrices run on the ComputePool, the work-stealing ForkJoinPool of the server, so a job of many small matrices
+   keeps every core busy without a thread or an executor per matrix. The results arrive in the order the matrices
+   finish, which is not the order they were sent; the position tells them apart.
+3. At most -Dserver.bulk.window matrices of a job (twice the threads of the pool by default) are read and not yet
+   answered. A matrix takes a permit before it is read, and the writer returns it once its result is written, so
+   a client that does not read its results stops the reading of its matrices, and TCP pushes back on it.
+4. The reading thread of the session reads the matrices while a writer thread writes the results, so the client
+   has to read the results while it sends the matrices, and reset its stream every few matrices so that neither
+   side keeps all of them. The results are flushed whenever no other result is waiting, and the stream is reset
+   after every RESET_BYTES of them.
+5. Every matrix has the deadline of the session on its own. A matrix that runs past it is answered with the
+   RequestTimeout and the job goes on. The job itself is not admitted by cost: its window bounds the cores it takes.
+ */
+
+/**
+ * The BulkJob class runs a command on a stream of matrices in parallel and streams back a result per matrix.
+ */
+class BulkJob {
+    // The largest number of matrices of a job that were read and not answered yet
+    static final int WINDOW = Math.max(1, Integer.getInteger("server.bulk.window", 2 * ComputePool.get().getParallelism()));
+    // The bytes of results written between two resets of the stream
+    private static final long RESET_BYTES = 1 << 20;
+    // The element of the queue that stops the writer
+    private static final BulkResult END = new BulkResult(-1, null, null, 0);
+
+    private final MatrixHandler handler;
+    private final ObjectInputStream objectInputStream;
+    private final ObjectOutputStream objectOutputStream;
+    private final CountingOutputStream countingOutputStream;
+    private final CommandMetrics metrics; // The metrics of "bulk job", which count the timeouts of the matrices
+    private final String command;
+    private final Function<Matrix, Object> task;
+    private final Semaphore inFlight = new Semaphore(WINDOW);
+    private final BlockingQueue<BulkResult> completed = new LinkedBlockingQueue<>();
+    private final Set<CancellationToken> running = ConcurrentHashMap.newKeySet(); // The deadlines of the matrices that compute
+    private final LatencyHistogram computeTimes = new LatencyHistogram();
+    private final LongAdder cells = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private volatile boolean writeFailed;
+    private volatile long lastWrittenAt;
+
+    /**
+     * Constructs the job of a request.
+     * @param handler              The handler of the session, which reads the matrices and records timeouts.
+     * @param objectInputStream    The stream from the client.
+     * @param objectOutputStream   The stream to the client.
+     * @param countingOutputStream The stream under objectOutputStream that counts the bytes.
+     * @param metrics              The metrics of "bulk job".
+     * @param command              The command the job runs on every matrix.
+     * @param task                 The computation of the command on a matrix.
+     */
+    BulkJob(MatrixHandler handler, ObjectInputStream objectInputStream, ObjectOutputStream objectOutputStream,
+            CountingOutputStream countingOutputStream, CommandMetrics metrics, String command, Function<Matrix, Object> task) {
+        this.handler = handler;
+        this.objectInputStream = objectInputStream;
+        this.objectOutputStream = objectOutputStream;
+        this.countingOutputStream = countingOutputStream;
+        this.metrics = metrics;
+        this.command = command;
+        this.task = task;
+    }
+
+    /**
+     * Creates the computation of a command of a job.
+     * @param command  The command, "submarines" or "component statistics".
+     * @param argument The argument of the command: the minimum size of the listed components, or null.
+     * @return The computation, which fails on every matrix if a job cannot run the command.
+     */
+    static Function<Matrix, Object> taskOf(String command, Object argument) {
+        return switch (command) {
+            case "submarines" -> matrix -> new SubmarineCounter().countSubmarines(new TraversableMatrix(matrix));
+            case "component statistics" -> matrix -> ComponentStatistics.of(matrix, (Integer) argument);
+            default -> matrix -> {
+                throw new IllegalArgumentException("A bulk job runs \"submarines\" or \"component statistics\", not \"" + command + "\"");
+            };
+        };
+    }
+
+    /**
+     * Reads the matrices of the job until the null that ends them, computes them in parallel and writes their results,
+     * and returns once every result was written.
+     * @return The summary of the job, to write after the results.
+     * @throws IOException            If the client cannot be read from or written to.
+     * @throws ClassNotFoundException If the class of a matrix cannot be found.
+     * @throws InterruptedException   If the session is cancelled while it waits for a permit.
+     */
+    BulkJobSummary run() throws IOException, ClassNotFoundException, InterruptedException {
+        Thread writer = new Thread(this::writeLoop, "bulk-writer-" + Thread.currentThread().getName());
+        writer.setDaemon(true);
+        long start = System.nanoTime();
+        lastWrittenAt = start;
+        writer.start();
+        long matrices = 0;
+        boolean ended = false;
+        try {
+            while (true) {
+                inFlight.acquire();
+                Object read = handler.readArgument(objectInputStream, "bulk job");
+                if (read == null) {
+                    inFlight.release();
+                    break;
+                }
+                long position = matrices++;
+                if (read instanceof int[][] values) {
+                    ComputePool.get().execute(() -> compute(position, values));
+                } else {
+                    failed.increment();
+                    completed.add(new BulkResult(position, null, "Expected an int[][] matrix, got " + read.getClass().getSimpleName(), 0));
+                }
+            }
+            ended = true;
+        } finally {
+            // A client that is gone does not need the results of its matrices
+            if (!ended) {
+                running.forEach(CancellationToken::cancel);
+            }
+            inFlight.acquireUninterruptibly(WINDOW);
+            completed.add(END);
+            writer.join();
+        }
+        if (writeFailed) {
+            throw new IOException("The client closed its connection during \"bulk job\"");
+        }
+        return new BulkJobSummary(command, matrices, failed.sum(), timedOut.sum(), cells.sum(), lastWrittenAt - start,
+                computeTimes.getSum(), computeTimes.getValueAtPercentile(50), computeTimes.getValueAtPercentile(99),
+                ComputePool.get().getParallelism());
+    }
+
+    /**
+     * Runs the command on a matrix in a worker of the ComputePool and queues its result; every outcome is queued,
+     * so the permit of the matrix always returns.
+     */
+    private void compute(long position, int[][] values) {
+        CancellationToken token = new CancellationToken(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(handler.getDeadlineMillis()));
+        running.add(token);
+        long start = System.nanoTime();
+        Object result = null;
+        String error = null;
+        CancellationToken.attach(token);
+        try {
+            for (int[] row : values) {
+                cells.add(row.length);
+            }
+            result = task.apply(new Matrix(values));
+        } catch (ComputationTimeoutException timeoutException) {
+            timedOut.increment();
+            result = handler.timeoutResponse(command, metrics, timeoutException);
+        } catch (RuntimeException | StackOverflowError failure) {
+            failed.increment();
+            Log.sampled(Log.Level.WARN, "bulk job", () -> "\"" + command + "\" failed on matrix " + position + ": " + failure);
+            error = String.valueOf(failure);
+        } finally {
+            CancellationToken.detach();
+            running.remove(token);
+            long computeNanos = System.nanoTime() - start;
+            computeTimes.record(computeNanos);
+            completed.add(new BulkResult(position, result, error, computeNanos));
+        }
+    }
+
+    /**
+     * Writes the results in the order they complete, until the END element.
+     * Once a write fails the results are only dropped, so that the permits still return.
+     */
+    private void writeLoop() {
+        long lastReset = countingOutputStream.getCount();
+        while (true) {
+            BulkResult result;
+            try {
+                result = completed.take();
+            } catch (InterruptedException interruptedException) {
+                continue;
+            }
+            if (result == END) {
+                return;
+            }
+            try {
+                if (!writeFailed) {
+                    objectOutputStream.writeObject(result);
+                    if (countingOutputStream.getCount() - lastReset >= RESET_BYTES) {
+                        objectOutputStream.reset();
+                        lastReset = countingOutputStream.getCount();
+                    }
+                    if (completed.isEmpty()) {
+                        objectOutputStream.flush();
+                    }
+                    lastWrittenAt = System.nanoTime();
+                }
+            } catch (IOException ioException) {
+                writeFailed = true;
+                running.forEach(CancellationToken::cancel);
+                Log.debug(() -> "Bulk job: the client closed its connection");
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package pojo;
+
+import java.io.Serializable;
+
+/**
+ * BulkJobSummary is the last object of a "bulk job": how many matrices it ran, how many failed or timed out,
+ * and its throughput.
+ */
+public class BulkJobSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String command;
+    private final long matrices;
+    private final long failed;
+    private final long timedOut;
+    private final long cells;
+    private final long elapsedNanos;
+    private final long computeNanos;
+    private final long p50ComputeNanos;
+    private final long p99ComputeNanos;
+    private final int parallelism;
+
+    /**
+     * Constructs the summary of a job.
+     * @param command         The command the job ran on every matrix.
+     * @param matrices        The number of matrices the client sent.
+     * @param failed          The number of matrices the command failed on.
+     * @param timedOut        The number of matrices that ran past their deadline.
+     * @param cells           The number of cells of all the matrices.
+     * @param elapsedNanos    The time from the first matrix read to the last result written.
+     * @param computeNanos    The time the command ran on all the matrices together.
+     * @param p50ComputeNanos The median time of the command on a matrix.
+     * @param p99ComputeNanos The 99th percentile of the time of the command on a matrix.
+     * @param parallelism     The number of threads of the pool the matrices ran on.
+     */
+    public BulkJobSummary(String command, long matrices, long failed, long timedOut, long cells, long elapsedNanos,
+                          long computeNanos, long p50ComputeNanos, long p99ComputeNanos, int parallelism) {
+        this.command = command;
+        this.matrices = matrices;
+        this.failed = failed;
+        this.timedOut = timedOut;
+        this.cells = cells;
+        this.elapsedNanos = elapsedNanos;
+        this.computeNanos = computeNanos;
+        this.p50ComputeNanos = p50ComputeNanos;
+        this.p99ComputeNanos = p99ComputeNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the command the job ran on every matrix.
+     * @return The command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the number of matrices of the job, each answered with a BulkResult.
+     * @return The number of matrices.
+     */
+    public long getMatrices() {
+        return matrices;
+    }
+
+    /**
+     * Returns the number of matrices the command failed on, including objects that were not matrices.
+     * @return The number of failures.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the number of matrices that ran past their deadline.
+     * @return The number of timeouts.
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Returns the number of cells of all the matrices.
+     * @return The number of cells.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the time from the first matrix read to the last result written.
+     * @return The time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of matrices answered per second of the job.
+     * @return The throughput in matrices per second.
+     */
+    public double getMatricesPerSecond() {
+        return elapsedNanos == 0 ? 0 : matrices * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of cells answered per second of the job.
+     * @return The throughput in cells per second.
+     */
+    public double getCellsPerSecond() {
+        return elapsedNanos == 0 ? 0 : cells * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns how many threads computed at once on average: the compute time over the elapsed time.
+     * @return The average number of busy threads.
+     */
+    public double getAverageBusyThreads() {
+        return elapsedNanos == 0 ? 0 : (double) computeNanos / elapsedNanos;
+    }
+
+    /**
+     * Returns the median time of the command on a matrix.
+     * @return The time in nanoseconds.
+     */
+    public long getP50ComputeNanos() {
+        return p50ComputeNanos;
+    }
+
+    /**
+     * Returns the 99th percentile of the time of the command on a matrix.
+     * @return The time in nanoseconds.
+     */
+    public long getP99ComputeNanos() {
+        return p99ComputeNanos;
+    }
+
+    /**
+     * Returns the number of threads of the pool the matrices ran on.
+     * @return The parallelism of the pool.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("\"%s\" on %d matrices (%d failed, %d timed out) in %.1f ms: %.0f matrices/s, %.0f cells/s, "
+                        + "%.1f of %d threads busy, compute p50 %.3f ms, p99 %.3f ms", command, matrices, failed, timedOut,
+                elapsedNanos / 1e6, getMatricesPerSecond(), getCellsPerSecond(), getAverageBusyThreads(), parallelism,
+                p50ComputeNanos / 1e6, p99ComputeNanos / 1e6);
+    }
+}
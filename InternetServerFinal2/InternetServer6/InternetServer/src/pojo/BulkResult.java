@@ -0,0 +1,70 @@
+package pojo;
+
+import java.io.Serializable;
+
+/**
+ * BulkResult is the result of one matrix of a "bulk job": the position of the matrix in the job,
+ * the result of the command on it, or why it has none.
+ */
+public class BulkResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long position;
+    @SuppressWarnings("serial") // Declared as Object like Response.result; an Integer, a ComponentStatistics or a RequestTimeout
+    private final Object result;
+    private final String error;
+    private final long computeNanos;
+
+    /**
+     * Constructs the result of a matrix.
+     * @param position     The position of the matrix in the job, from 0.
+     * @param result       The result of the command, a RequestTimeout if the matrix ran past its deadline, or null.
+     * @param error        Why the command failed on the matrix, or null.
+     * @param computeNanos The time the command ran on the matrix.
+     */
+    public BulkResult(long position, Object result, String error, long computeNanos) {
+        this.position = position;
+        this.result = result;
+        this.error = error;
+        this.computeNanos = computeNanos;
+    }
+
+    /**
+     * Returns the position of the matrix in the job, in the order the client sent the matrices.
+     * @return The position, from 0.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the result of the command on the matrix.
+     * @return The result, a RequestTimeout with the partial result if the matrix ran past its deadline,
+     *         or null if the command failed.
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * Returns why the command failed on the matrix.
+     * @return The reason, or null if the command did not fail.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Returns the time the command ran on the matrix.
+     * @return The time in nanoseconds.
+     */
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Matrix " + position + ": " + (error != null ? error : result)
+                + String.format(" (%.3f ms)", computeNanos / 1e6);
+    }
+}
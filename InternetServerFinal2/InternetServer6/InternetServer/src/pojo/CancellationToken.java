@@ -0,0 +1,179 @@
+package pojo;
+
+/*
+1. A CancellationToken carries the deadline of one request to the algorithms that compute it, without changing
+   their signatures: the thread that runs the computation attaches the token, and the algorithms read it with current().
+2. An algorithm calls checkpoint() once per expanded cell. The call only counts; every CHECK_INTERVAL expansions
+   it reads the clock and the cancelled flag, so checking costs one increment and one comparison per cell.
+3. When the deadline passed or the token was cancelled, the checkpoint throws a ComputationTimeoutException.
+   The algorithms catch it on the way out only to add what they found so far (the best path weight, the components),
+   and rethrow it, so the request can answer with a partial result instead of nothing.
+4. A thread without an attached token gets a token with no deadline, so the algorithms also run outside the server.
+5. The count of a token belongs to the thread that runs the computation. Other threads only read the count
+   published at the last check, and may cancel the token at any time.
+6. A computation that splits across threads gives every part a child token, with its own count and the same deadline.
+   A child also stops when its parent is cancelled.
+ */
+
+/**
+ * The CancellationToken class holds the deadline of a computation, checked cooperatively by the algorithms.
+ */
+public final class CancellationToken {
+
+    // The number of expansions between two checks of the clock
+    public static final int CHECK_INTERVAL = 1024;
+
+    // The token of the computation that runs on the current thread
+    private static final ThreadLocal<CancellationToken> current = ThreadLocal.withInitial(CancellationToken::unlimited);
+
+    private final CancellationToken parent; // The token of the computation this one is a part of, or null
+    private final long startNanos;
+    private final long timeoutNanos;
+    private volatile boolean cancelled;
+    private long expansions; // Counted only by the thread that runs the computation
+    private long nextCheck = CHECK_INTERVAL;
+    private volatile long checkedExpansions; // The count at the last check, for the other threads
+
+    /**
+     * Constructs a token that expires a given time after a start time.
+     * @param startNanos   The start time, from System.nanoTime().
+     * @param timeoutNanos The time the computation may take from the start, Long.MAX_VALUE for no deadline.
+     */
+    public CancellationToken(long startNanos, long timeoutNanos) {
+        this(null, startNanos, timeoutNanos);
+    }
+
+    /**
+     * Constructs the token of a part of a computation that runs on another thread.
+     * @param parent The token of the whole computation, whose deadline the part shares.
+     */
+    public CancellationToken(CancellationToken parent) {
+        this(parent, parent.startNanos, parent.timeoutNanos);
+    }
+
+    private CancellationToken(CancellationToken parent, long startNanos, long timeoutNanos) {
+        this.parent = parent;
+        this.startNanos = startNanos;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Creates a token with no deadline, which only stops when it is cancelled.
+     * @return The token.
+     */
+    public static CancellationToken unlimited() {
+        return new CancellationToken(System.nanoTime(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the token of the computation that runs on the current thread.
+     * @return The attached token, or a token with no deadline.
+     */
+    public static CancellationToken current() {
+        return current.get();
+    }
+
+    /**
+     * Attaches a token to the current thread, until detach is called.
+     * @param token The token of the computation the current thread runs.
+     */
+    public static void attach(CancellationToken token) {
+        current.set(token);
+    }
+
+    /**
+     * Removes the token of the current thread.
+     */
+    public static void detach() {
+        current.remove();
+    }
+
+    /**
+     * Counts one expanded cell, and checks the token every CHECK_INTERVAL cells.
+     * @throws ComputationTimeoutException If the deadline passed or the token was cancelled.
+     */
+    public void checkpoint() {
+        if (++expansions >= nextCheck) {
+            check();
+        }
+    }
+
+    /**
+     * Counts a batch of expanded cells, such as a BFS level, and checks the token if CHECK_INTERVAL cells passed.
+     * @param count The number of expanded cells.
+     * @throws ComputationTimeoutException If the deadline passed or the token was cancelled.
+     */
+    public void checkpoint(int count) {
+        expansions += count;
+        if (expansions >= nextCheck) {
+            check();
+        }
+    }
+
+    /**
+     * Checks the token now.
+     * @throws ComputationTimeoutException If the deadline passed or the token was cancelled.
+     */
+    public void check() {
+        nextCheck = expansions + CHECK_INTERVAL;
+        checkedExpansions = expansions;
+        if (isStopped()) {
+            throw timeout();
+        }
+    }
+
+    /**
+     * Cancels the token, so that the computation stops at its next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether the computation should stop.
+     * @return true if the token or its parent was cancelled or the deadline passed.
+     */
+    public boolean isStopped() {
+        return isCancelled() || getElapsedNanos() >= timeoutNanos;
+    }
+
+    /**
+     * Returns whether the token was cancelled.
+     * @return true if cancel was called on the token or on its parent.
+     */
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * Returns the time since the start of the token.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     * @return The remaining time in nanoseconds, 0 if the deadline passed, Long.MAX_VALUE if there is no deadline.
+     */
+    public long getRemainingNanos() {
+        return timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, timeoutNanos - getElapsedNanos());
+    }
+
+    /**
+     * Returns the number of cells counted at the last check.
+     * @return The number of expanded cells.
+     */
+    public long getCheckedExpansions() {
+        return checkedExpansions;
+    }
+
+    /**
+     * Creates the exception that stops the computation of this token, with the cells counted at the last check.
+     * @return The exception, without a partial result.
+     */
+    public ComputationTimeoutException timeout() {
+        return new ComputationTimeoutException(checkedExpansions, getElapsedNanos() / 1_000_000, isCancelled());
+    }
+}
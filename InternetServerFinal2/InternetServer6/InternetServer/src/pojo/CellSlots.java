@@ -0,0 +1,151 @@
+package pojo;
+
+/*
+1. CellSlots numbers the cells the component algorithms label, so that the same labeling code runs on both forms
+   of a Matrix:
+   - a dense matrix has a slot per cell, row by row (jagged rows are supported),
+   - a sparse matrix (see SparseCells) has a slot per cell that is not 0, its position in the SparseCells.
+2. A row is the slots first(row) to end(row) - 1. A scan over the rows of a sparse matrix therefore visits only
+   the cells that are not 0, and arrays indexed by slot take memory per stored cell instead of per cell of the area.
+3. A neighbor is found with oneSlot(): a bounds check and an array read on a dense matrix, a binary search in the
+   columns of its row on a sparse one.
+ */
+
+/**
+ * CellSlots numbers the cells of a matrix that the component algorithms visit, densely or only the cells that are not 0.
+ */
+final class CellSlots {
+    private final int[][] cells; // The dense matrix, or null
+    private final int[] rowStart; // The slot of the first cell of every row of the dense matrix
+    private final SparseCells sparse; // The sparse matrix, or null
+
+    /**
+     * Numbers the cells of a matrix in the form it is held in.
+     * @param matrix The matrix.
+     */
+    CellSlots(Matrix matrix) {
+        this.sparse = matrix.getSparseCells();
+        if (sparse != null) {
+            this.cells = null;
+            this.rowStart = null;
+        } else {
+            this.cells = matrix.getPrimitiveMatrix();
+            this.rowStart = new int[cells.length + 1];
+            for (int r = 0; r < cells.length; r++) {
+                rowStart[r + 1] = rowStart[r] + cells[r].length;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slots.
+     * @return The number of cells of a dense matrix, or of the stored cells of a sparse one.
+     */
+    int size() {
+        return sparse != null ? sparse.size() : rowStart[cells.length];
+    }
+
+    /**
+     * Returns the number of rows of the matrix.
+     * @return The number of rows.
+     */
+    int getRows() {
+        return sparse != null ? sparse.getRows() : cells.length;
+    }
+
+    /**
+     * Returns the slot of the first cell of a row.
+     * @param row The row.
+     * @return The slot.
+     */
+    int first(int row) {
+        return sparse != null ? sparse.positionOfRow(row) : rowStart[row];
+    }
+
+    /**
+     * Returns the slot after the last cell of a row.
+     * @param row The row.
+     * @return The slot.
+     */
+    int end(int row) {
+        return first(row + 1);
+    }
+
+    /**
+     * Returns the column of the cell of a slot.
+     * @param slot The slot.
+     * @param row  The row of the slot.
+     * @return The column.
+     */
+    int columnOf(int slot, int row) {
+        return sparse != null ? sparse.columnAt(slot) : slot - rowStart[row];
+    }
+
+    /**
+     * Returns the value of the cell of a slot.
+     * @param slot The slot.
+     * @param row  The row of the slot.
+     * @return The value.
+     */
+    int valueOf(int slot, int row) {
+        return sparse != null ? sparse.valueAt(slot) : cells[row][slot - rowStart[row]];
+    }
+
+    /**
+     * Returns the row of the cell of a slot.
+     * @param slot The slot.
+     * @return The row.
+     */
+    int rowOf(int slot) {
+        if (sparse != null) {
+            return sparse.rowAt(slot);
+        }
+        // The last row that starts at or before the slot, which is not empty
+        int low = 0, high = rowStart.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (rowStart[middle] <= slot) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the slot of a cell.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The slot, or -1 if the cell is outside the matrix or is a 0 that a sparse matrix does not store.
+     */
+    int slotOf(int row, int column) {
+        if (sparse != null) {
+            return sparse.positionOf(row, column);
+        }
+        return row >= 0 && row < cells.length && column >= 0 && column < cells[row].length ? rowStart[row] + column : -1;
+    }
+
+    /**
+     * Returns the slot of a cell with value 1.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The slot, or -1 if the cell is outside the matrix or its value is not 1.
+     */
+    int oneSlot(int row, int column) {
+        if (sparse != null) {
+            int position = sparse.positionOf(row, column);
+            return position >= 0 && sparse.valueAt(position) == 1 ? position : -1;
+        }
+        return row >= 0 && row < cells.length && column >= 0 && column < cells[row].length && cells[row][column] == 1
+                ? rowStart[row] + column : -1;
+    }
+
+    /**
+     * Returns the memory the numbering takes beyond the matrix itself.
+     * @return The size in bytes.
+     */
+    long memoryBytes() {
+        return rowStart == null ? 0 : 4L * rowStart.length;
+    }
+}
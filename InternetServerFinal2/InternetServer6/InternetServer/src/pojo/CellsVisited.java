@@ -0,0 +1,39 @@
+package pojo;
+
+/**
+ * CellsVisited counts the cells the algorithms visit on the current thread, so a request can report how much
+ * of the matrix it touched. Every algorithm adds its count once, at the end of a traversal, so the cost is one
+ * ThreadLocal lookup per traversal.
+ */
+public final class CellsVisited {
+
+    // Thread-local counter of visited cells
+    private static final ThreadLocal<long[]> count = ThreadLocal.withInitial(() -> new long[1]);
+
+    private CellsVisited() {
+
+    }
+
+    /**
+     * Sets the counter of the current thread to 0.
+     */
+    public static void reset() {
+        count.get()[0] = 0;
+    }
+
+    /**
+     * Adds visited cells to the counter of the current thread.
+     * @param cells The number of cells.
+     */
+    public static void add(long cells) {
+        count.get()[0] += cells;
+    }
+
+    /**
+     * Returns the counter of the current thread.
+     * @return The number of cells visited since the last reset.
+     */
+    public static long get() {
+        return count.get()[0];
+    }
+}
@@ -0,0 +1,217 @@
+package pojo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+1. CompactPaths holds a set of paths that start at the same cell in a few primitive arrays, instead of
+   a Node object and an Index object per cell with a parent chain behind every node.
+2. Every step of a path goes to one of the 8 neighbors of a cell, so it is stored as a 3-bit move:
+   the position of the step in WeightedGrid.ROW_OFFSETS / COL_OFFSETS. 21 moves are packed into each long.
+3. The paths are sorted by their moves, so paths that share a trunk are next to each other. Every path only stores
+   the number of leading moves it shares with the previous path and the moves after them (front coding),
+   so a trunk shared by many paths is stored once. This is also the order PathDag enumerates the paths in,
+   because its DFS tries the moves in the same order.
+4. The arrays are serialized as they are, so a response has no object graph to walk: no deep recursion for long paths,
+   no back-reference table entry per cell, and a size of about 3 bits per distinct step plus 8 bytes per path.
+5. The paths are decoded back into lists of Index, or into lists of Node that share their prefixes like the paths
+   of PathDag, only by the client that reads them.
+ */
+
+/**
+ * CompactPaths is a compact, serializable encoding of paths that start at the same cell.
+ */
+public class CompactPaths implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // The number of 3-bit moves in each long of the packed moves
+    private static final int MOVES_PER_LONG = 21;
+
+    private final int startRow;
+    private final int startColumn;
+    private final int[] lengths; // The number of moves of every path
+    private final int[] shared; // The number of leading moves every path shares with the previous one
+    private final long[] moves; // The moves after the shared ones, path after path
+    private final int numOfMoves;
+
+    private CompactPaths(int startRow, int startColumn, int[] lengths, int[] shared, long[] moves, int numOfMoves) {
+        this.startRow = startRow;
+        this.startColumn = startColumn;
+        this.lengths = lengths;
+        this.shared = shared;
+        this.moves = moves;
+        this.numOfMoves = numOfMoves;
+    }
+
+    /**
+     * Encodes paths of Node objects, such as the result of BfsTls, Dijkstra or PathDag.
+     * @param paths The paths, which must all start at the same cell and move to a neighbor at every step.
+     * @return The encoded paths, sorted by their moves.
+     * @throws IllegalArgumentException If the paths do not start at the same cell, or a step is not a move to a neighbor.
+     */
+    public static CompactPaths of(Collection<? extends List<Node<Index>>> paths) {
+        if (paths.isEmpty()) {
+            return new CompactPaths(-1, -1, new int[0], new int[0], new long[0], 0);
+        }
+        Index start = null;
+        byte[][] pathMoves = new byte[paths.size()][];
+        int p = 0;
+        for (List<Node<Index>> path : paths) {
+            Index first = path.get(0).getData();
+            if (start == null) {
+                start = first;
+            } else if (!start.equals(first)) {
+                throw new IllegalArgumentException("The paths start at " + start + " and at " + first);
+            }
+            byte[] steps = new byte[path.size() - 1];
+            Index previous = first;
+            for (int i = 1; i < path.size(); i++) {
+                Index next = path.get(i).getData();
+                steps[i - 1] = moveOf(previous, next);
+                previous = next;
+            }
+            pathMoves[p++] = steps;
+        }
+        Arrays.sort(pathMoves, Arrays::compare);
+
+        int[] lengths = new int[pathMoves.length];
+        int[] shared = new int[pathMoves.length];
+        int total = 0;
+        for (int i = 0; i < pathMoves.length; i++) {
+            lengths[i] = pathMoves[i].length;
+            shared[i] = i == 0 ? 0 : commonPrefix(pathMoves[i - 1], pathMoves[i]);
+            total += lengths[i] - shared[i];
+        }
+        long[] packed = new long[(total + MOVES_PER_LONG - 1) / MOVES_PER_LONG];
+        int position = 0;
+        for (int i = 0; i < pathMoves.length; i++) {
+            for (int k = shared[i]; k < lengths[i]; k++, position++) {
+                packed[position / MOVES_PER_LONG] |= (long) pathMoves[i][k] << (3 * (position % MOVES_PER_LONG));
+            }
+        }
+        return new CompactPaths(start.getRow(), start.getColumn(), lengths, shared, packed, total);
+    }
+
+    /**
+     * Returns the move from a cell to one of its neighbors.
+     */
+    private static byte moveOf(Index from, Index to) {
+        int rowOffset = to.getRow() - from.getRow();
+        int columnOffset = to.getColumn() - from.getColumn();
+        for (byte k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+            if (WeightedGrid.ROW_OFFSETS[k] == rowOffset && WeightedGrid.COL_OFFSETS[k] == columnOffset) {
+                return k;
+            }
+        }
+        throw new IllegalArgumentException("The step from " + from + " to " + to + " is not a move to a neighbor");
+    }
+
+    private static int commonPrefix(byte[] first, byte[] second) {
+        int mismatch = Arrays.mismatch(first, second);
+        return mismatch < 0 ? first.length : mismatch;
+    }
+
+    /**
+     * Returns the number of paths.
+     * @return The number of paths.
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     * Checks if there are no paths.
+     * @return true if there are no paths.
+     */
+    public boolean isEmpty() {
+        return lengths.length == 0;
+    }
+
+    /**
+     * Returns the number of steps of a path.
+     * @param path The position of the path, in the order of its moves.
+     * @return The number of steps, one less than the number of cells.
+     */
+    public int getLength(int path) {
+        return lengths[path];
+    }
+
+    /**
+     * Returns the number of moves stored after the prefix sharing, which is the size of the encoding.
+     * @return The number of stored moves.
+     */
+    public int getStoredMoves() {
+        return numOfMoves;
+    }
+
+    /**
+     * Decodes the paths into lists of cells.
+     * @return The cells of every path, from the start cell.
+     */
+    public List<List<Index>> toIndexPaths() {
+        List<List<Index>> paths = new ArrayList<>(size());
+        decode((cells, sharedCells, length) -> paths.add(List.of(Arrays.copyOf(cells, length + 1))));
+        return paths;
+    }
+
+    /**
+     * Decodes the paths into lists of nodes, in the form the path algorithms return them:
+     * the parent of a node is the previous node of the path, and paths with a common prefix share its nodes.
+     * @return The nodes of every path, from the start cell.
+     */
+    public List<List<Node<Index>>> toNodePaths() {
+        List<List<Node<Index>>> paths = new ArrayList<>(size());
+        List<Node<Index>> trunk = new ArrayList<>();
+        decode((cells, sharedCells, length) -> {
+            // The cells the path shares with the previous one keep their nodes
+            trunk.subList(Math.min(sharedCells, trunk.size()), trunk.size()).clear();
+            for (int i = trunk.size(); i <= length; i++) {
+                trunk.add(new Node<>(cells[i], i == 0 ? null : trunk.get(i - 1)));
+            }
+            paths.add(new ArrayList<>(trunk));
+        });
+        return paths;
+    }
+
+    /**
+     * Receives the decoded paths one by one, in a buffer of cells that is reused for the next path.
+     */
+    private interface PathConsumer {
+        /**
+         * @param cells       The cells of the path; the buffer is reused for the next path.
+         * @param sharedCells The number of leading cells that are the same as in the previous path.
+         * @param length      The number of steps of the path, one less than its number of cells.
+         */
+        void accept(Index[] cells, int sharedCells, int length);
+    }
+
+    /**
+     * Decodes the paths one by one into a reused buffer of cells.
+     */
+    private void decode(PathConsumer consumer) {
+        int longest = 0;
+        for (int length : lengths) {
+            longest = Math.max(longest, length);
+        }
+        Index[] cells = new Index[longest + 1];
+        cells[0] = new Index(startRow, startColumn);
+        int position = 0;
+        for (int p = 0; p < lengths.length; p++) {
+            for (int k = shared[p]; k < lengths[p]; k++, position++) {
+                int move = (int) (moves[position / MOVES_PER_LONG] >>> (3 * (position % MOVES_PER_LONG))) & 7;
+                cells[k + 1] = new Index(cells[k].getRow() + WeightedGrid.ROW_OFFSETS[move],
+                        cells[k].getColumn() + WeightedGrid.COL_OFFSETS[move]);
+            }
+            // The start cell and the cells of the shared moves are the same as in the previous path
+            consumer.accept(cells, p == 0 ? 0 : shared[p] + 1, lengths[p]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return size() + " paths from (" + startRow + "," + startColumn + "), " + numOfMoves + " stored moves";
+    }
+}
@@ -0,0 +1,154 @@
+package pojo;
+
+import java.util.BitSet;
+import java.util.HashSet;
+
+/*
+1. ComponentLabeler finds the same components as AllConnectedComponents, in one pass over the matrix:
+   - the cells with value 1 form components through their 8 neighbors,
+   - every other cell that is not 0 is a component of its own.
+2. The cells are scanned row by row. An unlabeled cell that is not 0 starts a new component, which is filled
+   with an iterative flood fill over the cells with value 1, so every cell is visited once.
+   The fill also measures the component into a ComponentSummary: its size, bounding box, perimeter and centroid.
+   A caller that only needs the summaries takes them with nextSummary(), which builds no Index of the cells.
+3. The labeler stops after every component, so a caller takes the components one at a time and the scan
+   resumes from the next cell. Only the labeled cells and the current component are held: one bit per slot
+   (see CellSlots), which is a cell of a dense matrix and a cell that is not 0 of a sparse one, so the scan of a
+   sparse matrix visits only its stored cells.
+4. The components come in the order of their first cell, row by row.
+5. Jagged rows are supported; a cell has the neighbors that exist in the rows around it.
+6. The flood fill checks the CancellationToken of the current thread and stops at its deadline.
+ */
+
+/**
+ * ComponentLabeler returns the connected components of a matrix one by one, from a single scan.
+ */
+public class ComponentLabeler {
+
+    private final CellSlots slots;
+    private final BitSet labeled; // The labeled slots
+    private int row;
+    private int slot;
+
+    /**
+     * Constructs a ComponentLabeler before the first component of a matrix.
+     * @param matrix The matrix to label.
+     */
+    public ComponentLabeler(Matrix matrix) {
+        this.slots = new CellSlots(matrix);
+        this.labeled = new BitSet(slots.size());
+    }
+
+    /**
+     * Finds the next component of the scan.
+     * @return The cells of the component, or null if every component was returned.
+     * @throws ComputationTimeoutException If the deadline of the current request passed; the scan resumes
+     *                                     from the same component on the next call.
+     */
+    public HashSet<Index> next() {
+        if (!findStart()) {
+            return null;
+        }
+        HashSet<Index> component = new HashSet<>();
+        fill(row, slot, component);
+        slot++;
+        return component;
+    }
+
+    /**
+     * Finds the next component of the scan and measures it, without holding its cells.
+     * @return The summary of the component, or null if every component was returned.
+     * @throws ComputationTimeoutException If the deadline of the current request passed; the scan resumes
+     *                                     from the same component on the next call.
+     */
+    public ComponentSummary nextSummary() {
+        if (!findStart()) {
+            return null;
+        }
+        ComponentSummary summary = fill(row, slot, null);
+        slot++;
+        return summary;
+    }
+
+    /**
+     * Moves the scan to the first cell of the next component.
+     * @return true if there is another component.
+     */
+    private boolean findStart() {
+        // The slots of a row follow the slots of the row before, so the scan only moves forward
+        for (; row < slots.getRows(); row++) {
+            for (; slot < slots.end(row); slot++) {
+                if (slots.valueOf(slot, row) != 0 && !labeled.get(slot)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Labels the component of a cell with an iterative flood fill and measures it.
+     * @param component The set the cells are added to, or null if only the summary is needed.
+     */
+    private ComponentSummary fill(int startRow, int startSlot, HashSet<Index> component) {
+        int startColumn = slots.columnOf(startSlot, startRow);
+        if (slots.valueOf(startSlot, startRow) != 1) {
+            labeled.set(startSlot);
+            if (component != null) {
+                component.add(new Index(startRow, startColumn));
+            }
+            return new ComponentSummary(new Index(startRow, startColumn), 1, startRow, startColumn, startRow, startColumn,
+                    4, startRow, startColumn);
+        }
+
+        // The cells are labeled when they are queued, and stay in the queue so a timeout can unlabel them
+        IntArrayList rows = new IntArrayList();
+        IntArrayList columns = new IntArrayList();
+        CancellationToken token = CancellationToken.current();
+        rows.add(startRow);
+        columns.add(startColumn);
+        labeled.set(startSlot);
+        int minRow = startRow, minColumn = startColumn, maxRow = startRow, maxColumn = startColumn;
+        long perimeter = 0, rowSum = 0, columnSum = 0;
+        try {
+            for (int head = 0; head < rows.size(); head++) {
+                token.checkpoint();
+                int r = rows.get(head);
+                int c = columns.get(head);
+                if (component != null) {
+                    component.add(new Index(r, c));
+                }
+                minRow = Math.min(minRow, r);
+                minColumn = Math.min(minColumn, c);
+                maxRow = Math.max(maxRow, r);
+                maxColumn = Math.max(maxColumn, c);
+                rowSum += r;
+                columnSum += c;
+                for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                    int nr = r + WeightedGrid.ROW_OFFSETS[k];
+                    int nc = c + WeightedGrid.COL_OFFSETS[k];
+                    int neighbor = slots.oneSlot(nr, nc);
+                    boolean inComponent = neighbor >= 0;
+                    if (WeightedGrid.ROW_OFFSETS[k] == 0 || WeightedGrid.COL_OFFSETS[k] == 0) {
+                        // A side of the cell is on the perimeter unless the cell next to it is in the component
+                        perimeter += inComponent ? 0 : 1;
+                    }
+                    if (inComponent && !labeled.get(neighbor)) {
+                        labeled.set(neighbor);
+                        rows.add(nr);
+                        columns.add(nc);
+                    }
+                }
+            }
+        } catch (ComputationTimeoutException timeout) {
+            // The partial fill is unlabeled, so the next call fills the whole component again
+            for (int i = 0; i < rows.size(); i++) {
+                labeled.clear(slots.slotOf(rows.get(i), columns.get(i)));
+            }
+            throw timeout;
+        }
+        CellsVisited.add(rows.size());
+        return new ComponentSummary(new Index(startRow, startColumn), rows.size(), minRow, minColumn, maxRow, maxColumn,
+                perimeter, rowSum, columnSum);
+    }
+}
@@ -0,0 +1,159 @@
+package pojo;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/*
+1. ComponentLabels is the label map of the components that "connected component" answers, without diagonal steps:
+   - the cells with value 1 form components through their 4 neighbors,
+   - every other cell that is not 0 is a component of its own,
+   - the cells with value 0 are in no component.
+2. It is built once per matrix with one flood fill per component, so every cell is visited once. The Matrix keeps it
+   until a value of the matrix changes, so the next lookups on the same matrix do not search at all.
+3. labels holds the component of every slot of the matrix (see CellSlots), -1 for no component. A dense matrix has
+   a slot per cell, row by row, so jagged rows are supported. A sparse matrix has a slot per cell that is not 0,
+   so the scan, the fill and the arrays grow with those cells and not with the area of the matrix.
+4. The cells of the components are kept in compressed sparse row form: the slots of component l are
+   members[offsets[l]] to members[offsets[l + 1] - 1]. The flood fill adds the cells of a component one after
+   the other, so the arrays are filled in a single pass and a component is listed without scanning the matrix.
+5. "which component is this cell in", "are these two cells connected" and "how large is the component of this cell"
+   are array lookups; listing a component costs its size.
+6. The flood fill checks the CancellationToken of the current thread, so a build stops at the deadline of its request.
+ */
+
+/**
+ * ComponentLabels maps every cell of a matrix to its connected component, without diagonal steps.
+ */
+public class ComponentLabels {
+
+    private final CellSlots slots;
+    private final int[] labels;
+    private final int[] offsets;
+    private final int[] members;
+
+    private ComponentLabels(CellSlots slots, int[] labels, int[] offsets, int[] members) {
+        this.slots = slots;
+        this.labels = labels;
+        this.offsets = offsets;
+        this.members = members;
+    }
+
+    /**
+     * Labels the components of a matrix.
+     * @param matrix The matrix.
+     * @return The labels.
+     * @throws ComputationTimeoutException If the deadline of the current request passed.
+     */
+    public static ComponentLabels build(Matrix matrix) {
+        CellSlots slots = new CellSlots(matrix);
+        int nonZero = 0;
+        for (int r = 0; r < slots.getRows(); r++) {
+            for (int slot = slots.first(r); slot < slots.end(r); slot++) {
+                nonZero += slots.valueOf(slot, r) != 0 ? 1 : 0;
+            }
+        }
+        int[] labels = new int[slots.size()];
+        Arrays.fill(labels, -1);
+        int[] members = new int[nonZero];
+        IntArrayList offsets = new IntArrayList();
+        CancellationToken token = CancellationToken.current();
+        int end = 0; // The number of cells added to members
+        for (int r = 0; r < slots.getRows(); r++) {
+            for (int start = slots.first(r); start < slots.end(r); start++) {
+                int value = slots.valueOf(start, r);
+                if (value == 0 || labels[start] >= 0) {
+                    continue;
+                }
+                int label = offsets.size();
+                offsets.add(end);
+                labels[start] = label;
+                members[end++] = start;
+                if (value != 1) {
+                    continue;
+                }
+                // The cells added to members since the start of the component are the queue of its flood fill
+                for (int head = end - 1; head < end; head++) {
+                    token.checkpoint();
+                    int slot = members[head];
+                    int row = slots.rowOf(slot);
+                    int column = slots.columnOf(slot, row);
+                    for (int k = 0; k < 4; k++) {
+                        int neighbor = slots.oneSlot(row + WeightedGrid.ROW_OFFSETS[k], column + WeightedGrid.COL_OFFSETS[k]);
+                        if (neighbor >= 0 && labels[neighbor] < 0) {
+                            labels[neighbor] = label;
+                            members[end++] = neighbor;
+                        }
+                    }
+                }
+            }
+        }
+        offsets.add(end);
+        CellsVisited.add(end);
+        return new ComponentLabels(slots, labels, offsets.toArray(), members);
+    }
+
+    /**
+     * Returns the label of the component of a cell.
+     * @param index The cell.
+     * @return The label, from 0 to getCount() - 1, or -1 if the cell is 0 or outside the matrix.
+     */
+    public int labelOf(Index index) {
+        int slot = slots.slotOf(index.getRow(), index.getColumn());
+        return slot < 0 ? -1 : labels[slot];
+    }
+
+    /**
+     * Checks if two cells are in the same component.
+     * @param first  A cell.
+     * @param second Another cell.
+     * @return true if both cells are in a component and it is the same one.
+     */
+    public boolean connected(Index first, Index second) {
+        int label = labelOf(first);
+        return label >= 0 && label == labelOf(second);
+    }
+
+    /**
+     * Returns the size of the component of a cell.
+     * @param index The cell.
+     * @return The number of cells of its component, 0 if the cell is in none.
+     */
+    public int sizeOf(Index index) {
+        int label = labelOf(index);
+        return label < 0 ? 0 : offsets[label + 1] - offsets[label];
+    }
+
+    /**
+     * Returns the cells of the component of a cell, in the order of the flood fill that labeled them.
+     * @param index The cell.
+     * @return The cells of its component, empty if the cell is in none.
+     */
+    public Set<Index> componentOf(Index index) {
+        int label = labelOf(index);
+        Set<Index> component = new LinkedHashSet<>();
+        if (label >= 0) {
+            for (int i = offsets[label]; i < offsets[label + 1]; i++) {
+                int row = slots.rowOf(members[i]);
+                component.add(new Index(row, slots.columnOf(members[i], row)));
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Returns the number of components.
+     * @return The number of components.
+     */
+    public int getCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the memory the labels take.
+     * @return The size of the arrays in bytes.
+     */
+    public long memoryBytes() {
+        return slots.memoryBytes() + 4L * (labels.length + offsets.length + members.length);
+    }
+}
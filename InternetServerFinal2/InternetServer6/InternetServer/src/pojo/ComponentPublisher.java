@@ -0,0 +1,135 @@
+package pojo;
+
+import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+1. ComponentPublisher publishes the connected components of a matrix as a java.util.concurrent.Flow.Publisher,
+   one onNext per component, as soon as the ComponentLabeler finishes it.
+2. The components are only labeled on demand: the publisher labels as many components as its subscriber requested
+   and then stops, without holding a thread, until the subscriber requests more. A slow subscriber therefore keeps
+   the labeler, and the memory of the components, one request ahead of it.
+3. The labeling runs as drain tasks on the given executor, with the CancellationToken of the request attached.
+   A counter of pending drains makes sure one drain at a time runs, so the subscriber sees its signals in order.
+4. The publisher ends with onComplete after the last component, or with onError: a ComputationTimeoutException
+   at the deadline of the request, or the failure of the labeler.
+5. A publisher has one subscriber; a second one gets onError at once.
+ */
+
+/**
+ * ComponentPublisher streams the connected components of a matrix with demand-based backpressure.
+ */
+public class ComponentPublisher implements Flow.Publisher<HashSet<Index>> {
+
+    private final Matrix matrix;
+    private final Executor executor;
+    private final CancellationToken token;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructs a ComponentPublisher.
+     * @param matrix   The matrix whose components are published.
+     * @param executor The executor the components are labeled on.
+     * @param token    The deadline of the request, attached while the components are labeled.
+     */
+    public ComponentPublisher(Matrix matrix, Executor executor, CancellationToken token) {
+        this.matrix = matrix;
+        this.executor = executor;
+        this.token = token;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super HashSet<Index>> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A ComponentPublisher has only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new LabelingSubscription(subscriber));
+    }
+
+    /**
+     * The subscription of the subscriber, which labels the components it requested.
+     */
+    private class LabelingSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super HashSet<Index>> subscriber;
+        private final ComponentLabeler labeler = new ComponentLabeler(matrix);
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drains = new AtomicInteger(); // The drains that were asked for and not run yet
+        private volatile boolean done;
+
+        LabelingSubscription(Flow.Subscriber<? super HashSet<Index>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("The demand must be positive, not " + n));
+                return;
+            }
+            // The demand stays at Long.MAX_VALUE once it gets there, which means unbounded
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (drains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        /**
+         * Labels components while there is demand, then runs again if more demand came in meanwhile.
+         */
+        private void drain() {
+            CancellationToken previous = CancellationToken.current();
+            CancellationToken.attach(token);
+            try {
+                int missed = 1;
+                while (true) {
+                    while (!done && demand.get() > 0) {
+                        HashSet<Index> component = labeler.next();
+                        if (component == null) {
+                            done = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        subscriber.onNext(component);
+                    }
+                    missed = drains.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            } catch (RuntimeException failure) {
+                if (!done) {
+                    done = true;
+                    subscriber.onError(failure);
+                }
+            } finally {
+                CancellationToken.attach(previous);
+            }
+        }
+    }
+}
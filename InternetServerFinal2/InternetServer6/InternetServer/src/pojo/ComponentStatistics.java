@@ -0,0 +1,132 @@
+package pojo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+1. ComponentStatistics answers "component statistics": the statistics of the connected components of a matrix,
+   computed in the single scan of a ComponentLabeler, without building the Index set of any component.
+2. Every component counts toward the number of components, the number of cells and the size histogram, and the
+   largest component is kept. Only the components with at least minSize cells are listed, as ComponentSummary
+   objects, so the answer grows with the components the client asked for and not with the cells of the matrix.
+3. The histogram has a bucket per power of 2: bucket k counts the components with 2^k to 2^(k+1) - 1 cells.
+4. When the deadline passes, the statistics of the components labeled so far are the partial result.
+ */
+
+/**
+ * ComponentStatistics holds the count, size histogram, largest component and summaries of the components of a matrix.
+ */
+public class ComponentStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int minSize;
+    private long count;
+    private long cells;
+    private final long[] histogram = new long[Integer.SIZE];
+    private ComponentSummary largest;
+    private final ArrayList<ComponentSummary> components = new ArrayList<>();
+
+    /**
+     * Constructs empty statistics.
+     * @param minSize The smallest size of the components that are listed.
+     */
+    private ComponentStatistics(int minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * Computes the statistics of the components of a matrix in one scan.
+     * @param matrix  The matrix.
+     * @param minSize The smallest size of the components that are listed; larger than every component to list none.
+     * @return The statistics.
+     * @throws ComputationTimeoutException If the deadline of the current request passed, with the statistics
+     *                                     of the components labeled before it as the partial result.
+     */
+    public static ComponentStatistics of(Matrix matrix, int minSize) {
+        ComponentStatistics statistics = new ComponentStatistics(minSize);
+        ComponentLabeler labeler = new ComponentLabeler(matrix);
+        try {
+            ComponentSummary summary;
+            while ((summary = labeler.nextSummary()) != null) {
+                statistics.add(summary);
+            }
+        } catch (ComputationTimeoutException timeout) {
+            throw timeout.withPartialResult(statistics);
+        }
+        statistics.components.trimToSize();
+        return statistics;
+    }
+
+    /**
+     * Adds a component to the statistics.
+     */
+    private void add(ComponentSummary summary) {
+        count++;
+        cells += summary.getSize();
+        histogram[31 - Integer.numberOfLeadingZeros(summary.getSize())]++;
+        if (largest == null || summary.getSize() > largest.getSize()) {
+            largest = summary;
+        }
+        if (summary.getSize() >= minSize) {
+            components.add(summary);
+        }
+    }
+
+    /**
+     * Returns the number of components of the matrix.
+     * @return The number of components.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of cells in all the components, that is the cells that are not 0.
+     * @return The number of cells.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the size histogram of the components.
+     * @return The number of components with 2^k to 2^(k+1) - 1 cells at position k, up to the largest component.
+     */
+    public long[] getHistogram() {
+        return largest == null ? new long[0]
+                : Arrays.copyOf(histogram, 32 - Integer.numberOfLeadingZeros(largest.getSize()));
+    }
+
+    /**
+     * Returns the largest component, the first one found if several have its size.
+     * @return The largest component, or null if the matrix has no components.
+     */
+    public ComponentSummary getLargest() {
+        return largest;
+    }
+
+    /**
+     * Returns the smallest size of the listed components.
+     * @return The minimum size.
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns the summaries of the components with at least getMinSize() cells, row by row of their first cells.
+     * @return The listed components.
+     */
+    public List<ComponentSummary> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    @Override
+    public String toString() {
+        return count + " components of " + cells + " cells, histogram " + Arrays.toString(getHistogram())
+                + ", largest " + largest + ", " + components.size() + " with at least " + minSize + " cells";
+    }
+}
@@ -0,0 +1,162 @@
+package pojo;
+
+import server.CommandMetrics;
+import server.CountingOutputStream;
+import server.Log;
+import server.RequestTimeout;
+import server.StreamEnd;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/*
+1. A ComponentStream answers "stream connected components": it subscribes to a ComponentPublisher and writes every
+   component to the client as its own object, then a server.StreamEnd, instead of one HashSet of all the components.
+2. The subscriber keeps a window of -Dserver.stream.window components (16 by default): it requests that many at first,
+   and requests more only for the components that were written to the socket, half a window at a time, so the
+   publisher is not woken up for every component. When the client reads slowly the writes block,
+   no more components are requested, and the publisher stops labeling. The backpressure of TCP thus becomes
+   the demand of the Flow subscription.
+3. The stream is reset after every RESET_BYTES of components, so neither side keeps back-references to more than
+   about a MiB of the components written before. It is not reset after every component: a reset clears the whole
+   handle table of the stream, which stays as large as the largest component written, so resetting after each of
+   the small components that follow a large one costs far more than writing them.
+   The output is flushed whenever no other component is waiting, so the first one leaves at once.
+4. When the deadline of the request passes, the publisher ends with a ComputationTimeoutException and the StreamEnd
+   carries the RequestTimeout. The components written before it are the partial result.
+ */
+
+/**
+ * The ComponentStream class writes the connected components of a matrix to a client as they are labeled.
+ */
+class ComponentStream implements Flow.Subscriber<HashSet<Index>> {
+    // The number of components labeled ahead of the socket
+    private static final int WINDOW = Math.max(1, Integer.getInteger("server.stream.window", 16));
+    // The time a publisher is given past the deadline to end the stream itself
+    private static final long STOP_GRACE_MILLIS = 100;
+    // The bytes of components written between two resets of the stream
+    private static final long RESET_BYTES = 1 << 20;
+    // The signal of the end of the components
+    private static final Object COMPLETE = new Object();
+
+    private final MatrixHandler handler;
+    private final ObjectOutputStream objectOutputStream;
+    private final CountingOutputStream countingOutputStream;
+    private final CommandMetrics metrics;
+    private final String command;
+    private final CancellationToken token;
+    private final BlockingQueue<Object> signals = new ArrayBlockingQueue<>(WINDOW + 1);
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Constructs the stream of a request.
+     * @param handler              The handler of the session, which records timeouts.
+     * @param objectOutputStream   The stream to the client.
+     * @param countingOutputStream The stream under objectOutputStream that counts the bytes.
+     * @param metrics              The metrics of the command.
+     * @param command              The command of the request.
+     * @param token                The deadline of the request.
+     */
+    ComponentStream(MatrixHandler handler, ObjectOutputStream objectOutputStream, CountingOutputStream countingOutputStream,
+                    CommandMetrics metrics, String command, CancellationToken token) {
+        this.handler = handler;
+        this.objectOutputStream = objectOutputStream;
+        this.countingOutputStream = countingOutputStream;
+        this.metrics = metrics;
+        this.command = command;
+        this.token = token;
+    }
+
+    /**
+     * Streams the components of a matrix to the client and returns after the StreamEnd was written.
+     * @param matrix   The matrix.
+     * @param executor The executor the components are labeled on.
+     * @throws IOException          If the client cannot be written to.
+     * @throws InterruptedException If the session is cancelled while it waits for a component.
+     */
+    void run(Matrix matrix, Executor executor) throws IOException, InterruptedException {
+        new ComponentPublisher(matrix, executor, token).subscribe(this);
+        long items = 0;
+        int written = 0; // The components written since the last request
+        long writeNanos = 0;
+        long bytesBefore = countingOutputStream.getCount();
+        long lastReset = bytesBefore;
+        StreamEnd end = null;
+        try {
+            while (end == null) {
+                long waitNanos = token.getRemainingNanos() + TimeUnit.MILLISECONDS.toNanos(STOP_GRACE_MILLIS);
+                Object signal = signals.poll(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                if (signal == null) {
+                    // The labeler did not stop at its deadline by itself
+                    token.cancel();
+                    signal = token.timeout();
+                }
+                if (signal instanceof HashSet<?> component) {
+                    long start = System.nanoTime();
+                    objectOutputStream.writeObject(component);
+                    if (countingOutputStream.getCount() - lastReset >= RESET_BYTES) {
+                        objectOutputStream.reset();
+                        lastReset = countingOutputStream.getCount();
+                    }
+                    if (signals.isEmpty()) {
+                        objectOutputStream.flush();
+                    }
+                    writeNanos += System.nanoTime() - start;
+                    items++;
+                    if (++written >= Math.max(1, WINDOW / 2)) {
+                        subscription.request(written);
+                        written = 0;
+                    }
+                } else if (signal == COMPLETE) {
+                    end = new StreamEnd(command, items, null, null);
+                } else if (signal instanceof ComputationTimeoutException timeoutException) {
+                    RequestTimeout timeout = handler.timeoutResponse(command, metrics, timeoutException);
+                    end = new StreamEnd(command, items, timeout, null);
+                } else {
+                    Throwable failure = (Throwable) signal;
+                    Log.error("\"" + command + "\" failed", failure);
+                    metrics.recordError();
+                    end = new StreamEnd(command, items, null, failure.getMessage() == null ? failure.toString() : failure.getMessage());
+                }
+            }
+            long start = System.nanoTime();
+            objectOutputStream.writeObject(end);
+            objectOutputStream.flush();
+            writeNanos += System.nanoTime() - start;
+            metrics.recordResponse(writeNanos, countingOutputStream.getCount() - bytesBefore);
+        } finally {
+            // The client is gone, the session was cancelled or the labeling stopped
+            if (end == null || !end.isComplete()) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(WINDOW);
+    }
+
+    @Override
+    public void onNext(HashSet<Index> component) {
+        // The demand never exceeds the free room of the queue
+        signals.offer(component);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        signals.offer(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        signals.offer(COMPLETE);
+    }
+}
@@ -0,0 +1,104 @@
+package pojo;
+
+import java.io.Serializable;
+
+/**
+ * ComponentSummary describes a connected component without its cells: its first cell, size, bounding box,
+ * perimeter and centroid.
+ */
+public class ComponentSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Index first;
+    private final int size;
+    private final int minRow, minColumn, maxRow, maxColumn;
+    private final long perimeter;
+    private final long rowSum, columnSum;
+
+    /**
+     * Constructs the summary of a component.
+     * @param first     The first cell of the component, row by row.
+     * @param size      The number of cells.
+     * @param minRow    The top row of the bounding box.
+     * @param minColumn The left column of the bounding box.
+     * @param maxRow    The bottom row of the bounding box.
+     * @param maxColumn The right column of the bounding box.
+     * @param perimeter The number of cell sides between the component and the cells or borders around it.
+     * @param rowSum    The sum of the rows of the cells.
+     * @param columnSum The sum of the columns of the cells.
+     */
+    public ComponentSummary(Index first, int size, int minRow, int minColumn, int maxRow, int maxColumn,
+                            long perimeter, long rowSum, long columnSum) {
+        this.first = first;
+        this.size = size;
+        this.minRow = minRow;
+        this.minColumn = minColumn;
+        this.maxRow = maxRow;
+        this.maxColumn = maxColumn;
+        this.perimeter = perimeter;
+        this.rowSum = rowSum;
+        this.columnSum = columnSum;
+    }
+
+    /**
+     * Returns the first cell of the component in the order of the scan, which identifies it.
+     * @return The first cell.
+     */
+    public Index getFirst() {
+        return first;
+    }
+
+    /**
+     * Returns the number of cells of the component.
+     * @return The size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the top left corner of the bounding box of the component.
+     * @return The smallest row and the smallest column.
+     */
+    public Index getMin() {
+        return new Index(minRow, minColumn);
+    }
+
+    /**
+     * Returns the bottom right corner of the bounding box of the component.
+     * @return The largest row and the largest column.
+     */
+    public Index getMax() {
+        return new Index(maxRow, maxColumn);
+    }
+
+    /**
+     * Returns the perimeter of the component: the sides of its cells that do not touch another cell of it.
+     * @return The perimeter, in cell sides.
+     */
+    public long getPerimeter() {
+        return perimeter;
+    }
+
+    /**
+     * Returns the mean row of the cells of the component.
+     * @return The row of the centroid.
+     */
+    public double getCentroidRow() {
+        return (double) rowSum / size;
+    }
+
+    /**
+     * Returns the mean column of the cells of the component.
+     * @return The column of the centroid.
+     */
+    public double getCentroidColumn() {
+        return (double) columnSum / size;
+    }
+
+    @Override
+    public String toString() {
+        return "Component at " + first + ": " + size + " cells in " + getMin() + "-" + getMax() + ", perimeter " + perimeter
+                + String.format(", centroid (%.2f,%.2f)", getCentroidRow(), getCentroidColumn());
+    }
+}
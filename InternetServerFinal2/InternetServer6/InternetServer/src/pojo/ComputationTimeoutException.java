@@ -0,0 +1,92 @@
+package pojo;
+
+import java.io.Serializable;
+
+/**
+ * The ComputationTimeoutException is thrown by an algorithm when its CancellationToken expires or is cancelled.
+ * On its way out the algorithms add what they found so far: the best path weight and a partial result.
+ * It has no stack trace, since it ends a computation on purpose and is never logged as a failure.
+ */
+public class ComputationTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long expansions;
+    private final long elapsedMillis;
+    private final boolean cancelled;
+    private long bestWeight = -1;
+    private Serializable partialResult;
+
+    /**
+     * Constructs the exception of a stopped computation.
+     * @param expansions    The number of cells the computation expanded.
+     * @param elapsedMillis The time since the start of the request.
+     * @param cancelled     true if the token was cancelled, false if its deadline passed.
+     */
+    public ComputationTimeoutException(long expansions, long elapsedMillis, boolean cancelled) {
+        super((cancelled ? "Cancelled" : "Timed out") + " after " + elapsedMillis + " ms and " + expansions + " expanded cells",
+                null, false, false);
+        this.expansions = expansions;
+        this.elapsedMillis = elapsedMillis;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Records the weight of the lightest path to the destination found so far.
+     * @param bestWeight The weight, or -1 if the destination was not reached.
+     * @return This exception, to be rethrown.
+     */
+    public ComputationTimeoutException withBestWeight(long bestWeight) {
+        this.bestWeight = bestWeight;
+        return this;
+    }
+
+    /**
+     * Records the part of the result found so far.
+     * @param partialResult The partial result, such as the connected components found so far.
+     * @return This exception, to be rethrown.
+     */
+    public ComputationTimeoutException withPartialResult(Serializable partialResult) {
+        this.partialResult = partialResult;
+        return this;
+    }
+
+    /**
+     * Returns the number of cells the computation expanded, counted at its last check.
+     * @return The number of expanded cells.
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Returns the time from the start of the request to the stop.
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns whether the computation was cancelled instead of running out of time.
+     * @return true if the token was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the weight of the lightest path to the destination found so far.
+     * @return The weight, or -1 if it is not known.
+     */
+    public long getBestWeight() {
+        return bestWeight;
+    }
+
+    /**
+     * Returns the part of the result found so far.
+     * @return The partial result, or null if there is none.
+     */
+    public Serializable getPartialResult() {
+        return partialResult;
+    }
+}
@@ -0,0 +1,321 @@
+package pojo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+    /*
+    * Explanation of how the algorithm works (delta-stepping):
+
+    1. DeltaSteppingDijkstra answers the same "lightest paths" query as WeightAwareDijkstra, with the same result.
+    2. Cells are kept in buckets of width delta: a cell with tentative distance d is in bucket d / delta.
+    3. A step entering a cell of value at most delta is "light", any other step is "heavy".
+    4. The smallest non-empty bucket is emptied in phases. In every phase, all its cells relax their light steps
+       in parallel on a ForkJoinPool; a tentative distance is lowered with a compare-and-set, so concurrent relaxations
+       of the same cell keep the smallest one. Cells whose distance was lowered are put in their new bucket, which may be
+       the current one again, and the next phase starts.
+    5. When the current bucket stays empty, the distances of all the cells removed from it are final,
+       and their heavy steps are relaxed in parallel once.
+    6. The search stops once the bucket of the destination was processed, since every cell that is not heavier
+       than the destination has its final distance by then.
+    7. The lightest paths are rebuilt by a PathDag from the same distances the sequential engine computes,
+       so the predecessor sets are the same.
+    8. The parallel search only pays off on large grids with more than one processor, see MIN_PARALLEL_CELLS.
+    */
+
+/**
+ * DeltaSteppingDijkstra is a parallel single-source lightest path search for large weighted matrices.
+ */
+public class DeltaSteppingDijkstra {
+
+    // Grids with fewer cells than this are searched by the sequential engine
+    public static final int MIN_PARALLEL_CELLS = 1 << 20;
+
+    // Bucket ranges smaller than this are relaxed by a single task
+    static final int CHUNK_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+    private final int delta;
+
+    /**
+     * Constructs a DeltaSteppingDijkstra with a bucket width chosen from the grid (its largest value).
+     * @param pool The ForkJoinPool the relaxations run on.
+     */
+    public DeltaSteppingDijkstra(ForkJoinPool pool) {
+        this(pool, 0);
+    }
+
+    /**
+     * Constructs a DeltaSteppingDijkstra with the given bucket width.
+     * @param pool  The ForkJoinPool the relaxations run on.
+     * @param delta The width of a bucket, or 0 to use the largest value of the grid.
+     */
+    public DeltaSteppingDijkstra(ForkJoinPool pool, int delta) {
+        this.pool = pool;
+        this.delta = delta;
+    }
+
+    /**
+     * Checks if the parallel search is expected to beat the sequential engine on a grid.
+     * @param grid The grid to search.
+     * @param pool The pool the search would run on.
+     * @return true if the grid is large enough and the pool has more than one worker.
+     */
+    public static boolean isWorthIt(WeightedGrid grid, ForkJoinPool pool) {
+        return grid.size() >= MIN_PARALLEL_CELLS && pool.getParallelism() > 1
+                && grid.getStrategy() != WeightedGrid.Strategy.LEGACY;
+    }
+
+    /**
+     * Finds the lightest paths in a traversable matrix from a source index to a destination index.
+     *
+     * @param aTraversable     The traversable matrix to search for paths.
+     * @param sourceIndex      The index of the source node.
+     * @param destinationIndex The index of the destination node.
+     * @return A set of the lightest paths from the source to the destination.
+     */
+    public HashSet<List<Node<Index>>> findLightestPaths(TraversableMatrix aTraversable, Index sourceIndex, Index destinationIndex) {
+        WeightedGrid grid = aTraversable.getInnerMatrix().getWeightedGrid();
+        if (grid.getStrategy() == WeightedGrid.Strategy.LEGACY || !grid.contains(sourceIndex) || !grid.contains(destinationIndex)) {
+            return new WeightAwareDijkstra().findLightestPaths(aTraversable, sourceIndex, destinationIndex);
+        }
+
+        aTraversable.setSource(sourceIndex);
+        aTraversable.setDestination(destinationIndex);
+
+        // If we have 2 zeros one next to each other than we have infinite paths.
+        if (grid.hasTouchingZeroCells()) {
+            return HashSet.newHashSet(0);
+        }
+
+        int destination = grid.idOf(destinationIndex);
+        PathDag dag = computeDistances(grid, grid.idOf(sourceIndex), destination);
+        return new HashSet<>(dag.enumeratePaths(destination));
+    }
+
+    /**
+     * Computes the lightest distances from a source cell with delta-stepping.
+     *
+     * @param grid   The grid to search, whose strategy must not be LEGACY.
+     * @param source The id of the source cell.
+     * @param target The id of the cell the search may stop at, or -1 to settle the whole grid.
+     * @return The distances from the source.
+     */
+    public PathDag computeDistances(WeightedGrid grid, int source, int target) {
+        int width = delta > 0 ? delta : Math.max(1, grid.getMaxWeight());
+        AtomicIntegerArray distances = new AtomicIntegerArray(grid.size());
+        for (int v = 0; v < grid.size(); v++) {
+            distances.set(v, WeightedGrid.UNREACHED);
+        }
+        distances.set(source, grid.weight(source));
+
+        List<IntArrayList> buckets = new ArrayList<>();
+        addToBucket(buckets, source, grid.weight(source) / width);
+
+        // stamp[v] == -(bucket + 1) while v is in the current phase, and bucket + 1 once its heavy steps were relaxed
+        int[] stamp = new int[grid.size()];
+        int settledCount = 0;
+        CancellationToken token = CancellationToken.current();
+
+        for (int current = 0; current < buckets.size(); current++) {
+            if (target >= 0 && distances.get(target) != WeightedGrid.UNREACHED && distances.get(target) / width < current) {
+                break;
+            }
+            IntArrayList removed = new IntArrayList();
+
+            while (!buckets.get(current).isEmpty()) {
+                IntArrayList bucket = buckets.get(current);
+                buckets.set(current, new IntArrayList());
+
+                // Drop the stale entries of cells that moved to a lighter bucket, and the duplicates
+                IntArrayList phase = new IntArrayList(bucket.size());
+                for (int i = 0; i < bucket.size(); i++) {
+                    int u = bucket.get(i);
+                    if (distances.get(u) / width == current && stamp[u] != -(current + 1)) {
+                        stamp[u] = -(current + 1);
+                        phase.add(u);
+                    }
+                }
+                for (int i = 0; i < phase.size(); i++) {
+                    int u = phase.get(i);
+                    stamp[u] = 0;
+                    removed.add(u);
+                }
+
+                IntArrayList improved = relax(grid, distances, phase.toArray(), width, true);
+                for (int i = 0; i < improved.size(); i++) {
+                    int v = improved.get(i);
+                    addToBucket(buckets, v, distances.get(v) / width);
+                }
+            }
+
+            // Heavy steps are relaxed once, from the final distances of the cells of the bucket
+            IntArrayList settled = new IntArrayList(removed.size());
+            for (int i = 0; i < removed.size(); i++) {
+                int u = removed.get(i);
+                if (stamp[u] != current + 1) {
+                    stamp[u] = current + 1;
+                    settled.add(u);
+                }
+            }
+            settledCount += settled.size();
+            try {
+                token.checkpoint(settled.size());
+            } catch (ComputationTimeoutException timeout) {
+                throw timeout.withBestWeight(target >= 0 && distances.get(target) != WeightedGrid.UNREACHED ? distances.get(target) : -1);
+            }
+
+            IntArrayList improved = relax(grid, distances, settled.toArray(), width, false);
+            for (int i = 0; i < improved.size(); i++) {
+                int v = improved.get(i);
+                addToBucket(buckets, v, distances.get(v) / width);
+            }
+        }
+
+        int[] result = new int[grid.size()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = distances.get(v);
+        }
+        return new PathDag(grid, source, result, settledCount);
+    }
+
+    /**
+     * Relaxes the light or the heavy steps of the given cells, in parallel when there are many of them.
+     * @return The cells whose distance was lowered, possibly more than once.
+     */
+    private IntArrayList relax(WeightedGrid grid, AtomicIntegerArray distances, int[] cells, int width, boolean light) {
+        RelaxTask task = new RelaxTask(grid, distances, cells, 0, cells.length, width, light);
+        return cells.length <= CHUNK_SIZE ? task.compute() : pool.invoke(task);
+    }
+
+    /**
+     * Adds a cell to a bucket, growing the list of buckets when needed.
+     */
+    private static void addToBucket(List<IntArrayList> buckets, int cell, int bucket) {
+        while (buckets.size() <= bucket) {
+            buckets.add(new IntArrayList());
+        }
+        buckets.get(bucket).add(cell);
+    }
+
+    /**
+     * Relaxes the light or heavy steps of a range of cells, splitting itself while the range is large.
+     */
+    @SuppressWarnings("serial") // A ForkJoinTask is Serializable by inheritance; the task is never serialized
+    private static final class RelaxTask extends RecursiveTask<IntArrayList> {
+        private final WeightedGrid grid;
+        private final AtomicIntegerArray distances;
+        private final int[] cells;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final boolean light;
+
+        RelaxTask(WeightedGrid grid, AtomicIntegerArray distances, int[] cells, int from, int to, int width, boolean light) {
+            this.grid = grid;
+            this.distances = distances;
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.light = light;
+        }
+
+        @Override
+        protected IntArrayList compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                RelaxTask left = new RelaxTask(grid, distances, cells, from, middle, width, light);
+                RelaxTask right = new RelaxTask(grid, distances, cells, middle, to, width, light);
+                left.fork();
+                IntArrayList rightCells = right.compute();
+                IntArrayList leftCells = left.join();
+                leftCells.addAll(rightCells);
+                return leftCells;
+            }
+
+            IntArrayList improved = new IntArrayList();
+            for (int i = from; i < to; i++) {
+                int u = cells[i];
+                int distance = distances.get(u);
+                for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                    int v = grid.neighbor(u, k);
+                    if (v < 0) {
+                        continue;
+                    }
+                    int weight = grid.weight(v);
+                    if ((weight <= width) != light) {
+                        continue;
+                    }
+                    long newDistance = (long) distance + weight;
+                    if (newDistance < WeightedGrid.UNREACHED && lowerTo(v, (int) newDistance)) {
+                        improved.add(v);
+                    }
+                }
+            }
+            return improved;
+        }
+
+        /**
+         * Lowers the distance of a cell with a compare-and-set loop.
+         * @return true if the distance was lowered, false if it was already smaller or equal.
+         */
+        private boolean lowerTo(int cell, int newDistance) {
+            while (true) {
+                int current = distances.get(cell);
+                if (newDistance >= current) {
+                    return false;
+                }
+                if (distances.compareAndSet(cell, current, newDistance)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A sample usage of the DeltaSteppingDijkstra class: compares it with the sequential engine on growing grids.
+     * @param args Command-line arguments: the largest grid side, the bucket width and the number of workers.
+     */
+    public static void main(String[] args) {
+        int maxSide = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int delta = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        DeltaSteppingDijkstra parallel = new DeltaSteppingDijkstra(pool, delta);
+        WeightAwareDijkstra sequential = new WeightAwareDijkstra();
+        Random random = new Random(5);
+        System.out.println(workers + " workers, delta " + (delta > 0 ? delta : "= largest value"));
+
+        for (int side = 250; side <= maxSide; side <<= 1) {
+            int[][] cells = new int[side][side];
+            for (int[] row : cells) {
+                for (int j = 0; j < side; j++) {
+                    row[j] = 1 + random.nextInt(9);
+                }
+            }
+            WeightedGrid grid = new Matrix(cells).getWeightedGrid();
+            sequential.computeDistances(grid, 0, -1); // warm up
+            parallel.computeDistances(grid, 0, -1);
+
+            long t0 = System.nanoTime();
+            PathDag expected = sequential.computeDistances(grid, 0, -1);
+            long t1 = System.nanoTime();
+            PathDag actual = parallel.computeDistances(grid, 0, -1);
+            long t2 = System.nanoTime();
+
+            for (int v = 0; v < grid.size(); v++) {
+                if (expected.getDistance(v) != actual.getDistance(v)) {
+                    throw new IllegalStateException("Distances differ at cell " + grid.indexOf(v));
+                }
+            }
+            System.out.printf("%5dx%-5d sequential %8.2f ms, delta-stepping %8.2f ms%n", side, side, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+        }
+        pool.shutdown();
+    }
+}
@@ -50,9 +50,11 @@ public class DfsVisit<T> implements Serializable {
      */
     public Set<T> traverse(Traversable<T> aTraversable, Boolean bool){
         Collection<Node<T>> reachableNodes;
+        CancellationToken token = CancellationToken.current();
         getWorkingStack().push(aTraversable.getRoot());
         while (!getWorkingStack().empty()){
             Node<T> removed = getWorkingStack().pop();
+            token.checkpoint();
             getFinished().add(removed);
             //"connected component" case
             if (bool){
@@ -74,6 +76,7 @@ public class DfsVisit<T> implements Serializable {
         Set<T> visitedData = new LinkedHashSet<>();
         for (Node<T> node: getFinished())
             visitedData.add(node.getData());
+        CellsVisited.add(getFinished().size());
 
         getFinished().clear();
         getWorkingStack().clear();
@@ -52,9 +52,11 @@ public class DfsVisitTls<T> implements Serializable {
     public Set<T> traverse(Traversable<T> aTraversable , Boolean bool){
 
         Collection<Node<T>> reachableNodes;
+        CancellationToken token = CancellationToken.current();
         threadLocalPush(aTraversable.getRoot());
         while (!threadLocalIsEmpty()){
             Node<T> removed = threadLocalPop();
+            token.checkpoint();
             getFinished().get().add(removed);
             if (bool) {
                 reachableNodes = aTraversable.getReachableNodes(removed);
@@ -73,6 +75,7 @@ public class DfsVisitTls<T> implements Serializable {
         Set<T> visitedData = new LinkedHashSet<>();
         for (Node<T> node: getFinished().get())
             visitedData.add(node.getData());
+        CellsVisited.add(getFinished().get().size());
         getFinished().get().clear();
         getWorkingStack().get().clear();
 
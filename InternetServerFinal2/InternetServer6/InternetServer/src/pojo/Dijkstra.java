@@ -57,6 +57,7 @@ import java.util.*;
             Node<Index> destinationNode = aTraversable.getDestination();
 
             int minWeight = Integer.MAX_VALUE;
+            CancellationToken token = CancellationToken.current();
 
             // Map to store the distances from the source node to each node
             Map<Node<Index>, Integer> distances = new HashMap<>();
@@ -71,6 +72,12 @@ import java.util.*;
             while (!threadLocalIsEmpty()) {
                 List<Node<Index>> currentPath = threadLocalDequeue();
                 Node<Index> currentNode = currentPath.get(currentPath.size() - 1);
+                try {
+                    token.checkpoint();
+                } catch (ComputationTimeoutException timeout) {
+                    // The lightest path found so far, if the destination was reached
+                    throw timeout.withBestWeight(minWeight == Integer.MAX_VALUE ? -1 : minWeight);
+                }
 
                 // If the current node is the destination node
                 if (currentNode.equals(destinationNode)) {
@@ -97,6 +104,7 @@ import java.util.*;
 
                     // If we have 2 zeros one next to each other than we have infinite paths.
                     if(aTraversable.getValue(currentNode.getData()) == 0 && aTraversable.getValue(neighbor.getData()) == 0) {
+                        CellsVisited.add(distances.size());
                         return HashSet.newHashSet(0); // return an empty hashSet.
                     }
                     // Calculate the distance to the neighbor from the source node
@@ -123,6 +131,7 @@ import java.util.*;
             // Clean up the thread-local variables
             getQueueTLS().remove();
             getShortestPathsTLS().remove();
+            CellsVisited.add(distances.size());
 
             // Return the set of the shortest paths
             return shortestPaths;
@@ -0,0 +1,82 @@
+package pojo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HierarchicalPath is the answer of the hierarchical path engine: one light path together with
+ * a certified lower bound of the lightest weight, which tells how far the path can be from optimal.
+ */
+public class HierarchicalPath implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<Index> path; // An ArrayList, so that the reply serializes
+    private final int weight;
+    private final int lowerBound;
+
+    /**
+     * Constructs a HierarchicalPath.
+     * @param path       The cells of the path, from the source to the destination; copied unless it is an ArrayList.
+     * @param weight     The weight of the path, the sum of the values of its cells.
+     * @param lowerBound A lower bound of the weight of the lightest path.
+     */
+    public HierarchicalPath(List<Index> path, int weight, int lowerBound) {
+        this.path = path instanceof ArrayList<Index> list ? list : new ArrayList<>(path);
+        this.weight = weight;
+        this.lowerBound = lowerBound;
+    }
+
+    /**
+     * Returns the cells of the path.
+     * @return The path from the source to the destination, empty if there is no path.
+     */
+    public List<Index> getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the weight of the path.
+     * @return The sum of the values of the cells of the path.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns a lower bound of the lightest weight between the source and the destination.
+     * @return The lower bound.
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Checks if the path is known to be a lightest path.
+     * @return true if the weight of the path reaches the lower bound, false if it may be heavier than optimal.
+     */
+    public boolean isProvablyOptimal() {
+        return weight == lowerBound;
+    }
+
+    /**
+     * Returns how much heavier than optimal the path can be, as a fraction of the lower bound.
+     * @return (weight - lowerBound) / lowerBound, 0 for a path that is provably optimal.
+     */
+    public double getMaxSuboptimality() {
+        if (weight == lowerBound) {
+            return 0;
+        }
+        return lowerBound == 0 ? Double.POSITIVE_INFINITY : (weight - lowerBound) / (double) lowerBound;
+    }
+
+    /**
+     * Returns a string representation of the path.
+     * @return The string representation.
+     */
+    @Override
+    public String toString() {
+        return "weight " + weight + " (at most " + String.format("%.2f", getMaxSuboptimality() * 100)
+                + "% above optimal): " + path;
+    }
+}
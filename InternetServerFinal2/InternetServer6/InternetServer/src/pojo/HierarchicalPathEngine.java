@@ -0,0 +1,670 @@
+package pojo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+    /*
+    * Explanation of how the hierarchical engine works (HPA* - Hierarchical Path-Finding A*):
+
+    1. The matrix is split into square clusters (tiles) of clusterSize x clusterSize cells.
+    2. Every border between two clusters that share a side is split into transitionsPerBorder segments.
+       In each segment, the pair of facing cells with the smallest total weight becomes a transition:
+       one abstract node on each side of the border, joined by an inter-cluster edge.
+    3. Inside each cluster, a Dijkstra restricted to the cluster computes the weight between every two of its
+       abstract nodes once. Those are the intra-cluster edges of the abstract graph.
+    4. A query connects the source and the destination to the abstract nodes of their own clusters with two
+       restricted searches, runs Dijkstra on the small abstract graph, and (when both are in the same cluster)
+       also tries the direct path inside the cluster.
+    5. The abstract path is refined into concrete cells by replaying the restricted searches edge by edge.
+    6. The result is not always a lightest path, so it carries a lower bound of the lightest weight:
+       the landmark bound when landmark tables cover the matrix, and a bound from the smallest cell value otherwise.
+       The engine keeps the landmark tables it was queried with while they covered the matrix, and sums how much
+       its updates lowered cells since then. A lightest path visits a cell at most once, so the landmark bound minus
+       that sum is still a lower bound after the updates, and the tables are not rebuilt for every changed cell.
+    7. When a cell is updated, only its cluster is marked dirty, together with the borders (and the clusters behind them)
+       when the cell lies on a cluster side. Dirty tiles are rebuilt before the next query.
+    */
+
+/**
+ * HierarchicalPathEngine answers approximate lightest-path queries on very large matrices through an abstract graph of clusters.
+ */
+public class HierarchicalPathEngine {
+
+    static final int DEFAULT_CLUSTER_SIZE = 32;
+    static final int DEFAULT_TRANSITIONS_PER_BORDER = 2;
+
+    // The sides of a cluster, each owning transitionsPerBorder abstract node slots
+    private static final int NORTH = 0, EAST = 1, SOUTH = 2, WEST = 3;
+    private static final int SIDES = 4;
+
+    private final Matrix matrix;
+    private final int rows;
+    private final int columns;
+    private final int clusterSize;
+    private final int transitionsPerBorder;
+    private final int slotsPerCluster;
+    private final int clusterRows;
+    private final int clusterColumns;
+
+    private final int[][] slotCells;  // per cluster, the cell id of every abstract node slot or -1
+    private final int[][] intraCosts; // per cluster, the weight from slot i to slot j (start cell excluded)
+    private final BitSet dirtyClusters;
+    private final BitSet dirtyBorders; // 2 per cluster: its east border and its south border
+    private int minWeight;
+    private LandmarkIndex landmarks; // The landmark tables that covered the matrix when a query first used them, or null
+    private long loweredSinceLandmarks; // The weight the updates took off the cells since the landmark tables were built
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs a HierarchicalPathEngine with the default cluster size.
+     * @param matrix The matrix to answer queries on. Its values must not be negative.
+     */
+    public HierarchicalPathEngine(Matrix matrix) {
+        this(matrix, DEFAULT_CLUSTER_SIZE, DEFAULT_TRANSITIONS_PER_BORDER);
+    }
+
+    /**
+     * Constructs a HierarchicalPathEngine and builds its abstract graph.
+     * @param matrix               The matrix to answer queries on. Its values must not be negative.
+     * @param clusterSize          The side of a cluster, in cells.
+     * @param transitionsPerBorder The number of transitions on every border between two clusters.
+     */
+    public HierarchicalPathEngine(Matrix matrix, int clusterSize, int transitionsPerBorder) {
+        WeightedGrid grid = matrix.getWeightedGrid();
+        if (grid.getStrategy() == WeightedGrid.Strategy.LEGACY) {
+            throw new IllegalArgumentException("The hierarchical engine needs a rectangular matrix with non-negative values");
+        }
+        this.matrix = matrix;
+        this.rows = grid.getRows();
+        this.columns = grid.getColumns();
+        this.clusterSize = Math.max(2, clusterSize);
+        this.transitionsPerBorder = Math.max(1, transitionsPerBorder);
+        this.slotsPerCluster = SIDES * this.transitionsPerBorder;
+        this.clusterRows = (rows + this.clusterSize - 1) / this.clusterSize;
+        this.clusterColumns = (columns + this.clusterSize - 1) / this.clusterSize;
+        this.minWeight = grid.getMinWeight();
+
+        int numOfClusters = clusterRows * clusterColumns;
+        this.slotCells = new int[numOfClusters][slotsPerCluster];
+        this.intraCosts = new int[numOfClusters][];
+        for (int[] slots : slotCells) {
+            Arrays.fill(slots, -1);
+        }
+        this.dirtyClusters = new BitSet(numOfClusters);
+        this.dirtyBorders = new BitSet(2 * numOfClusters);
+        dirtyClusters.set(0, numOfClusters);
+        dirtyBorders.set(0, 2 * numOfClusters);
+        rebuildDirtyTiles();
+    }
+
+    /**
+     * Updates the value of a cell of the matrix and marks the tiles it affects for rebuilding.
+     * @param index The cell to update.
+     * @param value The new value of the cell, not negative.
+     */
+    public void update(Index index, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("The hierarchical engine does not support negative values");
+        }
+        lock.writeLock().lock();
+        try {
+            loweredSinceLandmarks += Math.max(0, weight(cellId(index.getRow(), index.getColumn())) - value);
+            matrix.setValue(index, value);
+            minWeight = Math.min(minWeight, value);
+
+            int row = index.getRow();
+            int column = index.getColumn();
+            int cluster = clusterOf(row, column);
+            dirtyClusters.set(cluster);
+
+            // A cell on a cluster side can change the transitions of that border, and so the abstract nodes of both clusters
+            int clusterRow = cluster / clusterColumns;
+            int clusterColumn = cluster % clusterColumns;
+            if (column == columnEnd(clusterColumn) - 1 && clusterColumn + 1 < clusterColumns) {
+                markBorder(cluster, EAST);
+            }
+            if (column == clusterColumn * clusterSize && clusterColumn > 0) {
+                markBorder(cluster - 1, EAST);
+            }
+            if (row == rowEnd(clusterRow) - 1 && clusterRow + 1 < clusterRows) {
+                markBorder(cluster, SOUTH);
+            }
+            if (row == clusterRow * clusterSize && clusterRow > 0) {
+                markBorder(cluster - clusterColumns, SOUTH);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the east or south border of a cluster, and the clusters on both of its sides, as dirty.
+     */
+    private void markBorder(int cluster, int side) {
+        dirtyBorders.set(2 * cluster + (side == EAST ? 0 : 1));
+        dirtyClusters.set(cluster);
+        dirtyClusters.set(side == EAST ? cluster + 1 : cluster + clusterColumns);
+    }
+
+    /**
+     * Rebuilds the transitions of the dirty borders, then the intra-cluster edges of the dirty clusters.
+     * @return The number of clusters that were rebuilt.
+     */
+    private int rebuildDirtyTiles() {
+        for (int border = dirtyBorders.nextSetBit(0); border >= 0; border = dirtyBorders.nextSetBit(border + 1)) {
+            rebuildBorder(border / 2, border % 2 == 0 ? EAST : SOUTH);
+        }
+        dirtyBorders.clear();
+
+        int rebuilt = 0;
+        for (int cluster = dirtyClusters.nextSetBit(0); cluster >= 0; cluster = dirtyClusters.nextSetBit(cluster + 1)) {
+            rebuildIntraEdges(cluster);
+            rebuilt++;
+        }
+        dirtyClusters.clear();
+        return rebuilt;
+    }
+
+    /**
+     * Picks the transitions of the east or south border of a cluster, one per segment of the border.
+     */
+    private void rebuildBorder(int cluster, int side) {
+        int clusterRow = cluster / clusterColumns;
+        int clusterColumn = cluster % clusterColumns;
+        boolean east = side == EAST;
+        if ((east && clusterColumn + 1 >= clusterColumns) || (!east && clusterRow + 1 >= clusterRows)) {
+            return;
+        }
+        int neighbor = east ? cluster + 1 : cluster + clusterColumns;
+        int facingSide = east ? WEST : NORTH;
+
+        // The border runs along the rows of the cluster (east) or along its columns (south)
+        int start = east ? clusterRow * clusterSize : clusterColumn * clusterSize;
+        int length = (east ? rowEnd(clusterRow) : columnEnd(clusterColumn)) - start;
+        int fixedInside = east ? columnEnd(clusterColumn) - 1 : rowEnd(clusterRow) - 1;
+
+        for (int k = 0; k < transitionsPerBorder; k++) {
+            int from = start + k * length / transitionsPerBorder;
+            int to = start + (k + 1) * length / transitionsPerBorder;
+            int bestInside = -1, bestOutside = -1;
+            long bestWeight = Long.MAX_VALUE;
+            for (int position = from; position < to; position++) {
+                int inside = east ? cellId(position, fixedInside) : cellId(fixedInside, position);
+                int outside = east ? cellId(position, fixedInside + 1) : cellId(fixedInside + 1, position);
+                long pairWeight = (long) weight(inside) + weight(outside);
+                if (pairWeight < bestWeight) {
+                    bestWeight = pairWeight;
+                    bestInside = inside;
+                    bestOutside = outside;
+                }
+            }
+            slotCells[cluster][side * transitionsPerBorder + k] = bestInside;
+            slotCells[neighbor][facingSide * transitionsPerBorder + k] = bestOutside;
+        }
+    }
+
+    /**
+     * Computes the weight between every two abstract nodes of a cluster with restricted searches.
+     */
+    private void rebuildIntraEdges(int cluster) {
+        int[] costs = new int[slotsPerCluster * slotsPerCluster];
+        Arrays.fill(costs, WeightedGrid.UNREACHED);
+        int[] slots = slotCells[cluster];
+        for (int i = 0; i < slotsPerCluster; i++) {
+            if (slots[i] < 0) {
+                continue;
+            }
+            LocalSearch search = new LocalSearch(cluster, slots[i]);
+            for (int j = 0; j < slotsPerCluster; j++) {
+                if (slots[j] >= 0) {
+                    costs[i * slotsPerCluster + j] = search.distanceTo(slots[j]);
+                }
+            }
+        }
+        intraCosts[cluster] = costs;
+    }
+
+    /**
+     * Finds a light path from a source index to a destination index through the abstract graph.
+     *
+     * @param source      The index of the source cell.
+     * @param destination The index of the destination cell.
+     * @return The path with its weight and a lower bound of the lightest weight.
+     */
+    public HierarchicalPath findPath(Index source, Index destination) {
+        return findPath(source, destination, null);
+    }
+
+    /**
+     * Finds a light path from a source index to a destination index through the abstract graph.
+     *
+     * @param source      The index of the source cell.
+     * @param destination The index of the destination cell.
+     * @param landmarks   Landmark tables used for a tighter lower bound, ignored when null or built for another matrix
+     *                    or for values this engine did not update since.
+     * @return The path with its weight and a lower bound of the lightest weight.
+     */
+    public HierarchicalPath findPath(Index source, Index destination, LandmarkIndex landmarks) {
+        if (!contains(source) || !contains(destination)) {
+            throw new IllegalArgumentException("The source and the destination must be inside the matrix");
+        }
+        ensureRebuilt(landmarks);
+
+        lock.readLock().lock();
+        try {
+            int s = cellId(source.getRow(), source.getColumn());
+            int t = cellId(destination.getRow(), destination.getColumn());
+            List<Integer> cells = s == t ? List.of(s) : searchAbstractGraph(s, t);
+
+            List<Index> path = new ArrayList<>();
+            long pathWeight = 0;
+            for (int cell : cells) {
+                path.add(new Index(cell / columns, cell % columns));
+                pathWeight += weight(cell);
+            }
+            return new HierarchicalPath(path, (int) pathWeight, lowerBound(s, t, landmarks));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the dirty tiles, if any, before a query, and keeps the landmark tables of the query if they cover the matrix.
+     */
+    private void ensureRebuilt(LandmarkIndex queryLandmarks) {
+        lock.writeLock().lock();
+        try {
+            if (queryLandmarks != null && queryLandmarks != landmarks && queryLandmarks.covers(matrix)) {
+                landmarks = queryLandmarks;
+                loweredSinceLandmarks = 0;
+            }
+            if (!dirtyBorders.isEmpty() || !dirtyClusters.isEmpty()) {
+                rebuildDirtyTiles();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the abstract search between two different cells and refines the best abstract path into cells.
+     */
+    private List<Integer> searchAbstractGraph(int s, int t) {
+        int sourceCluster = clusterOf(s / columns, s % columns);
+        int targetCluster = clusterOf(t / columns, t % columns);
+        LocalSearch fromSource = new LocalSearch(sourceCluster, s);
+        LocalSearch fromTarget = new LocalSearch(targetCluster, t);
+
+        // The best complete path found so far: either direct inside one cluster, or ending at an abstract node
+        long best = WeightedGrid.UNREACHED;
+        int bestLastNode = -1;
+        if (sourceCluster == targetCluster) {
+            best = (long) weight(s) + fromSource.distanceTo(t);
+        }
+
+        int numOfNodes = slotCells.length * slotsPerCluster;
+        int[] distances = new int[numOfNodes];
+        int[] predecessors = new int[numOfNodes];
+        boolean[] settled = new boolean[numOfNodes];
+        Arrays.fill(distances, WeightedGrid.UNREACHED);
+        Arrays.fill(predecessors, -1);
+        IntMinHeap heap = new IntMinHeap();
+
+        for (int slot = 0; slot < slotsPerCluster; slot++) {
+            int cell = slotCells[sourceCluster][slot];
+            if (cell >= 0) {
+                int node = sourceCluster * slotsPerCluster + slot;
+                distances[node] = weight(s) + fromSource.distanceTo(cell);
+                heap.add(distances[node], node);
+            }
+        }
+
+        // Only the abstract search checks the token: stopping a tile rebuild would leave the engine half updated
+        CancellationToken token = CancellationToken.current();
+        while (!heap.isEmpty()) {
+            int key = heap.peekKey();
+            int node = heap.poll();
+            if (settled[node] || key != distances[node]) {
+                continue;
+            }
+            if (key >= best) {
+                break;
+            }
+            settled[node] = true;
+            try {
+                token.checkpoint();
+            } catch (ComputationTimeoutException timeout) {
+                throw timeout.withBestWeight(best == WeightedGrid.UNREACHED ? -1 : best);
+            }
+
+            int cluster = node / slotsPerCluster;
+            int slot = node % slotsPerCluster;
+            int cell = slotCells[cluster][slot];
+
+            if (cluster == targetCluster) {
+                // The weight from the abstract node to the target, the abstract node excluded and the target included
+                long toTarget = (long) fromTarget.distanceTo(cell) + weight(t) - weight(cell);
+                if (key + toTarget < best) {
+                    best = key + toTarget;
+                    bestLastNode = node;
+                }
+            }
+
+            // Intra-cluster edges
+            int[] costs = intraCosts[cluster];
+            for (int other = 0; other < slotsPerCluster; other++) {
+                int cost = costs[slot * slotsPerCluster + other];
+                if (other != slot && cost != WeightedGrid.UNREACHED) {
+                    relax(heap, distances, predecessors, settled, node, cluster * slotsPerCluster + other, (long) key + cost);
+                }
+            }
+
+            // The inter-cluster edge to the facing transition
+            int partner = partnerOf(cluster, slot);
+            if (partner >= 0) {
+                int partnerCell = slotCells[partner / slotsPerCluster][partner % slotsPerCluster];
+                relax(heap, distances, predecessors, settled, node, partner, (long) key + weight(partnerCell));
+            }
+        }
+
+        if (best >= WeightedGrid.UNREACHED) {
+            return List.of();
+        }
+        if (bestLastNode < 0) {
+            return fromSource.pathTo(t);
+        }
+
+        // Refine the abstract path: source -> first node, node -> node, last node -> target
+        IntArrayList abstractPath = new IntArrayList();
+        for (int node = bestLastNode; node >= 0; node = predecessors[node]) {
+            abstractPath.add(node);
+        }
+        List<Integer> cells = new ArrayList<>();
+        int first = abstractPath.get(abstractPath.size() - 1);
+        appendAll(cells, fromSource.pathTo(cellOfNode(first)));
+        for (int i = abstractPath.size() - 1; i > 0; i--) {
+            int from = abstractPath.get(i);
+            int to = abstractPath.get(i - 1);
+            if (from / slotsPerCluster == to / slotsPerCluster) {
+                appendAll(cells, new LocalSearch(from / slotsPerCluster, cellOfNode(from)).pathTo(cellOfNode(to)));
+            } else {
+                appendAll(cells, List.of(cellOfNode(to)));
+            }
+        }
+        List<Integer> toTarget = fromTarget.pathTo(cellOfNode(bestLastNode));
+        for (int i = toTarget.size() - 1; i >= 0; i--) {
+            appendAll(cells, List.of(toTarget.get(i)));
+        }
+        return cells;
+    }
+
+    /**
+     * Lowers the distance of an abstract node if the given one is smaller.
+     */
+    private void relax(IntMinHeap heap, int[] distances, int[] predecessors, boolean[] settled, int from, int to, long distance) {
+        if (!settled[to] && distance < distances[to]) {
+            distances[to] = (int) distance;
+            predecessors[to] = from;
+            heap.add(distances[to], to);
+        }
+    }
+
+    /**
+     * Appends cells to a path, skipping a cell equal to the last one (two abstract nodes can share a cell).
+     */
+    private static void appendAll(List<Integer> path, List<Integer> cells) {
+        for (int cell : cells) {
+            if (path.isEmpty() || path.get(path.size() - 1) != cell) {
+                path.add(cell);
+            }
+        }
+    }
+
+    /**
+     * Returns the abstract node facing the given slot across its border, or -1 if there is none.
+     */
+    private int partnerOf(int cluster, int slot) {
+        int side = slot / transitionsPerBorder;
+        int k = slot % transitionsPerBorder;
+        int neighbor = switch (side) {
+            case NORTH -> cluster - clusterColumns;
+            case EAST -> cluster + 1;
+            case SOUTH -> cluster + clusterColumns;
+            default -> cluster - 1;
+        };
+        int facingSide = (side + 2) % SIDES;
+        if (slotCells[cluster][slot] < 0 || neighbor < 0 || neighbor >= slotCells.length) {
+            return -1;
+        }
+        return neighbor * slotsPerCluster + facingSide * transitionsPerBorder + k;
+    }
+
+    /**
+     * Returns a lower bound of the lightest weight between two cells.
+     */
+    private int lowerBound(int s, int t, LandmarkIndex landmarks) {
+        if (s == t) {
+            return weight(s);
+        }
+        int rowDistance = Math.abs(s / columns - t / columns);
+        int columnDistance = Math.abs(s % columns - t % columns);
+        // Any path visits at least max(rowDistance, columnDistance) - 1 cells between the source and the destination
+        long bound = (long) weight(s) + weight(t) + (long) (Math.max(rowDistance, columnDistance) - 1) * Math.max(0, minWeight);
+        if (landmarks != null && landmarks == this.landmarks) {
+            bound = Math.max(bound, (long) weight(s) + landmarks.lowerBound(s, t) - loweredSinceLandmarks);
+        }
+        return (int) Math.min(bound, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of abstract nodes of the engine.
+     * @return The number of transition cells over all the clusters.
+     */
+    public int getNumOfAbstractNodes() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int[] slots : slotCells) {
+                for (int cell : slots) {
+                    if (cell >= 0) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes taken by the abstract graph.
+     * @return The memory of the slot and intra-cluster cost arrays, array headers included.
+     */
+    public long memoryBytes() {
+        final long arrayHeader = 16;
+        long perCluster = 2 * arrayHeader + 4L * slotsPerCluster + 4L * slotsPerCluster * slotsPerCluster;
+        return 2 * (arrayHeader + 8L * slotCells.length) + perCluster * slotCells.length;
+    }
+
+    /**
+     * Returns the matrix of this engine.
+     * @return The matrix.
+     */
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    private boolean contains(Index index) {
+        return index != null && index.getRow() >= 0 && index.getRow() < rows && index.getColumn() >= 0 && index.getColumn() < columns;
+    }
+
+    private int clusterOf(int row, int column) {
+        return (row / clusterSize) * clusterColumns + column / clusterSize;
+    }
+
+    private int rowEnd(int clusterRow) {
+        return Math.min(rows, (clusterRow + 1) * clusterSize);
+    }
+
+    private int columnEnd(int clusterColumn) {
+        return Math.min(columns, (clusterColumn + 1) * clusterSize);
+    }
+
+    private int cellId(int row, int column) {
+        return row * columns + column;
+    }
+
+    private int cellOfNode(int node) {
+        return slotCells[node / slotsPerCluster][node % slotsPerCluster];
+    }
+
+    private int weight(int cell) {
+        return matrix.getPrimitiveMatrix()[cell / columns][cell % columns];
+    }
+
+    /**
+     * A Dijkstra restricted to the cells of one cluster. The distance of the start cell is 0,
+     * so distanceTo() is the weight of the path without its first cell.
+     */
+    private final class LocalSearch {
+        private final int rowStart;
+        private final int columnStart;
+        private final int height;
+        private final int width;
+        private final int[] distances;
+        private final int[] predecessors;
+
+        LocalSearch(int cluster, int startCell) {
+            int clusterRow = cluster / clusterColumns;
+            int clusterColumn = cluster % clusterColumns;
+            this.rowStart = clusterRow * clusterSize;
+            this.columnStart = clusterColumn * clusterSize;
+            this.height = rowEnd(clusterRow) - rowStart;
+            this.width = columnEnd(clusterColumn) - columnStart;
+            this.distances = new int[height * width];
+            this.predecessors = new int[height * width];
+            Arrays.fill(distances, WeightedGrid.UNREACHED);
+            Arrays.fill(predecessors, -1);
+
+            boolean[] settled = new boolean[height * width];
+            IntMinHeap heap = new IntMinHeap();
+            int start = local(startCell);
+            distances[start] = 0;
+            heap.add(0, start);
+            int settledCount = 0;
+
+            while (!heap.isEmpty()) {
+                int key = heap.peekKey();
+                int u = heap.poll();
+                if (settled[u] || key != distances[u]) {
+                    continue;
+                }
+                settled[u] = true;
+                settledCount++;
+                for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                    int newRow = u / width + WeightedGrid.ROW_OFFSETS[k];
+                    int newColumn = u % width + WeightedGrid.COL_OFFSETS[k];
+                    if (newRow < 0 || newRow >= height || newColumn < 0 || newColumn >= width) {
+                        continue;
+                    }
+                    int v = newRow * width + newColumn;
+                    long newDistance = (long) key + weight(global(v));
+                    if (!settled[v] && newDistance < distances[v]) {
+                        distances[v] = (int) newDistance;
+                        predecessors[v] = u;
+                        heap.add(distances[v], v);
+                    }
+                }
+            }
+            CellsVisited.add(settledCount);
+        }
+
+        int distanceTo(int cell) {
+            return distances[local(cell)];
+        }
+
+        List<Integer> pathTo(int cell) {
+            List<Integer> path = new ArrayList<>();
+            for (int u = local(cell); u >= 0; u = predecessors[u]) {
+                path.add(0, global(u));
+            }
+            return path;
+        }
+
+        private int local(int cell) {
+            return (cell / columns - rowStart) * width + (cell % columns - columnStart);
+        }
+
+        private int global(int localCell) {
+            return cellId(rowStart + localCell / width, columnStart + localCell % width);
+        }
+    }
+
+    /**
+     * A sample usage of the HierarchicalPathEngine class: compares its paths and latency with the exact search.
+     * @param args Command-line arguments: rows, columns, cluster size, number of queries and transitions per border.
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int clusterSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CLUSTER_SIZE;
+        int numOfQueries = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+        int transitionsPerBorder = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_TRANSITIONS_PER_BORDER;
+
+        Random random = new Random(7);
+        int[][] cells = new int[rows][columns];
+        for (int[] row : cells) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = 1 + random.nextInt(9);
+            }
+        }
+        Matrix matrix = new Matrix(cells);
+
+        long start = System.nanoTime();
+        HierarchicalPathEngine engine = new HierarchicalPathEngine(matrix, clusterSize, transitionsPerBorder);
+        System.out.println("Grid " + rows + "x" + columns + ", clusters of " + clusterSize + ": "
+                + (System.nanoTime() - start) / 1_000_000 + " ms preprocessing, " + engine.getNumOfAbstractNodes()
+                + " abstract nodes, " + engine.memoryBytes() / 1024 + " KiB");
+
+        WeightAwareDijkstra dijkstra = new WeightAwareDijkstra();
+        long hierarchicalTime = 0, exactTime = 0;
+        double gapSum = 0, maxGap = 0;
+        for (int q = 0; q < numOfQueries; q++) {
+            Index source = new Index(random.nextInt(rows), random.nextInt(columns));
+            Index destination = new Index(random.nextInt(rows), random.nextInt(columns));
+
+            long t0 = System.nanoTime();
+            HierarchicalPath path = engine.findPath(source, destination);
+            long t1 = System.nanoTime();
+            WeightedGrid grid = matrix.getWeightedGrid();
+            int exact = dijkstra.computeDistances(grid, grid.idOf(source), grid.idOf(destination)).getDistance(grid.idOf(destination));
+            long t2 = System.nanoTime();
+
+            hierarchicalTime += t1 - t0;
+            exactTime += t2 - t1;
+            double gap = (path.getWeight() - exact) / (double) exact;
+            gapSum += gap;
+            maxGap = Math.max(maxGap, gap);
+        }
+        System.out.printf("hierarchical: %.3f ms/query, exact: %.3f ms/query%n",
+                hierarchicalTime / 1e6 / numOfQueries, exactTime / 1e6 / numOfQueries);
+        System.out.printf("weight above optimal: %.2f%% on average, %.2f%% at most%n", gapSum * 100 / numOfQueries, maxGap * 100);
+
+        // Every update is followed by a query, which pays for rebuilding the tiles of that update
+        long updateTime = 0;
+        for (int i = 0; i < numOfQueries; i++) {
+            Index source = new Index(random.nextInt(rows), random.nextInt(columns));
+            Index destination = new Index(Math.min(rows - 1, source.getRow() + clusterSize), Math.min(columns - 1, source.getColumn() + clusterSize));
+            long t0 = System.nanoTime();
+            engine.update(new Index(random.nextInt(rows), random.nextInt(columns)), 1 + random.nextInt(9));
+            engine.findPath(source, destination);
+            updateTime += System.nanoTime() - t0;
+        }
+        System.out.printf("cell update + query: %.3f ms/update%n", updateTime / 1e6 / numOfQueries);
+    }
+}
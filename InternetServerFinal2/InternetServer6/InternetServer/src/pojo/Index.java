@@ -1,7 +1,6 @@
 package pojo;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 
 /**
@@ -41,12 +40,14 @@ public class Index implements Serializable {
 
     /**
      * Computes the hash code for this Index object.
+     * The row is multiplied by a large odd constant, so the cells of a large matrix do not share hash codes
+     * the way 31 * row + column does once the rows are wider than 31 columns.
      * @return The hash code value.
      */
 
     @Override
     public int hashCode() {
-        return Objects.hash(getRow(), getColumn());
+        return getRow() * 0x9E3779B1 + getColumn();
     }
 
     /**
@@ -0,0 +1,109 @@
+package pojo;
+
+import java.util.Arrays;
+
+/**
+ * IntArrayList is a minimal growable list of primitive ints.
+ * It is used by the grid engines as a stack, a bucket or a frontier without boxing every cell into an Integer.
+ */
+final class IntArrayList {
+
+    private int[] elements;
+    private int size;
+
+    /**
+     * Constructs an empty IntArrayList with a small initial capacity.
+     */
+    IntArrayList() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty IntArrayList with the given initial capacity.
+     * @param initialCapacity The initial capacity of the list.
+     */
+    IntArrayList(int initialCapacity) {
+        this.elements = new int[Math.max(1, initialCapacity)];
+        this.size = 0;
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     * @param value The value to append.
+     */
+    void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length << 1);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * Appends all the values of another list to the end of this list.
+     * @param other The list to append.
+     */
+    void addAll(IntArrayList other) {
+        if (size + other.size > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(elements.length << 1, size + other.size));
+        }
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Removes and returns the last value of the list.
+     * @return The last value.
+     */
+    int removeLast() {
+        return elements[--size];
+    }
+
+    /**
+     * Returns the value at the given position.
+     * @param position The position of the value.
+     * @return The value at that position.
+     */
+    int get(int position) {
+        return elements[position];
+    }
+
+    /**
+     * Replaces the value at the given position.
+     * @param position The position of the value.
+     * @param value    The new value.
+     */
+    void set(int position, int value) {
+        elements[position] = value;
+    }
+
+    /**
+     * Returns the number of values in the list.
+     * @return The size of the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list is empty.
+     * @return true if the list holds no values, false otherwise.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the values from the list, keeping its capacity.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the values of the list as an array.
+     * @return The values of the list.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,81 @@
+package pojo;
+
+import java.util.Arrays;
+
+/**
+ * IntMinHeap is a binary min-heap of (key, value) int pairs, stored in two parallel arrays.
+ * The weighted engines use it as the priority queue of Dijkstra and A* without boxing the queue entries.
+ */
+final class IntMinHeap {
+
+    private int[] keys = new int[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    /**
+     * Adds a value with the given key to the heap.
+     * @param key   The priority of the value, smaller comes first.
+     * @param value The value to add.
+     */
+    void add(int key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+            values = Arrays.copyOf(values, size << 1);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Returns the smallest key of the heap without removing it.
+     * @return The smallest key.
+     */
+    int peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes the entry with the smallest key and returns its value.
+     * @return The value of the removed entry.
+     */
+    int poll() {
+        int result = values[0];
+        int key = keys[--size];
+        int value = values[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return result;
+    }
+
+    /**
+     * Checks if the heap is empty.
+     * @return true if the heap holds no entries, false otherwise.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,315 @@
+package pojo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+    /*
+    * Explanation of how the landmarks work (ALT - A*, Landmarks and the Triangle inequality):
+
+    1. For a static matrix, a few cells are picked as landmarks and the lightest weight T(L, v) between every
+       landmark L and every cell v is stored in a primitive int array, one array per landmark.
+    2. The landmarks are picked by farthest-point selection: the first one is the cell farthest from cell (0,0),
+       every next one is the cell whose lightest weight to the closest landmark picked so far is the largest.
+    3. A path weight counts every cell of the path, so the weight still to pay from a cell v to the destination t is
+       T(v, t) - weight(v). The triangle inequality gives two lower bounds for it, for every landmark L:
+       - T(L, t) - T(L, v)
+       - T(v, L) - T(t, L) + weight(t) - weight(v)
+    4. The largest of those bounds (and 0) is a consistent A* heuristic, so a cell popped from the heap has its exact distance.
+    5. A query runs A* from the source and keeps popping cells while their estimate is not heavier than the destination.
+       Every cell on a lightest path is settled that way, and the lightest paths are rebuilt by a PathDag,
+       exactly like WeightAwareDijkstra does, while far fewer cells are visited.
+    */
+
+/**
+ * LandmarkIndex preprocesses a static matrix once so that repeated "lightest paths" queries can run as A* searches.
+ */
+public class LandmarkIndex {
+
+    private final WeightedGrid grid;
+    private final int[] landmarks;
+    private final int[][] landmarkDistances;
+
+    /**
+     * Builds the landmark tables of a grid.
+     * @param grid           The grid to preprocess. Its strategy must not be LEGACY.
+     * @param numOfLandmarks The number of landmarks to pick.
+     */
+    public LandmarkIndex(WeightedGrid grid, int numOfLandmarks) {
+        if (grid.getStrategy() == WeightedGrid.Strategy.LEGACY) {
+            throw new IllegalArgumentException("Landmarks need a rectangular matrix with non-negative values");
+        }
+        this.grid = grid;
+
+        int count = Math.max(1, Math.min(numOfLandmarks, grid.size()));
+        WeightAwareDijkstra dijkstra = new WeightAwareDijkstra();
+        int[] chosen = new int[count];
+        int[][] tables = new int[count][];
+        BitSet isLandmark = new BitSet(grid.size());
+
+        // The first landmark is the cell farthest from the corner
+        PathDag fromCorner = dijkstra.computeDistances(grid, 0, -1);
+        int next = farthestCell(fromCorner::getDistance, isLandmark);
+        int[] closestLandmark = new int[grid.size()];
+        Arrays.fill(closestLandmark, WeightedGrid.UNREACHED);
+
+        int picked = 0;
+        while (picked < count) {
+            PathDag fromLandmark = dijkstra.computeDistances(grid, next, -1);
+            int[] table = new int[grid.size()];
+            for (int v = 0; v < table.length; v++) {
+                table[v] = fromLandmark.getDistance(v);
+                closestLandmark[v] = Math.min(closestLandmark[v], table[v]);
+            }
+            chosen[picked] = next;
+            tables[picked] = table;
+            isLandmark.set(next);
+            picked++;
+
+            next = farthestCell(v -> closestLandmark[v], isLandmark);
+        }
+
+        this.landmarks = chosen;
+        this.landmarkDistances = tables;
+    }
+
+    /**
+     * Builds the landmark tables of a matrix.
+     * @param matrix         The matrix to preprocess.
+     * @param numOfLandmarks The number of landmarks to pick.
+     * @return The landmark index of the matrix.
+     */
+    public static LandmarkIndex build(Matrix matrix, int numOfLandmarks) {
+        return new LandmarkIndex(matrix.getWeightedGrid(), numOfLandmarks);
+    }
+
+    /**
+     * Returns the cell with the largest distance, skipping the given landmarks.
+     */
+    private int farthestCell(IntUnaryOperator distance, BitSet skip) {
+        int best = skip.nextClearBit(0);
+        long bestDistance = -1;
+        for (int v = 0; v < grid.size(); v++) {
+            int d = distance.applyAsInt(v);
+            if (d != WeightedGrid.UNREACHED && d > bestDistance && !skip.get(v)) {
+                best = v;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks if this index was built for the current content of the given matrix.
+     * Every change of the matrix drops its weighted view, so the check does not build a view of its own.
+     * @param matrix The matrix to check.
+     * @return true if the landmark tables can be used for the matrix, false otherwise.
+     */
+    public boolean covers(Matrix matrix) {
+        return matrix != null && matrix.getBuiltWeightedGrid() == grid;
+    }
+
+    /**
+     * Finds the lightest paths from a source index to a destination index with A* guided by the landmarks.
+     * The result is the same set WeightAwareDijkstra and Dijkstra return.
+     *
+     * @param aTraversable     The traversable matrix to search for paths.
+     * @param sourceIndex      The index of the source node.
+     * @param destinationIndex The index of the destination node.
+     * @return A set of the lightest paths from the source to the destination.
+     */
+    public HashSet<List<Node<Index>>> findLightestPaths(TraversableMatrix aTraversable, Index sourceIndex, Index destinationIndex) {
+        if (!covers(aTraversable.getInnerMatrix()) || !grid.contains(sourceIndex) || !grid.contains(destinationIndex)) {
+            return new WeightAwareDijkstra().findLightestPaths(aTraversable, sourceIndex, destinationIndex);
+        }
+
+        aTraversable.setSource(sourceIndex);
+        aTraversable.setDestination(destinationIndex);
+
+        // If we have 2 zeros one next to each other than we have infinite paths.
+        if (grid.hasTouchingZeroCells()) {
+            return HashSet.newHashSet(0);
+        }
+
+        int destination = grid.idOf(destinationIndex);
+        PathDag dag = computeDistances(grid.idOf(sourceIndex), destination);
+        return new HashSet<>(dag.enumeratePaths(destination));
+    }
+
+    /**
+     * Runs A* from a source cell until every cell on a lightest path to the target is settled.
+     * @param source The id of the source cell.
+     * @param target The id of the target cell.
+     * @return The distances from the source, exact for every cell on a lightest path to the target.
+     */
+    public PathDag computeDistances(int source, int target) {
+        int[] distances = new int[grid.size()];
+        int[] estimates = new int[grid.size()];
+        boolean[] settled = new boolean[grid.size()];
+        Arrays.fill(distances, WeightedGrid.UNREACHED);
+        Arrays.fill(estimates, -1);
+
+        IntMinHeap heap = new IntMinHeap();
+        distances[source] = grid.weight(source);
+        heap.add(priority(distances[source], source, target, estimates), source);
+        int bound = WeightedGrid.UNREACHED;
+        int settledCount = 0;
+        CancellationToken token = CancellationToken.current();
+
+        while (!heap.isEmpty()) {
+            int key = heap.peekKey();
+            int u = heap.poll();
+            if (settled[u] || key != priority(distances[u], u, target, estimates)) {
+                continue;
+            }
+            if (key > bound) {
+                break;
+            }
+            settled[u] = true;
+            settledCount++;
+            try {
+                token.checkpoint();
+            } catch (ComputationTimeoutException timeout) {
+                throw timeout.withBestWeight(target >= 0 && distances[target] != WeightedGrid.UNREACHED ? distances[target] : -1);
+            }
+            if (u == target) {
+                bound = key;
+            }
+
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int v = grid.neighbor(u, k);
+                if (v < 0 || settled[v]) {
+                    continue;
+                }
+                long newDistance = (long) distances[u] + grid.weight(v);
+                if (newDistance < distances[v]) {
+                    distances[v] = (int) newDistance;
+                    heap.add(priority(distances[v], v, target, estimates), v);
+                }
+            }
+        }
+        return new PathDag(grid, source, distances, settledCount);
+    }
+
+    /**
+     * Returns the A* priority of a cell: its distance plus the landmark estimate of the weight still to pay.
+     */
+    private int priority(int distance, int v, int target, int[] estimates) {
+        if (estimates[v] < 0) {
+            estimates[v] = lowerBound(v, target);
+        }
+        return (int) Math.min((long) distance + estimates[v], WeightedGrid.UNREACHED - 1);
+    }
+
+    /**
+     * Returns a lower bound of the weight still to pay from a cell to the target, the cell itself excluded.
+     * @param v      The id of the cell.
+     * @param target The id of the target cell.
+     * @return The largest landmark bound, never negative.
+     */
+    int lowerBound(int v, int target) {
+        long best = 0;
+        for (int[] table : landmarkDistances) {
+            if (table[v] == WeightedGrid.UNREACHED || table[target] == WeightedGrid.UNREACHED) {
+                continue;
+            }
+            best = Math.max(best, (long) table[target] - table[v]);
+            best = Math.max(best, (long) table[v] - table[target] + grid.weight(target) - grid.weight(v));
+        }
+        return (int) best;
+    }
+
+    /**
+     * Returns the number of bytes taken by the landmark tables.
+     * @return The memory of the landmark ids and distance arrays, array headers included.
+     */
+    public long memoryBytes() {
+        final long arrayHeader = 16;
+        long bytes = arrayHeader + 4L * landmarks.length;
+        bytes += arrayHeader + 8L * landmarkDistances.length;
+        for (int[] table : landmarkDistances) {
+            bytes += arrayHeader + 4L * table.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the landmarks of this index.
+     * @return The landmark cells as indices.
+     */
+    public List<Index> getLandmarks() {
+        return Arrays.stream(landmarks).mapToObj(grid::indexOf).toList();
+    }
+
+    /**
+     * Returns the grid this index was built for.
+     * @return The grid.
+     */
+    public WeightedGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * A sample usage of the LandmarkIndex class: compares the query latency of A* with landmarks against plain search.
+     * @param args Command-line arguments: rows, columns, number of landmarks and number of queries.
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int numOfLandmarks = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int numOfQueries = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        Random random = new Random(42);
+        int[][] cells = new int[rows][columns];
+        for (int[] row : cells) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = 1 + random.nextInt(9);
+            }
+        }
+        WeightedGrid grid = new Matrix(cells).getWeightedGrid();
+
+        long start = System.nanoTime();
+        LandmarkIndex index = new LandmarkIndex(grid, numOfLandmarks);
+        long preprocessing = System.nanoTime() - start;
+        System.out.println("Grid " + rows + "x" + columns + ", " + numOfLandmarks + " landmarks: "
+                + preprocessing / 1_000_000 + " ms preprocessing, " + index.memoryBytes() / 1024 + " KiB of tables");
+
+        int[][] queries = new int[numOfQueries][2];
+        for (int[] query : queries) {
+            query[0] = random.nextInt(grid.size());
+            query[1] = random.nextInt(grid.size());
+        }
+
+        WeightAwareDijkstra dijkstra = new WeightAwareDijkstra();
+        // Warm up both searches before measuring
+        for (int i = 0; i < Math.min(20, numOfQueries); i++) {
+            dijkstra.computeDistances(grid, queries[i][0], queries[i][1]);
+            index.computeDistances(queries[i][0], queries[i][1]);
+        }
+
+        long plainTime = 0, landmarkTime = 0, plainSettled = 0, landmarkSettled = 0;
+        for (int[] query : queries) {
+            long t0 = System.nanoTime();
+            PathDag plain = dijkstra.computeDistances(grid, query[0], query[1]);
+            long t1 = System.nanoTime();
+            PathDag guided = index.computeDistances(query[0], query[1]);
+            long t2 = System.nanoTime();
+
+            if (plain.getDistance(query[1]) != guided.getDistance(query[1])) {
+                throw new IllegalStateException("Landmark search returned a different lightest weight");
+            }
+            plainTime += t1 - t0;
+            landmarkTime += t2 - t1;
+            plainSettled += plain.getSettledCount();
+            landmarkSettled += guided.getSettledCount();
+        }
+
+        System.out.printf("plain search: %.3f ms/query, %d cells settled/query%n",
+                plainTime / 1e6 / numOfQueries, plainSettled / numOfQueries);
+        System.out.printf("landmark A*:  %.3f ms/query, %d cells settled/query%n",
+                landmarkTime / 1e6 / numOfQueries, landmarkSettled / numOfQueries);
+    }
+}
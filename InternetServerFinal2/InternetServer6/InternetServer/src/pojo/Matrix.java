@@ -6,11 +6,16 @@ import java.util.*;
 /**
  Matrix is a class that represents a 2D matrix of integers.
  It provides methods for matrix creation, manipulation, and retrieval of values and neighbors.
+ A matrix is held densely, or as the SparseCells of its cells that are not 0; the dense array of a sparse matrix
+ is only built when an algorithm asks for it with getPrimitiveMatrix().
  */
 
 public class Matrix implements Serializable {
 
-    int[][] primitiveMatrix;
+    volatile int[][] primitiveMatrix; // null while a sparse matrix was not needed densely.
+    private volatile SparseCells sparseCells; // The cells of a sparse matrix, or null for a dense one.
+    private transient volatile WeightedGrid weightedGrid; // Built lazily by the weighted path engines.
+    private transient volatile ComponentLabels componentLabels; // Built lazily by the component lookups.
 
     /**
      Constructs a Matrix object from a 2D array of integers.
@@ -27,6 +32,16 @@ public class Matrix implements Serializable {
         setPrimitiveMatrix(list.toArray(new int[0][]));
     }
 
+    /**
+     Constructs a sparse Matrix object from its cells that are not 0.
+     The values, neighbors, traversals and component labels of the matrix use the cells without building the dense array.
+     @param cells The cells of the matrix.
+     */
+
+    public Matrix(SparseCells cells) {
+        this.sparseCells = cells;
+    }
+
     /**
      Constructs a Matrix object with the specified number of rows and columns.
      The matrix is filled with random binary values (0 or 1).
@@ -81,8 +96,8 @@ public class Matrix implements Serializable {
         int[] colOffsets = {0, 1, 0, -1};
 
         // Get the dimensions of the grid
-        int numRows = getPrimitiveMatrix().length;
-        int numCols = getPrimitiveMatrix()[0].length;
+        int numRows = getRows();
+        int numCols = getColumns();
 
         // Iterate over the offsets to calculate the neighboring indices
         for (int i = 0; i < rowOffsets.length; i++) {
@@ -121,8 +136,8 @@ public class Matrix implements Serializable {
         Collection<Index> neighbors = new ArrayList<>();
 
         // Get the dimensions of the grid
-        int numRows = getPrimitiveMatrix().length;
-        int numCols = getPrimitiveMatrix()[0].length;
+        int numRows = getRows();
+        int numCols = getColumns();
 
         // Iterate over the offsets to calculate the neighboring indices, including diagonals
         for (int i = 0; i < rowOffsets.length; i++) {
@@ -147,9 +162,65 @@ public class Matrix implements Serializable {
      */
 
     public int getValue(final Index index){
+        SparseCells cells = sparseCells;
+        if (cells != null) {
+            return cells.getValue(index.getRow(), index.getColumn());
+        }
         return getPrimitiveMatrix()[index.getRow()][index.getColumn()];
     }
 
+    /**
+     Returns the number of rows of the matrix.
+     @return The number of rows.
+     */
+
+    public int getRows() {
+        SparseCells cells = sparseCells;
+        return cells != null ? cells.getRows() : getPrimitiveMatrix().length;
+    }
+
+    /**
+     Returns the number of columns of the matrix, the length of its first row.
+     @return The number of columns, 0 for a matrix without rows.
+     */
+
+    public int getColumns() {
+        SparseCells cells = sparseCells;
+        if (cells != null) {
+            return cells.getColumns();
+        }
+        return getPrimitiveMatrix().length == 0 ? 0 : getPrimitiveMatrix()[0].length;
+    }
+
+    /**
+     Returns the cells of a sparse matrix.
+     @return The SparseCells of the matrix, or null if the matrix is held densely.
+     */
+
+    public SparseCells getSparseCells() {
+        return sparseCells;
+    }
+
+    /**
+     Sets the value at the specified index in the matrix.
+     The flat weighted view and the component labels of the matrix are dropped and will be built again when they are needed.
+     @param index The index of the value to set.
+     @param value The new value.
+     */
+
+    public void setValue(final Index index, int value){
+        SparseCells cells = sparseCells;
+        if (cells != null) {
+            sparseCells = cells.with(index.getRow(), index.getColumn(), value);
+        }
+        int[][] dense = primitiveMatrix;
+        if (dense != null) {
+            dense[index.getRow()][index.getColumn()] = value;
+        }
+        this.weightedGrid = null;
+        this.componentLabels = null;
+    }
+
     /**
      Prints the matrix to the console.
      */
@@ -168,15 +239,107 @@ public class Matrix implements Serializable {
      */
     public void setPrimitiveMatrix(int[][] primitiveMatrix) {
         this.primitiveMatrix = primitiveMatrix;
+        this.sparseCells = null;
+        this.weightedGrid = null;
+        this.componentLabels = null;
+    }
+
+    /**
+     * Returns the flat weighted view of this matrix, scanning the matrix only the first time it is needed.
+     *
+     * @return The WeightedGrid of this matrix.
+     */
+    public WeightedGrid getWeightedGrid() {
+        WeightedGrid grid = weightedGrid;
+        if (grid == null) {
+            synchronized (this) {
+                grid = weightedGrid;
+                if (grid == null) {
+                    grid = new WeightedGrid(this);
+                    weightedGrid = grid;
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the flat weighted view of this matrix if it was built and the matrix did not change since, without building it.
+     *
+     * @return The WeightedGrid of this matrix, or null.
+     */
+    WeightedGrid getBuiltWeightedGrid() {
+        return weightedGrid;
     }
 
     /**
-     Returns the primitive 2D array representing the matrix.
+     * Returns the component labels of this matrix, labeling the matrix only the first time they are needed.
+     *
+     * @return The ComponentLabels of this matrix.
+     * @throws ComputationTimeoutException If the labels had to be built and the deadline of the current request passed.
+     */
+    public ComponentLabels getComponentLabels() {
+        ComponentLabels labels = componentLabels;
+        if (labels == null) {
+            synchronized (this) {
+                labels = componentLabels;
+                if (labels == null) {
+                    labels = ComponentLabels.build(this);
+                    componentLabels = labels;
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Checks if the component labels of this matrix were built and are still current.
+     *
+     * @return true if getComponentLabels() does not need to label the matrix.
+     */
+    public boolean hasComponentLabels() {
+        return componentLabels != null;
+    }
+
+    /**
+     * Returns the memory of this matrix: its values, dense, sparse or both, and its weighted view and component labels
+     * if they were built.
+     *
+     * @return The size in bytes, array headers included.
+     */
+    public long memoryBytes() {
+        final long arrayHeader = 16;
+        int[][] dense = primitiveMatrix;
+        SparseCells cells = sparseCells;
+        long bytes = cells == null ? 0 : cells.memoryBytes();
+        if (dense != null) {
+            bytes += arrayHeader + 8L * dense.length;
+            for (int[] row : dense) {
+                bytes += arrayHeader + 4L * row.length;
+            }
+        }
+        WeightedGrid grid = weightedGrid;
+        ComponentLabels labels = componentLabels;
+        return bytes + (grid == null ? 0 : grid.memoryBytes()) + (labels == null ? 0 : labels.memoryBytes());
+    }
+
+    /**
+     Returns the primitive 2D array representing the matrix, building it the first time for a sparse matrix.
      @return The primitive matrix.
      */
 
     public final int[][] getPrimitiveMatrix() {
-        return primitiveMatrix;
+        int[][] dense = primitiveMatrix;
+        if (dense == null) {
+            synchronized (this) {
+                dense = primitiveMatrix;
+                if (dense == null) {
+                    dense = sparseCells.toDense();
+                    primitiveMatrix = dense;
+                }
+            }
+        }
+        return dense;
     }
 
     /**
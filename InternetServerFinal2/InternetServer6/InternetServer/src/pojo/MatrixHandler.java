@@ -1,30 +1,114 @@
 package pojo;
 
+import server.AdmissionControl;
+import server.AlgorithmRunEvent;
+import server.CommandMetrics;
+import server.ComputePool;
+import server.CostEstimator;
+import server.CountingOutputStream;
 import server.IHandler;
+import server.Log;
+import server.MetricsRegistry;
+import server.RequestDecodeEvent;
+import server.RequestScheduler;
+import server.RequestTimeout;
+import server.ResponseEncodeEvent;
+import server.ServerBusy;
+import server.Session;
 
 import java.io.*;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The MatrixHandler class handles Matrix-related tasks and adapts the functionality of IHandler to a Matrix object.
+ * One handler is shared by all the clients of a server; every client is served by its own copy,
+ * so the matrix and the indices of one session are never seen by another.
  */
 public class MatrixHandler implements IHandler {
 
-    private Matrix matrix; // The matrix object used by this class.
+    private final MatrixWorkspace workspace = new MatrixWorkspace(); // The named matrices of the session and their derived state.
+    private MatrixWorkspace.Entry selected; // The matrix of the pipelined request being started, if it names one.
     private Index sourceIndex; // The source index used for a specific operation.
     private Index destinationIndex; // The destination index used for a specific operation.
     private boolean doWork; // A flag indicating whether work should be performed or not.
+    private final int landmarksOnUpload; // The number of landmarks to build on every matrix upload, 0 to build them only on demand.
+    private AdmissionControl.Ticket admission; // The reservation of the request that runs, if it was admitted.
+    private long deadlineMillis = DEFAULT_DEADLINE_MILLIS; // The deadline of every request of this session.
+    private boolean compactPaths; // Whether the paths of this session are sent as CompactPaths.
+    private CancellationToken requestToken; // The deadline of the request that runs, checked by its algorithms.
+    private long requestCost; // The estimated cost of the request that runs, which chooses its lane.
+    private Future<?> running; // The computation of the last request, submitted to the RequestScheduler.
+    private final Map<Integer, PathCursor> pathCursors = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, PathCursor> eldest) {
+            return size() > MAX_PATH_CURSORS;
+        }
+    }); // The open path cursors of the session, the least recently used first.
+    private final AtomicInteger nextPathCursor = new AtomicInteger(); // The id of the last path cursor opened.
+
+    // The time a request may take from reading its command, unless the session sets its own with "deadline"
+    private static final long DEFAULT_DEADLINE_MILLIS = Long.getLong("server.request.deadlineMillis", 30_000L);
+    // The time a computation is given past its deadline to stop at a check and hand over its partial result
+    private static final long STOP_GRACE_MILLIS = 100;
+    // The number of path cursors a session keeps open; opening another one drops the least recently used
+    private static final int MAX_PATH_CURSORS = Math.max(1, Integer.getInteger("server.pathCursors.max", 16));
+
+    // The start of the error of a pipelined request whose named matrix the session does not hold
+    public static final String NO_MATRIX_NAMED = "There is no matrix named ";
+
+    // The commands of the protocol; metrics of anything else a client sends are recorded under "unknown"
+    private static final Set<String> COMMANDS = Set.of("matrix", "sparse matrix", "get neighbors", "connected component", "all connected component",
+            "stream connected components", "component statistics", "same component", "component size", "all shortest paths", "submarines", "lightest paths", "matrix update", "approximate lightest path", "landmarks", "deadline", "compact paths", "use matrix", "drop matrix", "matrices", "bulk job", "pipeline", "batch lightest paths",
+            "batch shortest paths", "lightest paths page", "shortest paths page", "next paths page", "close paths",
+            "stats", "stop");
+
+    // The commands that only read the matrix, which the pipelined mode runs concurrently
+    private static final Set<String> QUERIES = Set.of("get neighbors", "connected component", "all connected component",
+            "component statistics", "same component", "component size",
+            "all shortest paths", "submarines", "lightest paths", "approximate lightest path", "batch lightest paths",
+            "batch shortest paths", "lightest paths page", "shortest paths page", "next paths page");
+
+    // The number of arguments that follow the commands that can be refused, read and dropped when a request is refused
+    private static final Map<String, Integer> ARGUMENTS = Map.ofEntries(Map.entry("get neighbors", 1),
+            Map.entry("connected component", 1), Map.entry("all shortest paths", 2), Map.entry("lightest paths", 2),
+            Map.entry("approximate lightest path", 2), Map.entry("landmarks", 1), Map.entry("batch lightest paths", 1),
+            Map.entry("batch shortest paths", 1), Map.entry("lightest paths page", 3), Map.entry("shortest paths page", 3),
+            Map.entry("next paths page", 2), Map.entry("component statistics", 1),
+            Map.entry("same component", 2), Map.entry("component size", 1));
 
+    /**
+     * Constructs a MatrixHandler that builds landmark tables only on demand.
+     */
+    public MatrixHandler() {
+        this(0);
+    }
+
+    /**
+     * Constructs a MatrixHandler that builds landmark tables on every matrix upload.
+     * @param landmarksOnUpload The number of landmarks to build when a matrix is uploaded, 0 to build them only on demand.
+     */
+    public MatrixHandler(int landmarksOnUpload) {
+        this.landmarksOnUpload = landmarksOnUpload;
+    }
 
     /**
      * Handles the client request by reading from the input stream and writing to the output stream.
+     * The session is served by a new MatrixHandler, which holds the state of this client only.
      * @param fromClient The input stream from the client.
      * @param toClient   The output stream to the client.
      * @throws IOException            If an I/O error occurs.
@@ -33,47 +117,102 @@ public class MatrixHandler implements IHandler {
 
     @Override
     public void handleClient(InputStream fromClient, OutputStream toClient) throws IOException, ClassNotFoundException {
+        MatrixHandler sessionHandler = new MatrixHandler(landmarksOnUpload);
+        try {
+            sessionHandler.serve(fromClient, toClient, Session.current());
+        } finally {
+            // A session that fails in the middle of a request must not keep its reservation
+            sessionHandler.releaseAdmission();
+        }
+    }
+
+    /**
+     * Serves one client until it sends "stop", disconnects or its session is cancelled.
+     * @param fromClient The input stream from the client.
+     * @param toClient   The output stream to the client.
+     * @param session    The session of the client, or null if the handler is used outside InternetServer.
+     * @throws IOException            If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of the serialized object cannot be found.
+     */
+    private void serve(InputStream fromClient, OutputStream toClient, Session session) throws IOException, ClassNotFoundException {
         /*
         data is sent eventually as bytes
         read data as bytes then transform to meaningful data
         ObjectInputStream and ObjectOutputStream can read and write both primitives
         and Reference types
          */
-        ExecutorService executor = null;
-        ObjectInputStream objectInputStream = new ObjectInputStream(fromClient);
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(toClient);
+        // The buffers turn the many small reads and writes of the object streams into one system call per message
+        ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(fromClient));
+        CountingOutputStream countingOutputStream = new CountingOutputStream(new BufferedOutputStream(toClient));
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(countingOutputStream);
+        // The client waits for the header of the stream before it sends anything
+        objectOutputStream.flush();
 
         setDoWork(true);
-        while (isDoWork()) {
-            switch (objectInputStream.readObject().toString()) {
+        while (isDoWork() && (session == null || !session.isCancelled())) {
+            String command = objectInputStream.readObject().toString();
+            CommandMetrics metrics = metricsOf(command);
+            metrics.recordRequest();
+            long requestStart = System.nanoTime();
+            requestToken = new CancellationToken(requestStart, TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+            if (session != null) {
+                session.commandStarted(command);
+            }
+
+            ServerBusy busy = admit(command, session);
+            if (busy != null) {
+                // Answer at once; the arguments of the refused request are read and dropped
+                for (int i = 0; i < ARGUMENTS.getOrDefault(command, 0); i++) {
+                    readArgument(objectInputStream, command);
+                }
+                metrics.recordRejected();
+                Log.sampled(Log.Level.WARN, "busy", busy::toString);
+                reply(objectOutputStream, countingOutputStream, metrics, busy);
+                metrics.recordTotal(System.nanoTime() - requestStart);
+                if (session != null) {
+                    session.commandFinished();
+                }
+                continue;
+            }
+
+            switch (command) {
                 case "matrix" -> {
                     // expect to get a 2d array. handler will create a Matrix object
                     try {
-                        int[][] anArray = (int[][]) objectInputStream.readObject();
-                        System.out.println("Got 2d array");
-                        setMatrix(new Matrix(anArray));
-                        getMatrix().printMatrix();
+                        uploadMatrix((int[][]) readArgument(objectInputStream, command), session);
+                    } catch (Exception e) {
+                        Log.error("\"" + command + "\" failed", e);
+                        metrics.recordError();
+                    }
+                }
+                case "sparse matrix" -> {
+                    // expect to get a SparseCells. handler will create a Matrix object that keeps it sparse
+                    try {
+                        uploadSparseMatrix((SparseCells) readArgument(objectInputStream, command), session);
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        Log.error("\"" + command + "\" failed", e);
+                        metrics.recordError();
                     }
                 }
                 case "get neighbors" -> {
-                    setSourceIndex((Index) objectInputStream.readObject());
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
 
                     if (getMatrix() != null) {
 
                        // ExecutorService executor = null;
 
                         try {
-                            executor = Executors.newSingleThreadExecutor();
                             Callable<List<Index>> getNeighborsCallable = createGetNeighborsCallable(getSourceIndex());
-                            Future<List<Index>> neighborsFuture = executor.submit(getNeighborsCallable);
+                            Future<List<Index>> neighborsFuture = submit(command, metrics, getNeighborsCallable);
 
-                            List<Index> neighbors = neighborsFuture.get();
-                            System.out.println("Neighbors of " + getSourceIndex() + " are: " + neighbors);
-                            objectOutputStream.writeObject(neighbors);
+                            List<Index> neighbors = await(neighborsFuture);
+                            Log.sampled(Log.Level.INFO, command, "Neighbors of " + getSourceIndex() + " are: ", neighbors);
+                            reply(objectOutputStream, countingOutputStream, metrics, neighbors);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         } /*finally {
                             if(executor != null) {
                                 executor.shutdown();
@@ -82,28 +221,29 @@ public class MatrixHandler implements IHandler {
                     }
                 }
                 case "connected component" -> {
-                    setSourceIndex((Index) objectInputStream.readObject());
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
                     if (getMatrix() != null) {
-                        TraversableMatrix matrixAsGraph = new TraversableMatrix(getMatrix());
-                        matrixAsGraph.setSource(getSourceIndex());
+                        Index sourceIndex = getSourceIndex();
 
                         //ExecutorService executor = null;
 
                         try {
-                        executor = Executors.newSingleThreadExecutor();
-                        // Sending true as a parameter to indicate that we ** Don't ** want to use the diagonal neighbors as a valid path (inside its using the 'getReachableNodes()').
-                        Callable<Set<Index>> dfsCallable = createDFSCallable(matrixAsGraph, true);
-                        Future<Set<Index>> dfsFuture = executor.submit(dfsCallable);
-                        Set<Index> connectedComponent = dfsFuture.get();
+                        // The component is read from the labels of the matrix, which do ** not ** use the diagonal neighbors as a valid path.
+                        Callable<Set<Index>> componentCallable = createConnectedComponentCallable(sourceIndex);
+                        Future<Set<Index>> componentFuture = submit(command, metrics, componentCallable);
+                        Set<Index> connectedComponent = await(componentFuture);
 
                         if(connectedComponent.isEmpty()) {
-                            System.out.println("The Index " + matrixAsGraph.getRoot().getData() + " has no connected component");
-                            objectOutputStream.writeObject("The Index " + matrixAsGraph.getRoot().getData() + "has no connected component");
+                            Log.sampled(Log.Level.INFO, command, () -> "The Index " + sourceIndex + " has no connected component");
+                            reply(objectOutputStream, countingOutputStream, metrics, "The Index " + sourceIndex + "has no connected component");
                         } else {
-                            objectOutputStream.writeObject(connectedComponent);
+                            reply(objectOutputStream, countingOutputStream, metrics, connectedComponent);
                         }
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         } /*finally {
                             if (executor != null) {
                                 executor.shutdown();
@@ -112,10 +252,32 @@ public class MatrixHandler implements IHandler {
                     }
                 }
 
+                case "same component", "component size" -> {
+                    // expect to get two cells for "same component", one cell for "component size"
+                    Index first = (Index) readArgument(objectInputStream, command);
+                    Index second = command.equals("same component") ? (Index) readArgument(objectInputStream, command) : null;
+
+                    if (getMatrix() != null) {
+                        try {
+                            Callable<?> lookupCallable = command.equals("same component")
+                                    ? createSameComponentCallable(first, second) : createComponentSizeCallable(first);
+                            Object answer = await(submit(command, metrics, lookupCallable));
+                            Log.sampled(Log.Level.INFO, command, () -> command + " of " + first + (second == null ? "" : " and " + second) + ": " + answer);
+                            reply(objectOutputStream, countingOutputStream, metrics, answer);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
+
                 //The new case we created for "all connected components" containing the diagonals
                 case "all connected component" -> {
 
                     HashSet<HashSet<Index>> allConnectedComponents = new HashSet<>();
+                    ComputationTimeoutException timedOut = null;
 
                     if (getMatrix() != null) {
                         TraversableMatrix matrixAsGraph = new TraversableMatrix(getMatrix());
@@ -123,32 +285,83 @@ public class MatrixHandler implements IHandler {
                        // ExecutorService executor = null;
 
                         try {
-                            executor = Executors.newSingleThreadExecutor();
                             Callable<HashSet<HashSet<Index>>> AllConnectedComponentsCallable = createAllConnectedComponentsCallable(matrixAsGraph);
-                            Future<HashSet<HashSet<Index>>> future = executor.submit(AllConnectedComponentsCallable);
-                            allConnectedComponents = future.get();
+                            Future<HashSet<HashSet<Index>>> future = submit(command, metrics, AllConnectedComponentsCallable);
+                            allConnectedComponents = await(future);
 
+                        } catch (ComputationTimeoutException timeoutException) {
+                            timedOut = timeoutException;
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         } /*finally {
                             if (executor != null) {
                                 executor.shutdown();
                             }
                         }*/
                     }
-                    if(allConnectedComponents.isEmpty()) {
-                        System.out.println("There are no connected components in the traversable matrix!");
-                        objectOutputStream.writeObject("There are no connected components in this traversable matrix!");
+                    if (timedOut != null) {
+                        replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timedOut);
+                    } else if(allConnectedComponents.isEmpty()) {
+                        Log.sampled(Log.Level.INFO, command, () -> "There are no connected components in the traversable matrix!");
+                        reply(objectOutputStream, countingOutputStream, metrics, "There are no connected components in this traversable matrix!");
                     } else {
-                        System.out.println("all Connected Component are: " +  allConnectedComponents);
-                        objectOutputStream.writeObject(allConnectedComponents);
+                        Log.sampled(Log.Level.INFO, command, "all Connected Component are: ", allConnectedComponents);
+                        reply(objectOutputStream, countingOutputStream, metrics, allConnectedComponents);
                     }
                 }
 
+                case "stream connected components" -> {
+                    // reply with every component as its own object, as soon as it is labeled, then a StreamEnd
+                    if (getMatrix() != null) {
+                        try {
+                            long cost = requestCost;
+                            new ComponentStream(this, objectOutputStream, countingOutputStream, metrics, command, requestToken)
+                                    .run(getMatrix(), drain -> RequestScheduler.get().submit(cost, Executors.callable(drain)));
+                        } catch (InterruptedException interruptedException) {
+                            Thread.currentThread().interrupt();
+                            setDoWork(false);
+                        }
+                    }
+                }
+                case "bulk job" -> {
+                    // expect to get the command of the job and its argument (null for "submarines"), then matrices until a null;
+                    // reply with a BulkResult per matrix as it completes, then a BulkJobSummary
+                    String jobCommand = String.valueOf(readArgument(objectInputStream, command));
+                    Object jobArgument = readArgument(objectInputStream, command);
+                    try {
+                        BulkJobSummary summary = new BulkJob(this, objectInputStream, objectOutputStream, countingOutputStream,
+                                metrics, jobCommand, BulkJob.taskOf(jobCommand, jobArgument)).run();
+                        Log.info("Bulk job: " + summary);
+                        reply(objectOutputStream, countingOutputStream, metrics, summary);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        setDoWork(false);
+                    }
+                }
+                case "component statistics" -> {
+                    // expect to get the smallest size of the components to list
+                    int minSize = (Integer) readArgument(objectInputStream, command);
+
+                    if (getMatrix() != null) {
+                        try {
+                            Callable<ComponentStatistics> statisticsCallable = createComponentStatisticsCallable(minSize);
+                            Future<ComponentStatistics> statisticsFuture = submit(command, metrics, statisticsCallable);
+                            ComponentStatistics statistics = await(statisticsFuture);
+                            Log.sampled(Log.Level.INFO, command, "Component statistics: ", statistics);
+                            reply(objectOutputStream, countingOutputStream, metrics, statistics);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
                 case "all shortest paths" -> {
 
-                    setSourceIndex((Index) objectInputStream.readObject());
-                    setDestinationIndex((Index) objectInputStream.readObject());
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
+                    setDestinationIndex((Index) readArgument(objectInputStream, command));
 
                     if (getMatrix() != null) {
                         TraversableMatrix matrixAsGraph = new TraversableMatrix(getMatrix());
@@ -160,21 +373,23 @@ public class MatrixHandler implements IHandler {
 
                            // List<List<Node<Index>>> shortestPaths = algorithm.traverse(matrixAsGraph, sourceIndex, destinationIndex);
 
-                            executor = Executors.newSingleThreadExecutor();
 
                             Callable<List<List<Node<Index>>>> bfsCallable = createBfsCallable(matrixAsGraph, getSourceIndex(), getDestinationIndex());
-                            Future<List<List<Node<Index>>>> bfsFuture = executor.submit(bfsCallable);
-                            List<List<Node<Index>>> shortestPaths = bfsFuture.get();
+                            Future<List<List<Node<Index>>>> bfsFuture = submit(command, metrics, bfsCallable);
+                            List<List<Node<Index>>> shortestPaths = await(bfsFuture);
 
                             if(shortestPaths.isEmpty()) {
-                                System.out.println("The destination " + getDestinationIndex() + " is not reachable from the source " + getSourceIndex());
-                                objectOutputStream.writeObject("The destination is not reachable from the source");
+                                Log.sampled(Log.Level.INFO, command, () -> "The destination " + getDestinationIndex() + " is not reachable from the source " + getSourceIndex());
+                                reply(objectOutputStream, countingOutputStream, metrics, "The destination is not reachable from the source");
                             }
                             else {
-                                objectOutputStream.writeObject(shortestPaths);
+                                reply(objectOutputStream, countingOutputStream, metrics, encodePaths(shortestPaths));
                             }
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         } /*finally {
                             if(executor != null)
                                 executor.shutdown();
@@ -189,18 +404,20 @@ public class MatrixHandler implements IHandler {
 
                         //ExecutorService executor = null;
                         try {
-                            executor = Executors.newSingleThreadExecutor();
                             Callable<Integer> countSubmarinesCallable = createCountSubmarinesCallable(matrixAsGraph);
-                            Future<Integer> countFuture = executor.submit(countSubmarinesCallable);
+                            Future<Integer> countFuture = submit(command, metrics, countSubmarinesCallable);
 
-                            int numOfSubmarines = countFuture.get();
-                            // Print the number of valid submarines to the console
-                            System.out.println("The number of valid submarines is: " + numOfSubmarines);
+                            int numOfSubmarines = await(countFuture);
+                            // Log the number of valid submarines
+                            Log.sampled(Log.Level.INFO, command, () -> "The number of valid submarines is: " + numOfSubmarines);
 
                             // Write the number of valid submarines to the ObjectOutputStream
-                            objectOutputStream.writeObject(numOfSubmarines);
+                            reply(objectOutputStream, countingOutputStream, metrics, numOfSubmarines);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         } /*finally {
                             if(countExecutor != null) {
                                 countExecutor.shutdown();
@@ -210,8 +427,8 @@ public class MatrixHandler implements IHandler {
                 }
                 case "lightest paths" -> {
 
-                    setSourceIndex((Index) objectInputStream.readObject());
-                    setDestinationIndex((Index) objectInputStream.readObject());
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
+                    setDestinationIndex((Index) readArgument(objectInputStream, command));
 
                     if (getMatrix() != null) {
                         TraversableMatrix matrixAsGraph = new TraversableMatrix(getMatrix());
@@ -220,19 +437,21 @@ public class MatrixHandler implements IHandler {
 
                        // ExecutorService executor = null;
                         try {
-                            executor = Executors.newSingleThreadExecutor();
 
                             Callable<HashSet<List<Node<Index>>>> findPathsCallable = createLightestPathsCallable(matrixAsGraph, getSourceIndex(), getDestinationIndex());
-                            Future<HashSet<List<Node<Index>>>> findPathsFuture = executor.submit(findPathsCallable);
-                            HashSet<List<Node<Index>>> lightestPaths = findPathsFuture.get();
+                            Future<HashSet<List<Node<Index>>>> findPathsFuture = submit(command, metrics, findPathsCallable);
+                            HashSet<List<Node<Index>>> lightestPaths = await(findPathsFuture);
                             if(lightestPaths.isEmpty()) {
-                                System.out.println("There are infinite path possible!");
-                                objectOutputStream.writeObject("There are infinite path possible!");
+                                Log.sampled(Log.Level.INFO, command, () -> "There are infinite path possible!");
+                                reply(objectOutputStream, countingOutputStream, metrics, "There are infinite path possible!");
                             } else {
-                                objectOutputStream.writeObject(lightestPaths);
+                                reply(objectOutputStream, countingOutputStream, metrics, encodePaths(lightestPaths));
                             }
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
                         }/*finally {
                             if (executor != null) {
                                 executor.shutdown();
@@ -240,16 +459,712 @@ public class MatrixHandler implements IHandler {
                         }*/
                     }
                 }
+                case "batch lightest paths", "batch shortest paths" -> {
+                    // expect to get the rows of the batch, each a source followed by its destinations
+                    Index[][] batch = (Index[][]) readArgument(objectInputStream, command);
+
+                    if (getMatrix() != null) {
+                        try {
+                            Callable<BatchPathResult> batchCallable = createBatchPathsCallable(batch, command.equals("batch lightest paths"));
+                            Future<BatchPathResult> batchFuture = submit(command, metrics, batchCallable);
+                            BatchPathResult batchResult = await(batchFuture);
+                            Log.sampled(Log.Level.INFO, command, "Batch paths: ", batchResult);
+                            reply(objectOutputStream, countingOutputStream, metrics, batchResult);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
+                case "lightest paths page", "shortest paths page" -> {
+                    // expect to get a source, a destination and the number of paths of the first page, 0 to only count them
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
+                    setDestinationIndex((Index) readArgument(objectInputStream, command));
+                    int first = (Integer) readArgument(objectInputStream, command);
+
+                    if (getMatrix() != null) {
+                        try {
+                            Callable<PathPage> pageCallable = createPathPageCallable(getSourceIndex(), getDestinationIndex(), first, command.equals("lightest paths page"));
+                            Future<PathPage> pageFuture = submit(command, metrics, pageCallable);
+                            PathPage page = await(pageFuture);
+                            Log.sampled(Log.Level.INFO, command, "Path page: ", page);
+                            reply(objectOutputStream, countingOutputStream, metrics, page);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
+                case "next paths page" -> {
+                    // expect to get the cursor of a page and the number of paths of the next page
+                    int cursorId = (Integer) readArgument(objectInputStream, command);
+                    int max = (Integer) readArgument(objectInputStream, command);
+
+                    if (!pathCursors.containsKey(cursorId)) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "There is no open path cursor " + cursorId);
+                    } else {
+                        try {
+                            Callable<PathPage> pageCallable = createNextPathPageCallable(cursorId, max);
+                            Future<PathPage> pageFuture = submit(command, metrics, pageCallable);
+                            PathPage page = await(pageFuture);
+                            Log.sampled(Log.Level.INFO, command, "Path page: ", page);
+                            reply(objectOutputStream, countingOutputStream, metrics, page);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
+                case "close paths" -> {
+                    // expect to get the cursor of a page whose next pages are not needed
+                    closePathCursor((Integer) readArgument(objectInputStream, command));
+                }
+                case "matrix update" -> {
+                    // expect to get an index and its new value. A valid update has no reply; an index outside the matrix is answered with an error
+                    try {
+                        Index updatedIndex = (Index) readArgument(objectInputStream, command);
+                        int value = (Integer) readArgument(objectInputStream, command);
+                        updateMatrix(updatedIndex, value);
+                    } catch (IllegalArgumentException outside) {
+                        metrics.recordError();
+                        reply(objectOutputStream, countingOutputStream, metrics, outside.getMessage());
+                    } catch (Exception e) {
+                        Log.error("\"" + command + "\" failed", e);
+                        metrics.recordError();
+                    }
+                }
+                case "approximate lightest path" -> {
+                    setSourceIndex((Index) readArgument(objectInputStream, command));
+                    setDestinationIndex((Index) readArgument(objectInputStream, command));
+
+                    if (getMatrix() == null) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "There is no matrix to search!");
+                    } else if (!fitsHierarchy()) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "The hierarchical engine needs a rectangular matrix with non-negative values");
+                    } else if (!isInside(getSourceIndex()) || !isInside(getDestinationIndex())) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "The source and the destination must be inside the matrix");
+                    } else {
+                        try {
+                            Callable<HierarchicalPath> hierarchicalCallable = createHierarchicalPathCallable(getSourceIndex(), getDestinationIndex());
+                            Future<HierarchicalPath> pathFuture = submit(command, metrics, hierarchicalCallable);
+                            HierarchicalPath path = await(pathFuture);
+                            Log.sampled(Log.Level.INFO, command, "Approximate lightest path: ", path);
+                            reply(objectOutputStream, countingOutputStream, metrics, path);
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                            Throwable failure = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                            reply(objectOutputStream, countingOutputStream, metrics, "\"" + command + "\" failed: " + failure);
+                        }
+                    }
+                }
+                case "landmarks" -> {
+                    // expect to get the number of landmarks to build for the current matrix
+                    int numOfLandmarks = (Integer) readArgument(objectInputStream, command);
+
+                    if (getMatrix() == null) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "There is no matrix to preprocess!");
+                    } else if (getMatrix().getWeightedGrid().getStrategy() == WeightedGrid.Strategy.LEGACY) {
+                        reply(objectOutputStream, countingOutputStream, metrics, "Landmarks need a rectangular matrix with non-negative values");
+                    } else {
+                        try {
+                            Matrix preprocessed = getMatrix();
+                            Future<LandmarkIndex> landmarksFuture = submit(command, metrics, () -> LandmarkIndex.build(preprocessed, numOfLandmarks));
+                            setLandmarks(await(landmarksFuture));
+                            evictMatrices();
+                            Log.info("Built " + numOfLandmarks + " landmarks using " + getLandmarks().memoryBytes() + " bytes");
+                            reply(objectOutputStream, countingOutputStream, metrics, "Landmarks: " + getLandmarks().getLandmarks() + ", " + getLandmarks().memoryBytes() + " bytes");
+                        } catch (ComputationTimeoutException timeoutException) {
+                            replyTimeout(objectOutputStream, countingOutputStream, metrics, command, timeoutException);
+                        } catch (Exception e) {
+                            Log.error("\"" + command + "\" failed", e);
+                            metrics.recordError();
+                        }
+                    }
+                }
+                case "deadline" -> {
+                    // expect to get the deadline of the next requests in milliseconds, 0 for the server default
+                    setDeadline((Integer) readArgument(objectInputStream, command));
+                }
+                case "compact paths" -> {
+                    // expect to get whether the paths of the next requests are sent as CompactPaths
+                    setCompactPaths((Boolean) readArgument(objectInputStream, command));
+                }
+                case "use matrix" -> {
+                    // expect to get the name of the matrix the next requests work on; reply whether it holds a matrix
+                    reply(objectOutputStream, countingOutputStream, metrics, useMatrix((String) readArgument(objectInputStream, command), session));
+                }
+                case "drop matrix" -> {
+                    // expect to get the name of a matrix whose memory the session does not need anymore
+                    dropMatrix((String) readArgument(objectInputStream, command));
+                }
+                case "matrices" -> {
+                    // reply with the matrices of the session and their memory
+                    reply(objectOutputStream, countingOutputStream, metrics, describeMatrices());
+                }
+                case "pipeline" -> {
+                    // the rest of the session sends Request objects and receives Response objects as they complete
+                    new PipelinedSession(this, objectInputStream, objectOutputStream, countingOutputStream, session).run();
+                    setDoWork(false);
+                }
+                case "stats" -> {
+                    // reply with the metrics of all the sessions as a text table
+                    reply(objectOutputStream, countingOutputStream, metrics, MetricsRegistry.get().toText());
+                }
                 case "stop" -> {
                     setDoWork(false);
-                    if(executor != null) {
-                        executor.shutdown();
-                    }
                 }
             }
+            releaseAdmission();
+            metrics.recordTotal(System.nanoTime() - requestStart);
+            if (session != null) {
+                session.commandFinished();
+            }
+        }
+        // A cancelled session leaves without "stop"; its computation stops at its next check
+        if (requestToken != null) {
+            requestToken.cancel();
+        }
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    /**
+     * Asks the AdmissionControl to admit a request, with the cost estimated from the command and the current matrix.
+     * @param command The command of the request.
+     * @param session The session of the client, or null if the handler is used outside InternetServer.
+     * @return null if the request is admitted, or the busy response to send instead of running it.
+     */
+    private ServerBusy admit(String command, Session session) {
+        long cost = estimateCost(command);
+        requestCost = cost;
+        if (cost == 0) {
+            return null;
+        }
+        String client = session == null ? "local" : session.getClientHost();
+        admission = AdmissionControl.get().tryAdmit(client, cost);
+        return admission == null ? AdmissionControl.get().busy(client, command, cost) : null;
+    }
+
+    /**
+     * Estimates the cost of a command on the current matrix with the CostEstimator.
+     * @param command The command of the request.
+     * @return The estimated number of cell visits.
+     */
+    long estimateCost(String command) {
+        Matrix matrix = getMatrix();
+        if ((command.equals("same component") || command.equals("component size")) && matrix != null
+                && matrix.hasComponentLabels()) {
+            // Once the matrix is labeled, the lookups read two arrays
+            return 1;
+        }
+        if (matrix == null) {
+            return CostEstimator.estimate(command, 0, 0);
+        }
+        SparseCells sparse = matrix.getSparseCells();
+        return sparse == null ? CostEstimator.estimate(command, matrix.getRows(), matrix.getColumns())
+                : CostEstimator.estimateSparse(command, matrix.getRows(), matrix.getColumns(), sparse.size());
+    }
+
+    /**
+     * Returns the metrics of a command, or the metrics of "unknown" for anything that is not a command of the protocol.
+     * @param command The command of the request.
+     * @return The metrics.
+     */
+    static CommandMetrics metricsOf(String command) {
+        return MetricsRegistry.get().command(COMMANDS.contains(command) ? command : "unknown");
+    }
+
+    /**
+     * Replaces the matrix of the session with an uploaded one, and builds its landmarks if the handler was asked to.
+     * @param anArray The values of the matrix.
+     * @param session The session of the client, or null if the handler is used outside InternetServer.
+     */
+    void uploadMatrix(int[][] anArray, Session session) {
+        setMatrix(new Matrix(anArray));
+        if (session != null) {
+            session.setMatrixSize(anArray.length, anArray.length == 0 ? 0 : anArray[0].length);
+        }
+        Log.debug(() -> "Got " + Log.render(anArray));
+        if (landmarksOnUpload > 0 && getMatrix().getWeightedGrid().getStrategy() != WeightedGrid.Strategy.LEGACY) {
+            setLandmarks(LandmarkIndex.build(getMatrix(), landmarksOnUpload));
+        }
+        evictMatrices();
+    }
+
+    /**
+     * Replaces the matrix of the session with an uploaded sparse one. The matrix stays sparse: the component commands
+     * work on its stored cells, and only the path commands build its dense form, the first time they run.
+     * No landmarks are built on upload, since they would build the dense form of every sparse matrix.
+     * @param cells   The cells of the matrix that are not 0.
+     * @param session The session of the client, or null if the handler is used outside InternetServer.
+     */
+    void uploadSparseMatrix(SparseCells cells, Session session) {
+        setMatrix(new Matrix(cells));
+        if (session != null) {
+            session.setMatrixSize(cells.getRows(), cells.getColumns());
+        }
+        Log.debug(() -> "Got a " + cells);
+        evictMatrices();
+    }
+
+    /**
+     * Makes a named matrix the current matrix of the session, creating the name empty if the session does not hold it.
+     * @param name    The name of the matrix.
+     * @param session The session whose matrix size is reported, or null.
+     * @return true if the name holds a matrix, false if a "matrix" upload has to fill it first.
+     */
+    boolean useMatrix(String name, Session session) {
+        MatrixWorkspace.Entry entry = workspace.use(name);
+        if (session != null) {
+            Matrix matrix = entry.matrix;
+            session.setMatrixSize(matrix == null ? 0 : matrix.getRows(), matrix == null ? 0 : matrix.getColumns());
+        }
+        evictMatrices();
+        return entry.matrix != null;
+    }
+
+    /**
+     * Drops a named matrix of the session and the state derived from it.
+     * @param name The name of the matrix.
+     */
+    void dropMatrix(String name) {
+        if (workspace.drop(name)) {
+            Log.debug(() -> "Dropped the matrix \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Describes the matrices of the session.
+     * @return One line per matrix with its name, size and memory, and the memory of all of them.
+     */
+    String describeMatrices() {
+        return workspace.describe();
+    }
+
+    /**
+     * Makes the next calls of the pipelined mode on this thread work on a named matrix instead of the current one,
+     * until it is called again with null.
+     * @param name   The name of the matrix, or null to go back to the current matrix.
+     * @param create true to create the name empty if the session does not hold it, as an upload does.
+     * @throws IllegalStateException If the session does not hold a matrix by that name and create is false.
+     */
+    void selectMatrix(String name, boolean create) {
+        if (name == null) {
+            selected = null;
+            return;
+        }
+        MatrixWorkspace.Entry entry = create ? workspace.create(name) : workspace.get(name);
+        if (entry == null) {
+            throw new IllegalStateException(NO_MATRIX_NAMED + "\"" + name + "\"");
+        }
+        selected = entry;
+    }
+
+    /**
+     * Drops the least recently used matrices of the session while they do not fit its workspace.
+     */
+    private void evictMatrices() {
+        List<String> dropped = workspace.evict(selected);
+        if (!dropped.isEmpty()) {
+            Log.info("Dropped the least recently used matrices " + dropped + "; " + workspace.memoryBytes() / 1024 + " KiB left");
+        }
+    }
+
+    /**
+     * Returns the matrix the session works on: the matrix of the pipelined request being started if it names one,
+     * or the current matrix.
+     */
+    private MatrixWorkspace.Entry entry() {
+        MatrixWorkspace.Entry entry = selected;
+        return entry != null ? entry : workspace.current();
+    }
+
+    /**
+     * Changes one value of the matrix of the session, if there is one.
+     * @param updatedIndex The index of the value.
+     * @param value        The new value.
+     * @throws IllegalArgumentException If the session has a matrix and the index is outside it.
+     */
+    void updateMatrix(Index updatedIndex, int value) {
+        if (getMatrix() != null) {
+            if (!isInside(updatedIndex)) {
+                throw new IllegalArgumentException("The index " + updatedIndex + " is outside the "
+                        + getMatrix().getRows() + "x" + getMatrix().getColumns() + " matrix");
+            }
+            HierarchicalPathEngine currentHierarchy = getHierarchy();
+            if (currentHierarchy != null && value >= 0) {
+                // Only the tiles touched by the update are rebuilt, before the next approximate query
+                currentHierarchy.update(updatedIndex, value);
+            } else {
+                getMatrix().setValue(updatedIndex, value);
+                setHierarchy(null);
+            }
         }
     }
 
+    /**
+     * Checks that the hierarchical engine can answer queries on the matrix of the session.
+     * A matrix that already has an engine fits it, since the updates of the engine never make a value negative;
+     * only a matrix without one is scanned, by the weighted view that the engine is then built from.
+     * @return true if the matrix is rectangular and has no negative values.
+     */
+    private boolean fitsHierarchy() {
+        MatrixWorkspace.Entry entry = entry();
+        HierarchicalPathEngine engine = entry.hierarchy;
+        return engine != null && engine.getMatrix() == entry.matrix
+                || entry.matrix.getWeightedGrid().getStrategy() != WeightedGrid.Strategy.LEGACY;
+    }
+
+    /**
+     * Checks that an index is a cell of the matrix of the session.
+     * @param index The index, possibly null.
+     * @return true if the session has a matrix and the index is inside it.
+     */
+    private boolean isInside(Index index) {
+        Matrix matrix = getMatrix();
+        return matrix != null && index != null && index.getRow() >= 0 && index.getRow() < matrix.getRows()
+                && index.getColumn() >= 0 && index.getColumn() < matrix.getColumns();
+    }
+
+    /**
+     * Sets the deadline of the next requests of the session.
+     * @param millis The deadline in milliseconds, 0 or less for the server default.
+     */
+    void setDeadline(int millis) {
+        deadlineMillis = millis > 0 ? millis : DEFAULT_DEADLINE_MILLIS;
+    }
+
+    /**
+     * Returns the deadline of the requests of the session.
+     * @return The deadline in milliseconds.
+     */
+    long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Sets whether the paths of the next requests of the session are sent as CompactPaths instead of lists of nodes.
+     * @param compact true to send CompactPaths.
+     */
+    void setCompactPaths(boolean compact) {
+        compactPaths = compact;
+    }
+
+    /**
+     * Encodes the paths of a reply as CompactPaths if the session asked for them.
+     * @param paths The paths found by the algorithm.
+     * @return The CompactPaths of the paths, or the paths themselves.
+     */
+    private Object encodePaths(Collection<? extends List<Node<Index>>> paths) {
+        return compactPaths ? CompactPaths.of(paths) : paths;
+    }
+
+    /**
+     * Creates the computation of a query of the pipelined mode, from the same callables as the lock-step commands.
+     * The result is the raw result of the algorithm, without the messages the lock-step commands send for empty results,
+     * and paths are encoded as CompactPaths if the session asked for them.
+     * @param command   The command of the query.
+     * @param arguments The arguments of the query, in the order the lock-step command reads them.
+     * @return The computation, or null if the command is not a query.
+     * @throws IllegalStateException If the session has no matrix, or the matrix does not fit the query.
+     * @throws ClassCastException    If an argument has the wrong type.
+     */
+    Callable<?> createQuery(String command, Object[] arguments) {
+        if (command.equals("stream connected components")) {
+            throw new IllegalStateException("Streams are only sent in the lock-step mode; use \"all connected component\"");
+        }
+        if (!QUERIES.contains(command)) {
+            return null;
+        }
+        if (getMatrix() == null) {
+            throw new IllegalStateException("There is no matrix to search!");
+        }
+        TraversableMatrix matrixAsGraph = new TraversableMatrix(getMatrix());
+        return switch (command) {
+            case "get neighbors" -> createGetNeighborsCallable((Index) arguments[0]);
+            case "connected component" -> createConnectedComponentCallable((Index) arguments[0]);
+            case "same component" -> createSameComponentCallable((Index) arguments[0], (Index) arguments[1]);
+            case "component size" -> createComponentSizeCallable((Index) arguments[0]);
+            case "all connected component" -> createAllConnectedComponentsCallable(matrixAsGraph);
+            case "component statistics" -> createComponentStatisticsCallable((Integer) arguments[0]);
+            case "all shortest paths" -> {
+                matrixAsGraph.setSource((Index) arguments[0]);
+                Callable<List<List<Node<Index>>>> bfsCallable = createBfsCallable(matrixAsGraph, (Index) arguments[0], (Index) arguments[1]);
+                yield compactPaths ? () -> CompactPaths.of(bfsCallable.call()) : bfsCallable;
+            }
+            case "submarines" -> createCountSubmarinesCallable(matrixAsGraph);
+            case "lightest paths" -> {
+                matrixAsGraph.setSource((Index) arguments[0]);
+                matrixAsGraph.setDestination((Index) arguments[1]);
+                Callable<HashSet<List<Node<Index>>>> findPathsCallable = createLightestPathsCallable(matrixAsGraph, (Index) arguments[0], (Index) arguments[1]);
+                yield compactPaths ? () -> CompactPaths.of(findPathsCallable.call()) : findPathsCallable;
+            }
+            case "batch lightest paths", "batch shortest paths" ->
+                    createBatchPathsCallable((Index[][]) arguments[0], command.equals("batch lightest paths"));
+            case "lightest paths page", "shortest paths page" -> createPathPageCallable((Index) arguments[0],
+                    (Index) arguments[1], (Integer) arguments[2], command.equals("lightest paths page"));
+            case "next paths page" -> {
+                if (!pathCursors.containsKey((Integer) arguments[0])) {
+                    throw new IllegalStateException("There is no open path cursor " + arguments[0]);
+                }
+                yield createNextPathPageCallable((Integer) arguments[0], (Integer) arguments[1]);
+            }
+            default -> {
+                if (!fitsHierarchy()) {
+                    throw new IllegalStateException("The hierarchical engine needs a rectangular matrix with non-negative values");
+                }
+                if (!isInside((Index) arguments[0]) || !isInside((Index) arguments[1])) {
+                    throw new IllegalArgumentException("The source and the destination must be inside the matrix");
+                }
+                yield createHierarchicalPathCallable((Index) arguments[0], (Index) arguments[1]);
+            }
+        };
+    }
+
+    /**
+     * Builds the landmark tables of the matrix of the session on the current thread.
+     * @param numOfLandmarks The number of landmarks.
+     * @return The description of the landmarks that the lock-step command replies with.
+     * @throws IllegalStateException If the session has no matrix, or the matrix does not fit landmarks.
+     */
+    String buildLandmarks(int numOfLandmarks) {
+        if (getMatrix() == null) {
+            throw new IllegalStateException("There is no matrix to preprocess!");
+        }
+        if (getMatrix().getWeightedGrid().getStrategy() == WeightedGrid.Strategy.LEGACY) {
+            throw new IllegalStateException("Landmarks need a rectangular matrix with non-negative values");
+        }
+        setLandmarks(LandmarkIndex.build(getMatrix(), numOfLandmarks));
+        evictMatrices();
+        return "Landmarks: " + getLandmarks().getLandmarks() + ", " + getLandmarks().memoryBytes() + " bytes";
+    }
+
+    /**
+     * Releases the reservation of the request that ran, if it was admitted.
+     */
+    private void releaseAdmission() {
+        if (admission != null) {
+            admission.release();
+            admission = null;
+        }
+    }
+
+    /**
+     * Writes a response to the client and records its serialization time and size.
+     * @param objectOutputStream   The stream to the client.
+     * @param countingOutputStream The stream under objectOutputStream that counts the bytes.
+     * @param metrics              The metrics of the current command.
+     * @param response             The response to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    void reply(ObjectOutputStream objectOutputStream, CountingOutputStream countingOutputStream,
+               CommandMetrics metrics, Object response) throws IOException {
+        ResponseEncodeEvent encodeEvent = new ResponseEncodeEvent();
+        encodeEvent.begin();
+        long start = System.nanoTime();
+        long bytesBefore = countingOutputStream.getCount();
+        objectOutputStream.writeObject(response);
+        objectOutputStream.flush();
+        long bytes = countingOutputStream.getCount() - bytesBefore;
+        metrics.recordResponse(System.nanoTime() - start, bytes);
+
+        encodeEvent.end();
+        if (encodeEvent.shouldCommit()) {
+            encodeEvent.command = metrics.getCommand();
+            encodeEvent.responseType = response.getClass().getSimpleName();
+            encodeEvent.bytes = bytes;
+            encodeEvent.commit();
+        }
+    }
+
+    /**
+     * Reads an argument of a request and emits a RequestDecodeEvent for it.
+     * @param objectInputStream The stream from the client.
+     * @param command           The command the argument belongs to.
+     * @return The argument.
+     * @throws IOException            If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of the argument cannot be found.
+     */
+    Object readArgument(ObjectInputStream objectInputStream, String command) throws IOException, ClassNotFoundException {
+        RequestDecodeEvent decodeEvent = new RequestDecodeEvent();
+        decodeEvent.begin();
+        Object argument = objectInputStream.readObject();
+        decodeEvent.end();
+        if (decodeEvent.shouldCommit()) {
+            decodeEvent.command = command;
+            decodeEvent.argumentType = argument == null ? "null" : argument.getClass().getSimpleName();
+            decodeEvent.commit();
+        }
+        return argument;
+    }
+
+    /**
+     * Submits the computation of the request that runs to the lane of the RequestScheduler that fits its cost,
+     * recording its queue wait and computation time in the metrics of its command and emitting its AlgorithmRunEvent.
+     * @param command  The command the computation runs for.
+     * @param metrics  The metrics of the command.
+     * @param callable The computation.
+     * @param <T>      The type of the result.
+     * @return The future result.
+     */
+    private <T> Future<T> submit(String command, CommandMetrics metrics, Callable<T> callable) {
+        Future<T> future = RequestScheduler.get().submit(requestCost, instrumented(command, metrics, callable, requestToken));
+        running = future;
+        return future;
+    }
+
+    /**
+     * Wraps a computation so that it runs with its CancellationToken attached, records its queue wait and
+     * computation time in the metrics of its command and emits its AlgorithmRunEvent.
+     * @param command  The command the computation runs for.
+     * @param metrics  The metrics of the command.
+     * @param callable The computation.
+     * @param token    The deadline of the request.
+     * @param <T>      The type of the result.
+     * @return The wrapped computation, to submit to the RequestScheduler.
+     */
+    <T> Callable<T> instrumented(String command, CommandMetrics metrics, Callable<T> callable, CancellationToken token) {
+        Callable<T> cancellable = () -> {
+            // A request that waited in its lane past the deadline does not start
+            token.check();
+            CancellationToken.attach(token);
+            try {
+                return callable.call();
+            } finally {
+                CancellationToken.detach();
+            }
+        };
+        return metrics.timed(traced(command, cancellable));
+    }
+
+    /**
+     * Waits for the computation of the request that runs, until its deadline.
+     * A computation that stops at a check of its CancellationToken hands over its ComputationTimeoutException.
+     * A computation that does not stop within STOP_GRACE_MILLIS after the deadline is cancelled,
+     * and the request times out with the cells its token counted.
+     * @param future The future result of the computation.
+     * @param <T>    The type of the result.
+     * @return The result.
+     * @throws ComputationTimeoutException If the request ran past its deadline.
+     * @throws ExecutionException          If the computation failed.
+     * @throws InterruptedException        If the session was cancelled while waiting.
+     */
+    private <T> T await(Future<T> future) throws ExecutionException, InterruptedException {
+        long waitNanos = requestToken.getRemainingNanos() + TimeUnit.MILLISECONDS.toNanos(STOP_GRACE_MILLIS);
+        try {
+            return future.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException timeoutException) {
+            requestToken.cancel();
+            future.cancel(true);
+            throw requestToken.timeout();
+        } catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof ComputationTimeoutException timeoutException) {
+                throw timeoutException;
+            }
+            throw executionException;
+        }
+    }
+
+    /**
+     * Answers a request that ran past its deadline with a RequestTimeout that carries its partial result.
+     * @param objectOutputStream   The stream to the client.
+     * @param countingOutputStream The stream under objectOutputStream that counts the bytes.
+     * @param metrics              The metrics of the current command.
+     * @param command              The command of the request.
+     * @param timeoutException     The exception that stopped the computation.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void replyTimeout(ObjectOutputStream objectOutputStream, CountingOutputStream countingOutputStream,
+                              CommandMetrics metrics, String command, ComputationTimeoutException timeoutException) throws IOException {
+        reply(objectOutputStream, countingOutputStream, metrics, timeoutResponse(command, metrics, timeoutException));
+    }
+
+    /**
+     * Creates the RequestTimeout of a request that ran past its deadline, and records it.
+     * @param command          The command of the request.
+     * @param metrics          The metrics of the command.
+     * @param timeoutException The exception that stopped the computation.
+     * @return The response to send.
+     */
+    RequestTimeout timeoutResponse(String command, CommandMetrics metrics, ComputationTimeoutException timeoutException) {
+        RequestTimeout timeout = new RequestTimeout(command, timeoutException.getElapsedMillis(), deadlineMillis,
+                timeoutException.getExpansions(), timeoutException.getBestWeight(), timeoutException.getPartialResult());
+        metrics.recordTimeout();
+        Log.sampled(Log.Level.WARN, "timeout", timeout::toString);
+        return timeout;
+    }
+
+    /**
+     * Wraps the callable of an algorithm so that its run is emitted as an AlgorithmRunEvent,
+     * with the size of the matrix, the cells the algorithm visited and the size of its result.
+     * @param command  The command the algorithm runs for.
+     * @param callable The callable of the algorithm.
+     * @param <T>      The type of the result.
+     * @return The wrapped callable.
+     */
+    private <T> Callable<T> traced(String command, Callable<T> callable) {
+        int rows = getMatrix() == null ? 0 : getMatrix().getRows();
+        int columns = getMatrix() == null ? 0 : getMatrix().getColumns();
+        return () -> {
+            AlgorithmRunEvent runEvent = new AlgorithmRunEvent();
+            CellsVisited.reset();
+            runEvent.begin();
+            T result = callable.call();
+            runEvent.end();
+            if (runEvent.shouldCommit()) {
+                runEvent.command = command;
+                runEvent.rows = rows;
+                runEvent.columns = columns;
+                runEvent.cellsVisited = CellsVisited.get();
+                runEvent.resultSize = sizeOf(result);
+                runEvent.commit();
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Returns the number of elements of an algorithm result.
+     * @return The size of a collection, the value of a number, the length of a path, or -1 for other results.
+     */
+    private static long sizeOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        if (result instanceof BatchPathResult batchResult) {
+            return batchResult.size();
+        }
+        if (result instanceof CompactPaths paths) {
+            return paths.size();
+        }
+        if (result instanceof ComponentStatistics statistics) {
+            return statistics.getCount();
+        }
+        if (result instanceof PathPage page) {
+            return page.getCompactPaths().size();
+        }
+        if (result instanceof HierarchicalPath path) {
+            return path.getPath().size();
+        }
+        if (result instanceof LandmarkIndex index) {
+            return index.getLandmarks().size();
+        }
+        return -1;
+    }
+
     /**
      * Creates a callable object that finds the lightest paths between a source index and a destination index.
      * @param aTraversable-   The graph represented as a TraversableMatrix.
@@ -259,12 +1174,161 @@ public class MatrixHandler implements IHandler {
      */
 
     private Callable<HashSet<List<Node<Index>>>> createLightestPathsCallable(TraversableMatrix aTraversable, Index sourceIndex, Index destinationIndex) {
+        LandmarkIndex currentLandmarks = getLandmarks();
         return () -> {
-            Dijkstra dijkstra = new Dijkstra();
+            // Use the landmark tables when they were built for this matrix
+            if (currentLandmarks != null && currentLandmarks.covers(aTraversable.getInnerMatrix())) {
+                return currentLandmarks.findLightestPaths(aTraversable, sourceIndex, destinationIndex);
+            }
+            // Very large matrices relax their buckets across the compute pool
+            if (DeltaSteppingDijkstra.isWorthIt(aTraversable.getInnerMatrix().getWeightedGrid(), ComputePool.get())) {
+                return new DeltaSteppingDijkstra(ComputePool.get()).findLightestPaths(aTraversable, sourceIndex, destinationIndex);
+            }
+            WeightAwareDijkstra dijkstra = new WeightAwareDijkstra();
             return dijkstra.findLightestPaths(aTraversable, sourceIndex, destinationIndex);
         };
     }
 
+    /**
+     * Creates a callable object that answers a batch of path queries with one search per distinct source.
+     * @param batch    The rows of the batch, each a source followed by its destinations.
+     * @param weighted true for the lightest paths, false for the shortest paths.
+     * @return The callable object.
+     */
+
+    private Callable<BatchPathResult> createBatchPathsCallable(Index[][] batch, boolean weighted) {
+        Matrix currentMatrix = getMatrix();
+        return () -> {
+            BatchPathSearch algorithm = new BatchPathSearch(ComputePool.get());
+            return weighted ? algorithm.findLightestPaths(currentMatrix, batch) : algorithm.findShortestPaths(currentMatrix, batch);
+        };
+    }
+
+    /**
+     * Creates a callable object that computes the statistics of the connected components of the matrix.
+     * @param minSize The smallest size of the components whose summaries are listed.
+     * @return The callable object.
+     */
+
+    private Callable<ComponentStatistics> createComponentStatisticsCallable(int minSize) {
+        Matrix currentMatrix = getMatrix();
+        return () -> ComponentStatistics.of(currentMatrix, minSize);
+    }
+
+    /**
+     * Creates a callable object that finds the paths between a source index and a destination index
+     * and answers with the first page of them, keeping a cursor for the next pages if there are more.
+     * @param sourceIndex      The source index.
+     * @param destinationIndex The destination index.
+     * @param first            The number of paths of the first page, 0 to only count the paths.
+     * @param weighted         true for the lightest paths, false for the shortest paths.
+     * @return The callable object.
+     */
+
+    private Callable<PathPage> createPathPageCallable(Index sourceIndex, Index destinationIndex, int first, boolean weighted) {
+        Matrix currentMatrix = getMatrix();
+        return () -> {
+            WeightedGrid grid = currentMatrix.getWeightedGrid();
+            // If we have 2 zeros one next to each other than we have infinite lightest paths, as in Dijkstra.
+            if (weighted && grid.getStrategy() != WeightedGrid.Strategy.LEGACY && grid.hasTouchingZeroCells()) {
+                return new PathPage(-1, -1, BigInteger.ZERO, 0, CompactPaths.of(List.of()), true);
+            }
+            boolean searchable = grid.contains(sourceIndex) && grid.contains(destinationIndex) && (weighted
+                    ? grid.getStrategy() != WeightedGrid.Strategy.LEGACY
+                    : grid.weight(grid.idOf(sourceIndex)) == 1);
+            PathCursor cursor;
+            if (searchable) {
+                int source = grid.idOf(sourceIndex);
+                int destination = grid.idOf(destinationIndex);
+                PathDag dag = weighted
+                        ? new WeightAwareDijkstra().computeDistances(grid, source, destination)
+                        : new ParallelBfs(ComputePool.get()).computeLevels(grid, source, destination);
+                cursor = dag.cursor(destination);
+            } else {
+                // Jagged matrices, negative values and indices outside the matrix are answered as the single commands do
+                TraversableMatrix matrixAsGraph = new TraversableMatrix(currentMatrix);
+                matrixAsGraph.setSource(sourceIndex);
+                matrixAsGraph.setDestination(destinationIndex);
+                List<List<Node<Index>>> paths = weighted
+                        ? new ArrayList<>(new Dijkstra().findLightestPaths(matrixAsGraph, sourceIndex, destinationIndex))
+                        : new BfsTls<Index>().traverse(matrixAsGraph, sourceIndex, destinationIndex);
+                long cost = paths.isEmpty() ? -1 : weighted ? matrixAsGraph.getPathWeight(paths.get(0)) : paths.get(0).size() - 1;
+                cursor = PathCursor.of(paths, cost);
+            }
+            if (first <= 0) {
+                return new PathPage(-1, cursor.getCost(), cursor.getTotal(), 0, CompactPaths.of(List.of()), false);
+            }
+            return nextPage(-1, cursor, first);
+        };
+    }
+
+    /**
+     * Creates a callable object that answers with the next page of the paths of an open cursor.
+     * @param cursorId The id of the cursor.
+     * @param max      The largest number of paths of the page.
+     * @return The callable object.
+     */
+
+    private Callable<PathPage> createNextPathPageCallable(int cursorId, int max) {
+        return () -> {
+            PathCursor cursor = pathCursors.get(cursorId);
+            if (cursor == null) {
+                throw new IllegalStateException("There is no open path cursor " + cursorId);
+            }
+            return nextPage(cursorId, cursor, Math.max(1, max));
+        };
+    }
+
+    /**
+     * Takes the next page of a cursor, and keeps the cursor open under its id only if it has more paths.
+     * @param cursorId The id of the cursor, -1 for a cursor that was not opened yet.
+     * @param cursor   The cursor.
+     * @param max      The largest number of paths of the page.
+     * @return The page.
+     */
+    private PathPage nextPage(int cursorId, PathCursor cursor, int max) {
+        long offset = cursor.getReturned();
+        List<List<Node<Index>>> paths = cursor.next(max);
+        if (!cursor.hasNext()) {
+            closePathCursor(cursorId);
+            cursorId = -1;
+        } else if (cursorId < 0) {
+            cursorId = nextPathCursor.incrementAndGet();
+            pathCursors.put(cursorId, cursor);
+        }
+        return new PathPage(cursorId, cursor.getCost(), cursor.getTotal(), offset, CompactPaths.of(paths), false);
+    }
+
+    /**
+     * Closes a path cursor of the session, if it is still open.
+     * @param cursorId The id of the cursor.
+     */
+    void closePathCursor(int cursorId) {
+        pathCursors.remove(cursorId);
+    }
+
+    /**
+     * Creates a callable object that finds an approximate lightest path with the hierarchical engine,
+     * building the engine for the current matrix on the first call.
+     * @param sourceIndex      The source index.
+     * @param destinationIndex The destination index.
+     * @return The callable object.
+     */
+
+    private Callable<HierarchicalPath> createHierarchicalPathCallable(Index sourceIndex, Index destinationIndex) {
+        MatrixWorkspace.Entry entry = entry();
+        Matrix currentMatrix = entry.matrix;
+        LandmarkIndex currentLandmarks = entry.landmarks;
+        return () -> {
+            HierarchicalPathEngine engine = entry.hierarchy;
+            if (engine == null || engine.getMatrix() != currentMatrix) {
+                engine = new HierarchicalPathEngine(currentMatrix);
+                entry.hierarchy = engine;
+            }
+            return engine.findPath(sourceIndex, destinationIndex, currentLandmarks);
+        };
+    }
+
     /**
      * Creates a callable object that returns a list of neighbors for the given source index.
      * @param sourceIndex The source index.
@@ -272,7 +1336,8 @@ public class MatrixHandler implements IHandler {
      */
 
     private Callable<List<Index>> createGetNeighborsCallable(Index sourceIndex) {
-        return () -> new ArrayList<>(getMatrix().getNeighbors(sourceIndex));
+        Matrix currentMatrix = getMatrix();
+        return () -> new ArrayList<>(currentMatrix.getNeighbors(sourceIndex));
     }
 
     /**
@@ -299,6 +1364,12 @@ public class MatrixHandler implements IHandler {
 
     private Callable<List<List<Node<Index>>>> createBfsCallable(TraversableMatrix matrixAsGraph, Index source, Index destination) {
         return () -> {
+            // Large matrices expand each BFS level across the compute pool
+            WeightedGrid grid = matrixAsGraph.getInnerMatrix().getWeightedGrid();
+            if (grid.size() >= ParallelBfs.MIN_PARALLEL_CELLS) {
+                ParallelBfs algorithm = new ParallelBfs(ComputePool.get());
+                return algorithm.traverse(matrixAsGraph, source, destination);
+            }
             BfsTls<Index> algorithm = new BfsTls<>();
             return algorithm.traverse(matrixAsGraph, source, destination);
         };
@@ -318,17 +1389,38 @@ public class MatrixHandler implements IHandler {
     }
 
     /**
-     * Creates a callable object that traverses the graph and returns a set of indices representing a connected component.
-     * @param matrixAsGraph The graph represented as a TraversableMatrix.
-     * @param bool          A boolean value indicating whether to include diagonal neighbors as valid paths.
+     * Creates a callable object that returns the connected component of a cell, without diagonal steps,
+     * from the component labels of the matrix.
+     * @param index The cell.
+     * @return The callable object, which returns an empty set if the cell is in no component.
+     */
+
+    private Callable<Set<Index>> createConnectedComponentCallable(Index index) {
+        Matrix currentMatrix = getMatrix();
+        return () -> currentMatrix.getComponentLabels().componentOf(index);
+    }
+
+    /**
+     * Creates a callable object that checks if two cells are in the same connected component, without diagonal steps.
+     * @param first  A cell.
+     * @param second Another cell.
      * @return The callable object.
      */
 
-    private Callable<Set<Index>> createDFSCallable(TraversableMatrix matrixAsGraph,boolean bool) {
-        return () -> {
-            DfsVisit<Index> algorithm = new DfsVisit<>();
-            return algorithm.traverse(matrixAsGraph, bool);
-        };
+    private Callable<Boolean> createSameComponentCallable(Index first, Index second) {
+        Matrix currentMatrix = getMatrix();
+        return () -> currentMatrix.getComponentLabels().connected(first, second);
+    }
+
+    /**
+     * Creates a callable object that returns the size of the connected component of a cell, without diagonal steps.
+     * @param index The cell.
+     * @return The callable object, which returns 0 if the cell is in no component.
+     */
+
+    private Callable<Integer> createComponentSizeCallable(Index index) {
+        Matrix currentMatrix = getMatrix();
+        return () -> currentMatrix.getComponentLabels().sizeOf(index);
     }
 
     /**
@@ -350,7 +1442,46 @@ public class MatrixHandler implements IHandler {
      * @param matrix The matrix to set.
      */
     private void setMatrix(Matrix matrix) {
-        this.matrix = matrix;
+        MatrixWorkspace.Entry entry = entry();
+        entry.matrix = matrix;
+        entry.landmarks = null;
+        entry.hierarchy = null;
+    }
+
+    /**
+     * Retrieves the hierarchical path engine of the current matrix.
+     *
+     * @return The hierarchical engine, or null if it was not built.
+     */
+    private HierarchicalPathEngine getHierarchy() {
+        return entry().hierarchy;
+    }
+
+    /**
+     * Sets the hierarchical path engine of the current matrix.
+     *
+     * @param hierarchy The hierarchical engine to set.
+     */
+    private void setHierarchy(HierarchicalPathEngine hierarchy) {
+        entry().hierarchy = hierarchy;
+    }
+
+    /**
+     * Retrieves the landmark tables of the current matrix.
+     *
+     * @return The landmark index, or null if it was not built.
+     */
+    private LandmarkIndex getLandmarks() {
+        return entry().landmarks;
+    }
+
+    /**
+     * Sets the landmark tables of the current matrix.
+     *
+     * @param landmarks The landmark index to set.
+     */
+    private void setLandmarks(LandmarkIndex landmarks) {
+        entry().landmarks = landmarks;
     }
 
     /**
@@ -359,7 +1490,7 @@ public class MatrixHandler implements IHandler {
      * @return The matrix object.
      */
     private Matrix getMatrix() {
-        return matrix;
+        return entry().matrix;
     }
 
     /**
@@ -0,0 +1,187 @@
+package pojo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+1. A MatrixWorkspace holds the matrices of a session by name, each with the state derived from it:
+   its landmark tables and hierarchical engine, and inside the Matrix its weighted grid and component labels.
+   Switching to another matrix keeps all of them, so a session that analyses several matrices uploads each one once.
+2. The session starts on the matrix named "" (DEFAULT), so a client that never names a matrix works as before.
+   "use matrix" makes another name current, creating it empty if it holds nothing; the next "matrix" fills it.
+3. The matrices are kept in the order of their last use. After every upload and every change of the current matrix,
+   the least recently used matrices other than the current one are dropped while the workspace holds more than
+   -Dserver.workspace.maxMatrices matrices (16 by default) or its memory is over -Dserver.workspace.maxBytes
+   (256 MiB by default). A dropped name is empty when it is used again, and a request that needs its matrix fails.
+4. The memory of a matrix counts its values and the derived state built so far; state built later by a query
+   (component labels, a hierarchical engine) is counted at the next check.
+5. The methods are synchronized: the matrices are chosen on the thread that reads the requests, while the lanes
+   that run the requests build the derived state that the memory checks count.
+ */
+
+/**
+ * The MatrixWorkspace class holds the named matrices of a session and drops the least recently used ones.
+ */
+class MatrixWorkspace {
+    // The name of the matrix of a session that never names one
+    static final String DEFAULT = "";
+    // The largest number of matrices of a session
+    static final int MAX_MATRICES = Math.max(1, Integer.getInteger("server.workspace.maxMatrices", 16));
+    // The memory the matrices of a session may take, derived state included
+    static final long MAX_BYTES = Long.getLong("server.workspace.maxBytes", 256L << 20);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Entry current;
+
+    /**
+     * Constructs a workspace whose current matrix is the empty DEFAULT one.
+     */
+    MatrixWorkspace() {
+        current = new Entry(DEFAULT);
+        entries.put(DEFAULT, current);
+    }
+
+    /**
+     * Returns the current matrix of the session.
+     * @return The entry of the current matrix.
+     */
+    synchronized Entry current() {
+        return current;
+    }
+
+    /**
+     * Makes a name the current matrix of the session, creating it empty if the workspace does not hold it.
+     * @param name The name of the matrix.
+     * @return The entry of the matrix.
+     */
+    synchronized Entry use(String name) {
+        current = entries.computeIfAbsent(name, Entry::new);
+        return current;
+    }
+
+    /**
+     * Returns a matrix of the workspace and marks it as used, creating it empty if the workspace does not hold it.
+     * The current matrix stays the same.
+     * @param name The name of the matrix.
+     * @return The entry of the matrix.
+     */
+    synchronized Entry create(String name) {
+        return entries.computeIfAbsent(name, Entry::new);
+    }
+
+    /**
+     * Returns a matrix of the workspace and marks it as used.
+     * @param name The name of the matrix.
+     * @return The entry, or null if the workspace does not hold a matrix by that name.
+     */
+    synchronized Entry get(String name) {
+        Entry entry = entries.get(name);
+        return entry == null || entry.matrix == null ? null : entry;
+    }
+
+    /**
+     * Drops a matrix and its derived state. Dropping the current matrix leaves the current name empty.
+     * @param name The name of the matrix.
+     * @return true if the workspace held a matrix by that name.
+     */
+    synchronized boolean drop(String name) {
+        Entry entry = entries.remove(name);
+        if (entry == current) {
+            current = new Entry(name);
+            entries.put(name, current);
+        }
+        return entry != null && entry.matrix != null;
+    }
+
+    /**
+     * Drops the least recently used matrices other than the current one while there are too many or they take
+     * too much memory.
+     * @param keep Another matrix that is not dropped, or null.
+     * @return The names of the dropped matrices.
+     */
+    synchronized List<String> evict(Entry keep) {
+        List<String> dropped = new ArrayList<>();
+        long bytes = memoryBytes();
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while ((entries.size() > MAX_MATRICES || bytes > MAX_BYTES) && leastRecentlyUsed.hasNext()) {
+            Entry entry = leastRecentlyUsed.next();
+            if (entry != current && entry != keep) {
+                bytes -= entry.memoryBytes();
+                leastRecentlyUsed.remove();
+                dropped.add(entry.name);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the memory of the matrices of the workspace.
+     * @return The size in bytes of the matrices and their derived state.
+     */
+    synchronized long memoryBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += entry.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Describes the matrices of the workspace, the least recently used first.
+     * @return One line per matrix with its name, size and memory, and the memory of all of them.
+     */
+    synchronized String describe() {
+        StringBuilder description = new StringBuilder();
+        for (Entry entry : entries.values()) {
+            Matrix matrix = entry.matrix;
+            description.append(entry == current ? "* " : "  ").append('"').append(entry.name).append("\" ")
+                    .append(matrix == null ? "empty" : matrix.getRows() + "x" + matrix.getColumns())
+                    .append(matrix != null && matrix.getSparseCells() != null ? " sparse" : "")
+                    .append(", ").append(entry.memoryBytes() / 1024).append(" KiB")
+                    .append(entry.landmarks != null ? ", landmarks" : "")
+                    .append(entry.hierarchy != null ? ", hierarchy" : "")
+                    .append(entry.matrix != null && entry.matrix.hasComponentLabels() ? ", component labels" : "")
+                    .append('\n');
+        }
+        return description.append(memoryBytes() / 1024).append(" KiB of ").append(MAX_BYTES / 1024).append(" KiB, ")
+                .append(entries.size()).append(" of ").append(MAX_MATRICES).append(" matrices").toString();
+    }
+
+    /**
+     * A named matrix of a session and the state derived from it.
+     */
+    static final class Entry {
+        private final String name;
+        volatile Matrix matrix; // The matrix, or null until it is uploaded
+        volatile LandmarkIndex landmarks; // The landmark tables of the matrix, if they were built
+        volatile HierarchicalPathEngine hierarchy; // The hierarchical path engine of the matrix, built on the first approximate query
+
+        private Entry(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the matrix.
+         * @return The name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the memory of the matrix and of the state derived from it.
+         * @return The size in bytes.
+         */
+        long memoryBytes() {
+            Matrix currentMatrix = matrix;
+            LandmarkIndex currentLandmarks = landmarks;
+            HierarchicalPathEngine currentHierarchy = hierarchy;
+            return (currentMatrix == null ? 0 : currentMatrix.memoryBytes())
+                    + (currentLandmarks == null ? 0 : currentLandmarks.memoryBytes())
+                    + (currentHierarchy == null ? 0 : currentHierarchy.memoryBytes());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package pojo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+1. ParallelBfs answers the same "all shortest paths" query as BfsTls, with the same paths in the same order.
+2. Instead of queueing every partial path, it computes the BFS level of every cell, one whole level at a time.
+3. The current level (the frontier) is an int array of cell ids. It is split into chunks that are expanded as
+   RecursiveTasks on a ForkJoinPool; small frontiers are expanded inline by the calling thread.
+4. A cell is claimed by the first task that sets its bit in a shared visited bitmap with a compare-and-set,
+   so every cell enters the next frontier exactly once and gets its level written by exactly one task.
+5. Every task appends the cells it claimed to its own buffer; the buffers are concatenated when the tasks are joined.
+6. The traversal stops after the level in which the destination is discovered
+   (for a batch of destinations, after the level in which the last of them is discovered).
+7. The shortest paths are then rebuilt from the levels by a PathDag with unit steps, trying the neighbors in the
+   order of getAllReachableNodes(), which is the order BfsTls dequeues them in.
+ */
+
+/**
+ * ParallelBfs is a level-synchronous breadth-first search that expands each frontier level across a ForkJoinPool.
+ */
+public class ParallelBfs {
+
+    // Grids with fewer cells than this are searched by BfsTls
+    public static final int MIN_PARALLEL_CELLS = 1 << 16;
+
+    // Frontier chunks smaller than this are not split any further
+    static final int CHUNK_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a ParallelBfs running on the given pool.
+     * @param pool The ForkJoinPool the frontier levels are expanded on.
+     */
+    public ParallelBfs(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a list of the shortest paths from source to destination, like BfsTls.traverse().
+     *
+     * @param aTraversable The traversable matrix.
+     * @param source       The source index.
+     * @param destination  The destination index.
+     * @return A list of the shortest paths from source to destination.
+     */
+    public List<List<Node<Index>>> traverse(TraversableMatrix aTraversable, Index source, Index destination) {
+        WeightedGrid grid = aTraversable.getInnerMatrix().getWeightedGrid();
+
+        // Jagged matrices, indices outside the matrix and sources that are not 1 keep the behavior of BfsTls
+        if (grid.size() == 0 || !grid.contains(source) || !grid.contains(destination) || grid.weight(grid.idOf(source)) != 1) {
+            return new BfsTls<Index>().traverse(aTraversable, source, destination);
+        }
+
+        aTraversable.setSource(source);
+        aTraversable.setDestination(destination);
+
+        int target = grid.idOf(destination);
+        PathDag levels = computeLevels(grid, grid.idOf(source), target);
+        return levels.enumeratePaths(target);
+    }
+
+    /**
+     * Computes the BFS level of the cells with value 1 that are reachable from the source, 8 neighbors per cell.
+     *
+     * @param grid   The grid to search.
+     * @param source The id of the source cell, whose value must be 1.
+     * @param target The id of the cell the search stops at, or -1 to reach the whole component.
+     * @return The levels of the reached cells, as unit-step distances.
+     */
+    public PathDag computeLevels(WeightedGrid grid, int source, int target) {
+        return computeLevels(grid, source, target < 0 ? new int[0] : new int[]{target});
+    }
+
+    /**
+     * Computes the BFS levels from a source with one traversal that stops after the level in which
+     * the last of several targets is discovered.
+     *
+     * @param grid    The grid to search.
+     * @param source  The id of the source cell, whose value must be 1.
+     * @param targets The ids of the cells the search stops at, empty to reach the whole component.
+     * @return The levels of the reached cells, as unit-step distances.
+     */
+    public PathDag computeLevels(WeightedGrid grid, int source, int[] targets) {
+        int[] levels = new int[grid.size()];
+        Arrays.fill(levels, WeightedGrid.UNREACHED);
+        AtomicIntegerArray visited = new AtomicIntegerArray((grid.size() + 31) >>> 5);
+
+        levels[source] = 0;
+        claim(visited, source);
+        int[] frontier = {source};
+        int level = 0;
+        int reached = 1;
+        CancellationToken token = CancellationToken.current();
+
+        // The targets before this position were discovered; every level moves it forward
+        int discovered = 0;
+        while (discovered < targets.length && levels[targets[discovered]] != WeightedGrid.UNREACHED) {
+            discovered++;
+        }
+        while (frontier.length > 0 && (targets.length == 0 || discovered < targets.length)) {
+            ExpandTask task = new ExpandTask(grid, visited, levels, frontier, 0, frontier.length, level + 1);
+            IntArrayList next = frontier.length <= CHUNK_SIZE ? task.compute() : pool.invoke(task);
+            frontier = next.toArray();
+            reached += frontier.length;
+            level++;
+            // Checked once per level, on the thread that runs the request
+            token.checkpoint(frontier.length);
+            while (discovered < targets.length && levels[targets[discovered]] != WeightedGrid.UNREACHED) {
+                discovered++;
+            }
+        }
+        return new PathDag(grid, source, levels, reached, true);
+    }
+
+    /**
+     * Sets the visited bit of a cell.
+     * @return true if this call set the bit, false if the cell was already visited.
+     */
+    private static boolean claim(AtomicIntegerArray visited, int cell) {
+        int word = cell >>> 5;
+        int mask = 1 << (cell & 31);
+        while (true) {
+            int current = visited.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (visited.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Expands a range of the frontier into the cells of the next level, splitting itself while the range is large.
+     */
+    @SuppressWarnings("serial") // A ForkJoinTask is Serializable by inheritance; the task is never serialized
+    private static final class ExpandTask extends RecursiveTask<IntArrayList> {
+        private final WeightedGrid grid;
+        private final AtomicIntegerArray visited;
+        private final int[] levels;
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final int nextLevel;
+
+        ExpandTask(WeightedGrid grid, AtomicIntegerArray visited, int[] levels, int[] frontier, int from, int to, int nextLevel) {
+            this.grid = grid;
+            this.visited = visited;
+            this.levels = levels;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.nextLevel = nextLevel;
+        }
+
+        @Override
+        protected IntArrayList compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                ExpandTask left = new ExpandTask(grid, visited, levels, frontier, from, middle, nextLevel);
+                ExpandTask right = new ExpandTask(grid, visited, levels, frontier, middle, to, nextLevel);
+                left.fork();
+                IntArrayList rightCells = right.compute();
+                IntArrayList leftCells = left.join();
+                leftCells.addAll(rightCells);
+                return leftCells;
+            }
+
+            IntArrayList buffer = new IntArrayList();
+            for (int i = from; i < to; i++) {
+                int u = frontier[i];
+                for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                    int v = grid.neighbor(u, k);
+                    if (v >= 0 && grid.weight(v) == 1 && claim(visited, v)) {
+                        levels[v] = nextLevel;
+                        buffer.add(v);
+                    }
+                }
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * A sample usage of the ParallelBfs class: measures the time of a whole-component BFS on pools of 1 to 16 workers.
+     * @param args Command-line arguments: rows, columns, density of 1 cells and number of repetitions.
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        double density = args.length > 2 ? Double.parseDouble(args[2]) : 0.8;
+        int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Random random = new Random(11);
+        int[][] cells = new int[rows][columns];
+        for (int[] row : cells) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = random.nextDouble() < density ? 1 : 0;
+            }
+        }
+        cells[0][0] = 1;
+        WeightedGrid grid = new Matrix(cells).getWeightedGrid();
+        System.out.println("Grid " + rows + "x" + columns + ", density " + density
+                + ", " + Runtime.getRuntime().availableProcessors() + " available processors");
+
+        PathDag reference = null;
+        double baseline = 0;
+        for (int workers = 1; workers <= 16; workers <<= 1) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            ParallelBfs bfs = new ParallelBfs(pool);
+            bfs.computeLevels(grid, 0, -1); // warm up
+
+            long best = Long.MAX_VALUE;
+            PathDag levels = null;
+            for (int r = 0; r < repetitions; r++) {
+                long start = System.nanoTime();
+                levels = bfs.computeLevels(grid, 0, -1);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+
+            if (reference == null) {
+                reference = levels;
+                baseline = best;
+            }
+            for (int v = 0; v < grid.size(); v++) {
+                if (levels.getDistance(v) != reference.getDistance(v)) {
+                    throw new IllegalStateException("Levels differ with " + workers + " workers at cell " + grid.indexOf(v));
+                }
+            }
+            System.out.printf("%2d workers: %8.2f ms, speedup %.2fx, %d cells reached%n",
+                    workers, best / 1e6, baseline / best, levels.getSettledCount());
+        }
+    }
+}
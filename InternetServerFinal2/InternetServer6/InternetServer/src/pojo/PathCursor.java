@@ -0,0 +1,201 @@
+package pojo;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+1. A PathCursor enumerates the lightest (or shortest) paths of a PathDag to one destination a page at a time,
+   so a client that only wants the first paths does not wait for, and the server does not hold, all of them.
+2. The cursor keeps the state of the DFS of PathDag.enumeratePaths between pages: the nodes of the current prefix,
+   their cells and the next neighbor to try for each of them. The memory of a cursor is bounded by the DAG
+   (its distances, the marked cells and one prefix), not by the number of paths.
+3. The paths come in the same order as PathDag.enumeratePaths, and the nodes of the prefix are shared with the
+   paths of the earlier pages, as within one page.
+4. The cursor looks one path ahead, so it knows whether there are more paths after a page.
+5. The number of paths is counted without enumerating them, from the number of tight steps into every marked cell
+   (see PathDag.countPaths), so it is exact however many paths there are.
+6. When the deadline stops a page, the paths of the page found so far are the partial result, and the cursor
+   continues after them on the next page.
+7. Grids the PathDag does not handle are paged from paths found up front with PathCursor.of.
+ */
+
+/**
+ * PathCursor enumerates the paths from a source to a destination on demand, a page at a time.
+ */
+public class PathCursor {
+
+    private final PathDag dag;
+    private final int destination;
+    private final BitSet onDag;
+    private final List<List<Node<Index>>> found; // The paths found up front, for grids without a PathDag
+    private final long foundCost;
+    private final List<Node<Index>> prefix = new ArrayList<>();
+    private final IntArrayList cells = new IntArrayList();
+    private final IntArrayList cursors = new IntArrayList();
+    private List<Node<Index>> next; // The path found ahead of the page that will return it
+    private int position; // The next path of the paths found up front
+    private long returned;
+    private BigInteger total;
+
+    /**
+     * Constructs a PathCursor over the paths of a PathDag.
+     * @param dag         The distances from the source.
+     * @param destination The id of the destination cell.
+     */
+    PathCursor(PathDag dag, int destination) {
+        this.dag = dag;
+        this.destination = destination;
+        this.found = null;
+        this.foundCost = -1;
+        if (dag.getDistance(destination) == WeightedGrid.UNREACHED) {
+            onDag = new BitSet();
+            return;
+        }
+        Node<Index> root = new Node<>(dag.getGrid().indexOf(dag.getSource()));
+        if (dag.getSource() == destination) {
+            onDag = new BitSet();
+            next = new ArrayList<>(List.of(root));
+            return;
+        }
+        onDag = dag.markCellsReaching(destination);
+        prefix.add(root);
+        cells.add(dag.getSource());
+        cursors.add(0);
+    }
+
+    private PathCursor(List<List<Node<Index>>> found, long foundCost) {
+        this.dag = null;
+        this.destination = -1;
+        this.onDag = null;
+        this.found = found;
+        this.foundCost = foundCost;
+        this.total = BigInteger.valueOf(found.size());
+    }
+
+    /**
+     * Constructs a PathCursor over paths that were found up front.
+     * @param paths The paths.
+     * @param cost  The weight (or number of steps) of every path, -1 if there are none.
+     * @return A cursor that returns the paths in their order.
+     */
+    public static PathCursor of(List<List<Node<Index>>> paths, long cost) {
+        return new PathCursor(paths, cost);
+    }
+
+    /**
+     * Returns the next paths.
+     * @param max The largest number of paths to return.
+     * @return Up to max paths, fewer only if there are no more paths.
+     * @throws ComputationTimeoutException If the deadline of the current request passed, with the paths of the page
+     *                                     found so far as its partial result.
+     */
+    public synchronized List<List<Node<Index>>> next(int max) {
+        ArrayList<List<Node<Index>>> page = new ArrayList<>(Math.min(max, 1024));
+        if (found != null) {
+            while (page.size() < max && position < found.size()) {
+                page.add(found.get(position++));
+            }
+            returned += page.size();
+            return page;
+        }
+        try {
+            while (page.size() < max && hasNext()) {
+                page.add(next);
+                next = null;
+                returned++;
+            }
+        } catch (ComputationTimeoutException timeout) {
+            // The number of paths can grow exponentially; answer with the ones of the page found so far
+            throw timeout.withBestWeight(dag.getDistance(destination)).withPartialResult(page);
+        }
+        return page;
+    }
+
+    /**
+     * Checks if there are more paths, finding the next one if it was not found yet.
+     * @return true if next() returns at least one more path.
+     */
+    public synchronized boolean hasNext() {
+        if (found != null) {
+            return position < found.size();
+        }
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    /**
+     * Continues the DFS up to the next path.
+     * @return The next path, or null if there are no more paths.
+     */
+    private List<Node<Index>> advance() {
+        WeightedGrid grid = dag.getGrid();
+        CancellationToken token = CancellationToken.current();
+        while (!cells.isEmpty()) {
+            token.checkpoint();
+            int top = cells.size() - 1;
+            int u = cells.get(top);
+            int k = cursors.get(top);
+
+            if (k == WeightedGrid.ROW_OFFSETS.length) {
+                prefix.remove(top);
+                cells.removeLast();
+                cursors.removeLast();
+                continue;
+            }
+            cursors.set(top, k + 1);
+
+            int v = grid.neighbor(u, k);
+            if (v < 0 || !onDag.get(v) || !dag.isTight(u, v)) {
+                continue;
+            }
+
+            Node<Index> node = new Node<>(grid.indexOf(v), prefix.get(top));
+            if (v == destination) {
+                List<Node<Index>> path = new ArrayList<>(prefix);
+                path.add(node);
+                return path;
+            } else {
+                prefix.add(node);
+                cells.add(v);
+                cursors.add(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of paths from the source to the destination, counted once without enumerating them.
+     * @return The number of paths, including the ones returned already.
+     */
+    public synchronized BigInteger getTotal() {
+        if (total == null) {
+            total = dag.getDistance(destination) == WeightedGrid.UNREACHED ? BigInteger.ZERO
+                    : dag.getSource() == destination ? BigInteger.ONE
+                    : dag.countPaths(destination, onDag);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of paths returned so far.
+     * @return The number of paths of all the pages.
+     */
+    public synchronized long getReturned() {
+        return returned;
+    }
+
+    /**
+     * Returns the weight of the paths, or their number of steps for BFS levels.
+     * @return The cost of every path, or -1 if the destination is not reachable.
+     */
+    public long getCost() {
+        if (dag == null) {
+            return foundCost;
+        }
+        return dag.getDistance(destination) == WeightedGrid.UNREACHED ? -1 : dag.getDistance(destination);
+    }
+}
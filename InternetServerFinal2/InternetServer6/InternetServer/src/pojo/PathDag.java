@@ -0,0 +1,196 @@
+package pojo;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+ * Explanation of how the paths are rebuilt:
+
+ 1. A PathDag holds the lightest distance from one source cell to the cells of a WeightedGrid.
+ 2. A path weight is the sum of the values of all its cells, the source included, exactly like TraversableMatrix.getPathWeight().
+    For BFS levels (unit steps) every step costs 1 and only the cells that were reached have a distance.
+ 3. A neighbor u is a predecessor of a cell v when dist[u] + cost(v) == dist[v]. Those "tight" steps form a DAG,
+    because a cycle of tight steps would need two touching zero cells, and such grids never reach this class.
+ 4. To enumerate the paths to a destination, the cells that can reach the destination through tight steps are marked
+    first, going backwards from the destination.
+ 5. Then an iterative DFS walks forward from the source, only through marked cells and tight steps,
+    trying the neighbors in the order of Matrix.getAllNeighborsIncludingDiagonals().
+ 6. Every time the DFS reaches the destination, the nodes on the DFS stack are copied as a new path.
+    Nodes are shared between paths with a common prefix and each node's parent is the previous node on the path,
+    as in the paths built by Dijkstra. The DFS runs in a PathCursor, which can also stop after a page of paths.
+ 7. The paths can also be counted without enumerating them, in time linear in the marked cells.
+ */
+
+/**
+ * PathDag stores the lightest distances from a source cell and rebuilds all the lightest paths from them.
+ */
+public class PathDag {
+
+    private final WeightedGrid grid;
+    private final int source;
+    private final int[] distances;
+    private final int settledCount;
+    private final boolean unitSteps;
+
+    /**
+     * Constructs a PathDag over the given distances.
+     * @param grid         The grid the distances were computed on.
+     * @param source       The id of the source cell.
+     * @param distances    The lightest distance of every cell, WeightedGrid.UNREACHED for cells that were not reached.
+     * @param settledCount The number of cells the search settled.
+     */
+    PathDag(WeightedGrid grid, int source, int[] distances, int settledCount) {
+        this(grid, source, distances, settledCount, false);
+    }
+
+    /**
+     * Constructs a PathDag over the given distances or BFS levels.
+     * @param grid         The grid the distances were computed on.
+     * @param source       The id of the source cell.
+     * @param distances    The distance of every cell, WeightedGrid.UNREACHED for cells that were not reached.
+     * @param settledCount The number of cells the search settled.
+     * @param unitSteps    true if every step costs 1 (BFS levels), false if a step costs the value of the cell it enters.
+     */
+    PathDag(WeightedGrid grid, int source, int[] distances, int settledCount, boolean unitSteps) {
+        this.grid = grid;
+        this.source = source;
+        this.distances = distances;
+        this.settledCount = settledCount;
+        this.unitSteps = unitSteps;
+        CellsVisited.add(settledCount);
+    }
+
+    /**
+     * Checks if the step from cell u to its neighbor v lies on a lightest path.
+     * @param u The id of the first cell.
+     * @param v The id of the neighbor cell.
+     * @return true if the step is tight, false otherwise.
+     */
+    boolean isTight(int u, int v) {
+        return distances[u] != WeightedGrid.UNREACHED
+                && distances[v] != WeightedGrid.UNREACHED
+                && (long) distances[u] + (unitSteps ? 1 : grid.weight(v)) == distances[v];
+    }
+
+    /**
+     * Enumerates all the lightest (or, for BFS levels, shortest) paths from the source to the given destination.
+     * @param destination The id of the destination cell.
+     * @return The lightest paths, each one from the source to the destination.
+     */
+    public List<List<Node<Index>>> enumeratePaths(int destination) {
+        return cursor(destination).next(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a cursor that enumerates the same paths as enumeratePaths, a page at a time.
+     * @param destination The id of the destination cell.
+     * @return The cursor, before the first path.
+     */
+    public PathCursor cursor(int destination) {
+        return new PathCursor(this, destination);
+    }
+
+    /**
+     * Counts the paths from the source to the destination without enumerating them:
+     * the number of paths to a cell is the sum of the numbers of paths to its tight predecessors.
+     * @param destination The id of the destination cell, which must have a distance.
+     * @param onDag       The cells that reach the destination through tight steps, from markCellsReaching.
+     * @return The number of paths.
+     */
+    BigInteger countPaths(int destination, BitSet onDag) {
+        BigInteger[] counts = new BigInteger[grid.size()];
+        counts[source] = BigInteger.ONE;
+        IntArrayList stack = new IntArrayList();
+        stack.add(destination);
+        CancellationToken token = CancellationToken.current();
+
+        // A cell is counted once all its predecessors were counted, in the order of an iterative post-order DFS
+        while (!stack.isEmpty()) {
+            token.checkpoint();
+            int v = stack.get(stack.size() - 1);
+            if (counts[v] != null) {
+                stack.removeLast();
+                continue;
+            }
+            BigInteger count = BigInteger.ZERO;
+            boolean ready = true;
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int u = grid.neighbor(v, k);
+                if (u >= 0 && onDag.get(u) && isTight(u, v)) {
+                    if (counts[u] == null) {
+                        stack.add(u);
+                        ready = false;
+                    } else if (ready) {
+                        count = count.add(counts[u]);
+                    }
+                }
+            }
+            if (ready) {
+                counts[v] = count;
+                stack.removeLast();
+            }
+        }
+        return counts[destination];
+    }
+
+    /**
+     * Marks every cell that reaches the destination through tight steps, the destination included.
+     * @param destination The id of the destination cell.
+     * @return The set of marked cell ids.
+     */
+    BitSet markCellsReaching(int destination) {
+        BitSet marked = new BitSet(grid.size());
+        IntArrayList stack = new IntArrayList();
+        marked.set(destination);
+        stack.add(destination);
+
+        while (!stack.isEmpty()) {
+            int v = stack.removeLast();
+            if (v == source) {
+                continue;
+            }
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int u = grid.neighbor(v, k);
+                if (u >= 0 && !marked.get(u) && isTight(u, v)) {
+                    marked.set(u);
+                    stack.add(u);
+                }
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * Returns the lightest distance of a cell.
+     * @param id The id of the cell.
+     * @return The distance of the cell, or WeightedGrid.UNREACHED if it was not settled.
+     */
+    public int getDistance(int id) {
+        return distances[id];
+    }
+
+    /**
+     * Returns the number of cells the search settled before it stopped.
+     * @return The number of settled cells.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns the grid of this PathDag.
+     * @return The grid.
+     */
+    public WeightedGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the id of the source cell.
+     * @return The source id.
+     */
+    public int getSource() {
+        return source;
+    }
+}
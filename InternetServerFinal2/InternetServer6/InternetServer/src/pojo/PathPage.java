@@ -0,0 +1,108 @@
+package pojo;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * PathPage is the answer of a paged path command: a page of the paths from a source to a destination,
+ * the number of all the paths, and the cursor that returns the next page.
+ */
+public class PathPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int cursor;
+    private final long cost;
+    private final BigInteger total;
+    private final long offset;
+    private final CompactPaths paths;
+    private final boolean infinitePaths;
+
+    /**
+     * Constructs a PathPage.
+     * @param cursor        The id of the cursor of the next page, -1 if there are no more paths.
+     * @param cost          The weight (or number of steps) of every path, -1 if the destination is not reachable.
+     * @param total         The number of all the paths from the source to the destination.
+     * @param offset        The number of paths of the earlier pages.
+     * @param paths         The paths of this page.
+     * @param infinitePaths true if the matrix has infinitely many lightest paths, so there is no page.
+     */
+    public PathPage(int cursor, long cost, BigInteger total, long offset, CompactPaths paths, boolean infinitePaths) {
+        this.cursor = cursor;
+        this.cost = cost;
+        this.total = total;
+        this.offset = offset;
+        this.paths = paths;
+        this.infinitePaths = infinitePaths;
+    }
+
+    /**
+     * Returns the id of the cursor to pass to "next paths page" for the next page.
+     * @return The cursor id, -1 if this is the last page.
+     */
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Checks if there are paths after this page.
+     * @return true if the cursor has more paths.
+     */
+    public boolean hasMore() {
+        return cursor >= 0;
+    }
+
+    /**
+     * Returns the weight of the lightest paths, or the number of steps of the shortest paths.
+     * @return The cost, or -1 if the destination is not reachable.
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * Returns the number of all the paths, which may be far more than could ever be enumerated.
+     * @return The number of paths.
+     */
+    public BigInteger getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the position of the first path of this page among all the paths.
+     * @return The number of paths of the earlier pages.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the paths of this page.
+     * @return The paths, in the order of the enumeration.
+     */
+    public List<List<Node<Index>>> getPaths() {
+        return paths.toNodePaths();
+    }
+
+    /**
+     * Returns the paths of this page without decoding them.
+     * @return The encoded paths.
+     */
+    public CompactPaths getCompactPaths() {
+        return paths;
+    }
+
+    /**
+     * Checks if the matrix has infinitely many lightest paths, as the "lightest paths" command reports.
+     * @return true if two zero cells touch each other.
+     */
+    public boolean hasInfinitePaths() {
+        return infinitePaths;
+    }
+
+    @Override
+    public String toString() {
+        return "Paths " + offset + "-" + (offset + paths.size()) + " of " + total + (cost >= 0 ? ", cost " + cost : "")
+                + (hasMore() ? ", more with cursor " + cursor : "") + (infinitePaths ? ", infinite lightest paths" : "");
+    }
+}
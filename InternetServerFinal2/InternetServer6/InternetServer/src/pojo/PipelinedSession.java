@@ -0,0 +1,323 @@
+package pojo;
+
+import server.AdmissionControl;
+import server.CommandMetrics;
+import server.CountingOutputStream;
+import server.Log;
+import server.MetricsRegistry;
+import server.Request;
+import server.RequestScheduler;
+import server.Response;
+import server.ServerBusy;
+import server.Session;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+1. A PipelinedSession serves a client that switched its session to the pipelined mode with the "pipeline" command.
+   From then on the client sends server.Request objects, each with a correlation id, and may send the next request
+   without waiting for the reply to the previous one. "stop" (as a Request or as a String) ends the session.
+2. The queries of the session (neighbors, components, paths, submarines) run concurrently in the lanes of the
+   RequestScheduler. Each one is answered with a server.Response that carries its id as soon as it completes,
+   so the responses may arrive in another order than the requests.
+3. At most -Dserver.pipeline.maxInFlight requests of a session (8 by default) are read and not yet answered.
+   Every request takes a permit of a semaphore before it is read, and the writer returns the permit once the response
+   is written. When the permits run out the session stops reading, and TCP pushes back on the client.
+4. The commands that change the session ("matrix", "sparse matrix", "matrix update", "landmarks", "deadline", "compact paths",
+   "close paths", "use matrix", "drop matrix") are barriers: they take every permit, so they wait until the earlier
+   requests were answered and run alone.
+   A query therefore always sees the matrix as it was when the query was sent.
+   A request that names a matrix (Request.withMatrix) works on that matrix of the session and leaves the current one
+   as it is, so the requests of several matrices can be mixed in the pipeline. A query captures its matrix when
+   it starts, and fails at once if the session does not hold a matrix by that name.
+5. A single writer thread per session writes the responses from a queue, in the order they complete,
+   so the lane threads never block on a slow client and the stream is never written by two threads.
+6. Every request is admitted by the AdmissionControl, limited by its deadline and recorded in the metrics of its
+   command, like a request of the lock-step protocol. The results are the results of the algorithms themselves,
+   without the messages the lock-step protocol sends in place of empty results.
+ */
+
+/**
+ * The PipelinedSession class serves the pipelined mode of a session: requests with correlation ids,
+ * run concurrently and answered as they complete, with a bound on the requests in flight.
+ */
+class PipelinedSession {
+    // The largest number of requests of a session that were read and not answered yet
+    private static final int MAX_IN_FLIGHT = Math.max(1, Integer.getInteger("server.pipeline.maxInFlight", 8));
+    // The commands that change the state of the session and run alone
+    private static final Set<String> BARRIERS = Set.of("matrix", "sparse matrix", "matrix update", "landmarks", "deadline", "compact paths",
+            "close paths", "use matrix", "drop matrix");
+    // The element of the queue that stops the writer
+    private static final Completion END = new Completion(null, null, 0);
+
+    private final MatrixHandler handler;
+    private final ObjectInputStream objectInputStream;
+    private final ObjectOutputStream objectOutputStream;
+    private final CountingOutputStream countingOutputStream;
+    private final Session session;
+    private final String client;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Completion> completed;
+    private final Set<CancellationToken> running; // The deadlines of the queries that compute
+    private volatile boolean writeFailed;
+
+    /**
+     * Constructs the pipelined mode of a session, over the streams the lock-step protocol opened.
+     * @param handler              The handler of the session, which holds its matrix.
+     * @param objectInputStream    The stream from the client.
+     * @param objectOutputStream   The stream to the client.
+     * @param countingOutputStream The stream under objectOutputStream that counts the bytes.
+     * @param session              The session of the client, or null if the handler is used outside InternetServer.
+     */
+    PipelinedSession(MatrixHandler handler, ObjectInputStream objectInputStream, ObjectOutputStream objectOutputStream,
+                     CountingOutputStream countingOutputStream, Session session) {
+        this.handler = handler;
+        this.objectInputStream = objectInputStream;
+        this.objectOutputStream = objectOutputStream;
+        this.countingOutputStream = countingOutputStream;
+        this.session = session;
+        this.client = session == null ? "local" : session.getClientHost();
+        this.inFlight = new Semaphore(MAX_IN_FLIGHT);
+        this.completed = new LinkedBlockingQueue<>();
+        this.running = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Reads and starts requests until the client sends "stop", disconnects or its session is cancelled,
+     * and returns once every request that was read was answered.
+     * @throws IOException            If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     */
+    void run() throws IOException, ClassNotFoundException {
+        Thread writer = new Thread(this::writeLoop, "pipeline-writer-" + (session == null ? "local" : session.getId()));
+        writer.setDaemon(true);
+        writer.start();
+        boolean stopped = false;
+        try {
+            while (session == null || !session.isCancelled()) {
+                inFlight.acquire();
+                Object read = handler.readArgument(objectInputStream, "pipeline");
+                long readAt = System.nanoTime();
+                if ("stop".equals(read) || read instanceof Request stop && "stop".equals(stop.getCommand())) {
+                    inFlight.release();
+                    stopped = true;
+                    break;
+                }
+                if (!(read instanceof Request request)) {
+                    CommandMetrics metrics = MatrixHandler.metricsOf("unknown");
+                    metrics.recordRequest();
+                    metrics.recordError();
+                    completed.add(new Completion(new Response(-1, String.valueOf(read), null,
+                            "The pipelined mode expects Request objects"), metrics, readAt));
+                    continue;
+                }
+                CommandMetrics metrics = MatrixHandler.metricsOf(request.getCommand());
+                metrics.recordRequest();
+                if (BARRIERS.contains(request.getCommand())) {
+                    runBarrier(request, metrics, readAt);
+                } else {
+                    start(request, metrics, readAt);
+                }
+            }
+        } catch (InterruptedException interruptedException) {
+            // The session was cancelled while it waited for a permit
+            Thread.currentThread().interrupt();
+        } finally {
+            // A client that is gone does not need the results of its queries
+            if (!stopped) {
+                running.forEach(CancellationToken::cancel);
+            }
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+            completed.add(END);
+            try {
+                writer.join();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts a request that does not change the session: a query runs in a lane of the RequestScheduler,
+     * anything else is answered at once.
+     */
+    private void start(Request request, CommandMetrics metrics, long readAt) {
+        String command = request.getCommand();
+        if ("stats".equals(command)) {
+            answer(request, metrics, readAt, MetricsRegistry.get().toText(), null);
+            return;
+        }
+        if ("matrices".equals(command)) {
+            answer(request, metrics, readAt, handler.describeMatrices(), null);
+            return;
+        }
+        CancellationToken token = new CancellationToken(readAt, TimeUnit.MILLISECONDS.toNanos(handler.getDeadlineMillis()));
+        Callable<?> computation;
+        long cost;
+        try {
+            handler.selectMatrix(request.getMatrix(), false);
+            Callable<?> query = handler.createQuery(command, request.getArguments());
+            // The AlgorithmRunEvent records the size of the matrix the request names, so it is wrapped while that is selected
+            computation = query == null ? null : handler.instrumented(command, metrics, query, token);
+            cost = handler.estimateCost(command);
+        } catch (RuntimeException invalid) {
+            metrics.recordError();
+            answer(request, metrics, readAt, null, invalid.getMessage() == null ? invalid.toString() : invalid.getMessage());
+            return;
+        } finally {
+            handler.selectMatrix(null, false);
+        }
+        if (computation == null) {
+            metrics.recordError();
+            answer(request, metrics, readAt, null, "Unknown command \"" + command + "\"");
+            return;
+        }
+
+        AdmissionControl.Ticket ticket = null;
+        if (cost > 0) {
+            ticket = AdmissionControl.get().tryAdmit(client, cost);
+            if (ticket == null) {
+                ServerBusy busy = AdmissionControl.get().busy(client, command, cost);
+                metrics.recordRejected();
+                Log.sampled(Log.Level.WARN, "busy", busy::toString);
+                answer(request, metrics, readAt, busy, null);
+                return;
+            }
+        }
+
+        AdmissionControl.Ticket admitted = ticket;
+        running.add(token);
+        RequestScheduler.get().submit(cost, () -> {
+            // Every outcome is answered, so the permit of the request always returns
+            Object result = null;
+            String error = null;
+            try {
+                result = computation.call();
+            } catch (ComputationTimeoutException timeoutException) {
+                result = handler.timeoutResponse(command, metrics, timeoutException);
+            } catch (Exception e) {
+                Log.error("\"" + command + "\" failed", e);
+                metrics.recordError();
+                error = String.valueOf(e);
+            } finally {
+                running.remove(token);
+                // The reservation ends with the computation, not when a slow client has read the response
+                if (admitted != null) {
+                    admitted.release();
+                }
+            }
+            answer(request, metrics, readAt, result, error);
+            return null;
+        });
+    }
+
+    /**
+     * Runs a request that changes the session once every earlier request was answered.
+     * @throws InterruptedException If the session is cancelled while it waits.
+     */
+    private void runBarrier(Request request, CommandMetrics metrics, long readAt) throws InterruptedException {
+        // The request holds one permit; with the others no request is in flight
+        inFlight.acquire(MAX_IN_FLIGHT - 1);
+        try {
+            // Only an upload creates a matrix; anything else needs the matrix it names
+            handler.selectMatrix(request.getMatrix(), "matrix".equals(request.getCommand()) || "sparse matrix".equals(request.getCommand()));
+            Object[] arguments = request.getArguments();
+            Object result = switch (request.getCommand()) {
+                case "matrix" -> {
+                    handler.uploadMatrix((int[][]) arguments[0], session);
+                    yield null;
+                }
+                case "sparse matrix" -> {
+                    handler.uploadSparseMatrix((SparseCells) arguments[0], session);
+                    yield null;
+                }
+                case "matrix update" -> {
+                    handler.updateMatrix((Index) arguments[0], (Integer) arguments[1]);
+                    yield null;
+                }
+                case "landmarks" -> handler.buildLandmarks((Integer) arguments[0]);
+                case "compact paths" -> {
+                    handler.setCompactPaths((Boolean) arguments[0]);
+                    yield null;
+                }
+                case "close paths" -> {
+                    handler.closePathCursor((Integer) arguments[0]);
+                    yield null;
+                }
+                case "use matrix" -> handler.useMatrix((String) arguments[0], session);
+                case "drop matrix" -> {
+                    handler.dropMatrix((String) arguments[0]);
+                    yield null;
+                }
+                default -> {
+                    handler.setDeadline((Integer) arguments[0]);
+                    yield null;
+                }
+            };
+            answer(request, metrics, readAt, result, null);
+        } catch (RuntimeException invalid) {
+            Log.error("\"" + request.getCommand() + "\" failed", invalid);
+            metrics.recordError();
+            answer(request, metrics, readAt, null, invalid.getMessage() == null ? invalid.toString() : invalid.getMessage());
+        } finally {
+            handler.selectMatrix(null, false);
+            // The permit of the request itself returns when its response is written
+            inFlight.release(MAX_IN_FLIGHT - 1);
+        }
+    }
+
+    /**
+     * Queues the response of a request for the writer.
+     */
+    private void answer(Request request, CommandMetrics metrics, long readAt, Object result, String error) {
+        Response response = new Response(request.getId(), request.getCommand(), result, error);
+        completed.add(new Completion(response, metrics, readAt));
+    }
+
+    /**
+     * Writes the responses in the order they complete, until the END element.
+     * Once a write fails the responses are only dropped, so that the permits still return.
+     */
+    private void writeLoop() {
+        while (true) {
+            Completion completion = completed.poll();
+            try {
+                if (completion == null) {
+                    completion = completed.take();
+                }
+            } catch (InterruptedException interruptedException) {
+                continue;
+            }
+            if (completion == END) {
+                return;
+            }
+            try {
+                if (!writeFailed) {
+                    handler.reply(objectOutputStream, countingOutputStream, completion.metrics, completion.response);
+                }
+            } catch (IOException ioException) {
+                writeFailed = true;
+                running.forEach(CancellationToken::cancel);
+                Log.debug(() -> "Pipelined session: the client closed its connection");
+            } finally {
+                completion.metrics.recordTotal(System.nanoTime() - completion.readAt);
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * A response waiting for the writer, with the metrics it is recorded in once it is written.
+     */
+    private record Completion(Response response, CommandMetrics metrics, long readAt) {
+    }
+}
@@ -0,0 +1,309 @@
+package pojo;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/*
+1. SparseCells holds the cells of a rows x columns matrix that are not 0, row by row, as sorted column runs:
+   the cells of row r are at the positions rowStart[r] to rowStart[r + 1] - 1, with their columns in cellColumns[]
+   (increasing) and their values in values[]. The memory is 4 bytes per row and 8 bytes per cell that is not 0,
+   so a grid of a few thousand cells over millions of zeros takes kilobytes instead of the whole int[rows][columns].
+2. The value of a cell is a binary search in the columns of its row; a cell that is not stored is 0.
+3. Every stored cell has a position from 0 to size() - 1, in the order of the rows and then the columns.
+   The component algorithms label positions instead of cells, so their work and memory grow with the cells
+   that are not 0 rather than with the area of the matrix.
+4. The cells are immutable: with() returns a copy with one value changed, which costs the number of cells.
+5. A SparseCells read from a client is checked when it is deserialized, so a Matrix never holds runs that are out
+   of order or outside the matrix.
+ */
+
+/**
+ * SparseCells is the sparse form of a matrix: the cells that are not 0, as sorted column runs per row.
+ */
+public class SparseCells implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int rows;
+    private final int columns;
+    private final int[] rowStart;
+    private final int[] cellColumns;
+    private final int[] values;
+
+    private SparseCells(int rows, int columns, int[] rowStart, int[] cellColumns, int[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowStart = rowStart;
+        this.cellColumns = cellColumns;
+        this.values = values;
+    }
+
+    /**
+     * Builds the sparse form of a matrix from its cells that are not 0, in any order.
+     * A cell given several times keeps its last value; cells with value 0 are left out.
+     * @param rows        The number of rows of the matrix.
+     * @param columns     The number of columns of the matrix.
+     * @param cellRows    The rows of the cells.
+     * @param cellColumns The columns of the cells.
+     * @param values      The values of the cells.
+     * @return The sparse matrix.
+     * @throws IllegalArgumentException If the arrays differ in length or a cell is outside the matrix.
+     */
+    public static SparseCells of(int rows, int columns, int[] cellRows, int[] cellColumns, int[] values) {
+        if (rows < 0 || columns < 0 || cellRows.length != cellColumns.length || cellRows.length != values.length) {
+            throw new IllegalArgumentException("A sparse matrix needs a size and one row, column and value per cell");
+        }
+        // Sort the cells by row with a counting sort, then by column and order within every row
+        int[] given = new int[rows + 1];
+        for (int i = 0; i < cellRows.length; i++) {
+            if (cellRows[i] < 0 || cellRows[i] >= rows || cellColumns[i] < 0 || cellColumns[i] >= columns) {
+                throw new IllegalArgumentException("The cell (" + cellRows[i] + "," + cellColumns[i] + ") is outside the "
+                        + rows + "x" + columns + " matrix");
+            }
+            given[cellRows[i] + 1]++;
+        }
+        for (int r = 0; r < rows; r++) {
+            given[r + 1] += given[r];
+        }
+        long[] keys = new long[cellRows.length];
+        int[] next = Arrays.copyOf(given, rows);
+        for (int i = 0; i < cellRows.length; i++) {
+            keys[next[cellRows[i]]++] = (long) cellColumns[i] << 32 | i;
+        }
+        int[] rowStart = new int[rows + 1];
+        IntArrayList keptColumns = new IntArrayList();
+        IntArrayList keptValues = new IntArrayList();
+        for (int r = 0; r < rows; r++) {
+            Arrays.sort(keys, given[r], given[r + 1]);
+            for (int k = given[r]; k < given[r + 1]; k++) {
+                int column = (int) (keys[k] >>> 32);
+                int value = values[(int) keys[k]];
+                // Of the cells given several times, the last one is sorted last and kept
+                boolean repeated = k + 1 < given[r + 1] && (int) (keys[k + 1] >>> 32) == column;
+                if (!repeated && value != 0) {
+                    keptColumns.add(column);
+                    keptValues.add(value);
+                }
+            }
+            rowStart[r + 1] = keptColumns.size();
+        }
+        return new SparseCells(rows, columns, rowStart, keptColumns.toArray(), keptValues.toArray());
+    }
+
+    /**
+     * Builds the sparse form of a rectangular matrix.
+     * @param cells The values of the matrix.
+     * @return The sparse matrix.
+     * @throws IllegalArgumentException If the rows of the matrix differ in length.
+     */
+    public static SparseCells of(int[][] cells) {
+        int columns = cells.length == 0 ? 0 : cells[0].length;
+        int[] rowStart = new int[cells.length + 1];
+        for (int r = 0; r < cells.length; r++) {
+            if (cells[r].length != columns) {
+                throw new IllegalArgumentException("A sparse matrix needs rows of the same length");
+            }
+            int stored = 0;
+            for (int value : cells[r]) {
+                stored += value != 0 ? 1 : 0;
+            }
+            rowStart[r + 1] = rowStart[r] + stored;
+        }
+        int[] cellColumns = new int[rowStart[cells.length]];
+        int[] values = new int[cellColumns.length];
+        for (int r = 0, position = 0; r < cells.length; r++) {
+            for (int c = 0; c < columns; c++) {
+                if (cells[r][c] != 0) {
+                    cellColumns[position] = c;
+                    values[position++] = cells[r][c];
+                }
+            }
+        }
+        return new SparseCells(cells.length, columns, rowStart, cellColumns, values);
+    }
+
+    /**
+     * Returns the number of rows of the matrix.
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the matrix.
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of cells that are not 0.
+     * @return The number of stored cells.
+     */
+    public int size() {
+        return cellColumns.length;
+    }
+
+    /**
+     * Returns the position of a cell among the stored cells.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The position, or -1 if the cell is 0 or outside the matrix.
+     */
+    public int positionOf(int row, int column) {
+        if (row < 0 || row >= rows) {
+            return -1;
+        }
+        int position = Arrays.binarySearch(cellColumns, rowStart[row], rowStart[row + 1], column);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Returns the value of a cell.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The value, 0 for a cell that is not stored.
+     * @throws IndexOutOfBoundsException If the cell is outside the matrix.
+     */
+    public int getValue(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("The cell (" + row + "," + column + ") is outside the " + rows + "x" + columns + " matrix");
+        }
+        int position = positionOf(row, column);
+        return position < 0 ? 0 : values[position];
+    }
+
+    /**
+     * Returns the position of the first stored cell of a row.
+     * @param row The row, or getRows() for the position after the last cell.
+     * @return The position.
+     */
+    public int positionOfRow(int row) {
+        return rowStart[row];
+    }
+
+    /**
+     * Returns the row of a stored cell.
+     * @param position The position of the cell.
+     * @return The row.
+     */
+    public int rowAt(int position) {
+        // The last row that starts at or before the position, which is not empty
+        int low = 0, high = rows - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (rowStart[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the column of a stored cell.
+     * @param position The position of the cell.
+     * @return The column.
+     */
+    public int columnAt(int position) {
+        return cellColumns[position];
+    }
+
+    /**
+     * Returns the value of a stored cell.
+     * @param position The position of the cell.
+     * @return The value, never 0.
+     */
+    public int valueAt(int position) {
+        return values[position];
+    }
+
+    /**
+     * Returns a copy of the matrix with one value changed.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @param value  The new value; 0 removes the cell.
+     * @return The changed matrix.
+     * @throws IndexOutOfBoundsException If the cell is outside the matrix.
+     */
+    public SparseCells with(int row, int column, int value) {
+        if (getValue(row, column) == value) {
+            return this;
+        }
+        int position = positionOf(row, column);
+        int insertAt = position >= 0 ? position : -Arrays.binarySearch(cellColumns, rowStart[row], rowStart[row + 1], column) - 1;
+        int change = position >= 0 ? (value == 0 ? -1 : 0) : 1;
+        int[] newColumns = new int[cellColumns.length + change];
+        int[] newValues = new int[newColumns.length];
+        System.arraycopy(cellColumns, 0, newColumns, 0, insertAt);
+        System.arraycopy(values, 0, newValues, 0, insertAt);
+        int tail = insertAt + (position >= 0 ? 1 : 0); // The first cell after the changed one
+        int at = insertAt;
+        if (value != 0) {
+            newColumns[at] = column;
+            newValues[at++] = value;
+        }
+        System.arraycopy(cellColumns, tail, newColumns, at, cellColumns.length - tail);
+        System.arraycopy(values, tail, newValues, at, values.length - tail);
+        int[] newRowStart = rowStart.clone();
+        for (int r = row + 1; r <= rows; r++) {
+            newRowStart[r] += change;
+        }
+        return new SparseCells(rows, columns, newRowStart, newColumns, newValues);
+    }
+
+    /**
+     * Returns the dense form of the matrix.
+     * @return A new int[rows][columns] with the stored values and 0 elsewhere.
+     */
+    public int[][] toDense() {
+        int[][] cells = new int[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int position = rowStart[r]; position < rowStart[r + 1]; position++) {
+                cells[r][cellColumns[position]] = values[position];
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the memory the cells take.
+     * @return The size of the arrays in bytes.
+     */
+    public long memoryBytes() {
+        return 48 + 4L * (rowStart.length + cellColumns.length + values.length);
+    }
+
+    /**
+     * Checks the runs of a deserialized matrix.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (rows < 0 || columns < 0 || rowStart == null || cellColumns == null || values == null
+                || rowStart.length != rows + 1 || rowStart[0] != 0 || rowStart[rows] != cellColumns.length
+                || values.length != cellColumns.length) {
+            throw new InvalidObjectException("The runs of the sparse matrix do not match its size");
+        }
+        for (int r = 0; r < rows; r++) {
+            if (rowStart[r + 1] < rowStart[r]) {
+                throw new InvalidObjectException("The rows of the sparse matrix are out of order");
+            }
+            for (int position = rowStart[r]; position < rowStart[r + 1]; position++) {
+                boolean ordered = position == rowStart[r] || cellColumns[position] > cellColumns[position - 1];
+                if (cellColumns[position] < 0 || cellColumns[position] >= columns || !ordered || values[position] == 0) {
+                    throw new InvalidObjectException("The cells of row " + r + " of the sparse matrix are not sorted columns with values");
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " sparse matrix with " + size() + " cells";
+    }
+}
@@ -1,5 +1,7 @@
 package pojo;
 
+import server.Log;
+
 import java.io.Serializable;
 import java.util.*;
 
@@ -43,7 +45,7 @@ public class SubmarineCounter implements Serializable {
 
                 // Convert the map values to a List<List<Index>> if needed
                 List<List<Integer>> list = new ArrayList<>(map.values());
-                System.out.println("list is: " + list);
+                Log.debug(() -> "list is: " + Log.render(list));
                 int flag = 0;
                 if (!list.isEmpty()) {
                     List<Integer> first = list.get(0);
@@ -48,9 +48,9 @@ public class TraversableMatrix implements Traversable<Index>, Serializable {
      */
     @Override
     public void setSource(@NotNull Index source){
-        if((source.getRow() >=0 && source.getRow()<getInnerMatrix().getPrimitiveMatrix().length)
+        if((source.getRow() >=0 && source.getRow()<getInnerMatrix().getRows())
         && (source.getColumn() >=0 &&
-                source.getColumn() < getInnerMatrix().getPrimitiveMatrix()[0].length)){
+                source.getColumn() < getInnerMatrix().getColumns())){
             this.source = source;
         }
 
@@ -62,9 +62,9 @@ public class TraversableMatrix implements Traversable<Index>, Serializable {
      */
     @Override
     public void setDestination(@NotNull Index destination) {
-        if((destination.getRow() >=0 && destination.getRow()<getInnerMatrix().getPrimitiveMatrix().length)
+        if((destination.getRow() >=0 && destination.getRow()<getInnerMatrix().getRows())
                 && (destination.getColumn() >=0 &&
-                destination.getColumn() < getInnerMatrix().getPrimitiveMatrix()[0].length)){
+                destination.getColumn() < getInnerMatrix().getColumns())){
             this.destination = destination;
         }
     }
@@ -166,18 +166,21 @@ public class TraversableMatrix implements Traversable<Index>, Serializable {
     }
 
     /**
-     * Retrieves a list of all traversable indexes in the TraversableMatrix.
+     * Retrieves a list of all traversable indexes in the TraversableMatrix: the cells that are not 0, row by row.
+     * A sparse matrix lists its stored cells without visiting its zeros.
      *
      * @return A list of Index objects representing all traversable indexes.
      */
     public List<Index> getAllTraversableIndexes() {
         List<Index> allIndexes = new ArrayList<>();
+        CellSlots slots = new CellSlots(getInnerMatrix());
 
-        // Iterate over each row and column in the primitive matrix
-        for (int i = 0; i < getInnerMatrix().getPrimitiveMatrix().length; i++) {
-            for (int j = 0; j < getInnerMatrix().getPrimitiveMatrix().length; j++) {
-                Index index = new Index(i, j);
-                allIndexes.add(index);
+        // Iterate over the cells of every row, which are only the stored cells of a sparse matrix
+        for (int i = 0; i < slots.getRows(); i++) {
+            for (int slot = slots.first(i); slot < slots.end(i); slot++) {
+                if (slots.valueOf(slot, i) != 0) {
+                    allIndexes.add(new Index(i, slots.columnOf(slot, i)));
+                }
             }
         }
 
@@ -0,0 +1,331 @@
+package pojo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+
+    /*
+    * Explanation of how the algorithm works:
+
+    1. WeightAwareDijkstra answers the same "lightest paths" query as Dijkstra, with the same result.
+    2. The WeightedGrid of the matrix (built once per Matrix) tells which queue discipline fits the cell values:
+       - 0-1 BFS with a deque when all the values are 0 or 1,
+       - Dial's circular bucket queue when all the values are between 0 and WeightedGrid.MAX_DIAL_WEIGHT,
+       - a binary heap of primitive ints for larger non-negative values.
+    3. Grids with negative values or jagged rows, and indices outside the grid, are left to the original Dijkstra.
+    4. If two zero cells touch each other there are infinite lightest paths and an empty set is returned, as in Dijkstra.
+    5. Otherwise the lightest distance of every cell is computed once, with one int per cell instead of one path per queue entry.
+       The search stops as soon as every cell that is not heavier than the destination is settled.
+       A batch of queries from one source passes all its destinations, and the search stops past the heaviest of them.
+    6. The lightest paths are then rebuilt from the tight steps of the distances by a PathDag.
+    */
+
+/**
+ * WeightAwareDijkstra finds all the lightest paths in a traversable matrix, picking the queue from the range of the cell values.
+ */
+public class WeightAwareDijkstra {
+
+    /**
+     * Finds the lightest paths in a traversable matrix from a source index to a destination index.
+     *
+     * @param aTraversable     The traversable matrix to search for paths.
+     * @param sourceIndex      The index of the source node.
+     * @param destinationIndex The index of the destination node.
+     * @return A set of the lightest paths from the source to the destination.
+     */
+    public HashSet<List<Node<Index>>> findLightestPaths(TraversableMatrix aTraversable, Index sourceIndex, Index destinationIndex) {
+        WeightedGrid grid = aTraversable.getInnerMatrix().getWeightedGrid();
+
+        if (grid.getStrategy() == WeightedGrid.Strategy.LEGACY || !grid.contains(sourceIndex) || !grid.contains(destinationIndex)) {
+            return new Dijkstra().findLightestPaths(aTraversable, sourceIndex, destinationIndex);
+        }
+
+        // Keep the traversable in the same state Dijkstra leaves it in
+        aTraversable.setSource(sourceIndex);
+        aTraversable.setDestination(destinationIndex);
+
+        // If we have 2 zeros one next to each other than we have infinite paths.
+        if (grid.hasTouchingZeroCells()) {
+            return HashSet.newHashSet(0);
+        }
+
+        int destination = grid.idOf(destinationIndex);
+        PathDag dag = computeDistances(grid, grid.idOf(sourceIndex), destination);
+        return new HashSet<>(dag.enumeratePaths(destination));
+    }
+
+    /**
+     * Computes the lightest distances from a source cell with the queue chosen for the grid.
+     *
+     * @param grid   The grid to search, whose strategy must not be LEGACY.
+     * @param source The id of the source cell.
+     * @param target The id of the cell the search may stop at, or -1 to settle the whole grid.
+     * @return The distances from the source.
+     */
+    public PathDag computeDistances(WeightedGrid grid, int source, int target) {
+        return computeDistances(grid, source, target < 0 ? new int[0] : new int[]{target});
+    }
+
+    /**
+     * Computes the lightest distances from a source cell to several targets with one search,
+     * which stops as soon as every target is settled.
+     *
+     * @param grid    The grid to search, whose strategy must not be LEGACY.
+     * @param source  The id of the source cell.
+     * @param targets The ids of the cells the search may stop at, empty to settle the whole grid.
+     * @return The distances from the source.
+     */
+    public PathDag computeDistances(WeightedGrid grid, int source, int[] targets) {
+        int[] distances = new int[grid.size()];
+        Arrays.fill(distances, WeightedGrid.UNREACHED);
+        distances[source] = grid.weight(source);
+
+        Targets pending = new Targets(grid.size(), targets);
+        int settledCount = switch (grid.getStrategy()) {
+            case ZERO_ONE_BFS -> zeroOneBfs(grid, distances, source, pending);
+            case DIAL_BUCKETS -> dialBuckets(grid, distances, source, pending);
+            case BINARY_HEAP -> binaryHeap(grid, distances, source, pending);
+            default -> throw new IllegalStateException("No weighted search for strategy " + grid.getStrategy());
+        };
+        return new PathDag(grid, source, distances, settledCount);
+    }
+
+    /**
+     * Computes the distances with a deque: cells reached by a 0 step go to the front, cells reached by a 1 step to the back.
+     * @return The number of settled cells.
+     */
+    private int zeroOneBfs(WeightedGrid grid, int[] distances, int source, Targets targets) {
+        CancellationToken token = CancellationToken.current();
+        boolean[] settled = new boolean[grid.size()];
+        IntDeque deque = new IntDeque();
+        deque.addLast(source);
+        int bound = WeightedGrid.UNREACHED;
+        int settledCount = 0;
+
+        while (!deque.isEmpty()) {
+            int u = deque.removeFirst();
+            if (settled[u]) {
+                continue;
+            }
+            if (distances[u] > bound) {
+                break;
+            }
+            settled[u] = true;
+            settledCount++;
+            checkpoint(token, distances, targets.first());
+            if (targets.settle(u)) {
+                bound = distances[u];
+            }
+
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int v = grid.neighbor(u, k);
+                if (v < 0 || settled[v]) {
+                    continue;
+                }
+                int weight = grid.weight(v);
+                long newDistance = (long) distances[u] + weight;
+                if (newDistance < distances[v]) {
+                    distances[v] = (int) newDistance;
+                    if (weight == 0) {
+                        deque.addFirst(v);
+                    } else {
+                        deque.addLast(v);
+                    }
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * Computes the distances with Dial's algorithm: a circular array of maxWeight + 1 buckets, one per pending distance.
+     * @return The number of settled cells.
+     */
+    private int dialBuckets(WeightedGrid grid, int[] distances, int source, Targets targets) {
+        CancellationToken token = CancellationToken.current();
+        int numOfBuckets = grid.getMaxWeight() + 1;
+        IntArrayList[] buckets = new IntArrayList[numOfBuckets];
+        for (int i = 0; i < numOfBuckets; i++) {
+            buckets[i] = new IntArrayList();
+        }
+        boolean[] settled = new boolean[grid.size()];
+
+        buckets[distances[source] % numOfBuckets].add(source);
+        long pending = 1;
+        long current = distances[source];
+        int bound = WeightedGrid.UNREACHED;
+        int settledCount = 0;
+
+        while (pending > 0 && current <= bound) {
+            IntArrayList bucket = buckets[(int) (current % numOfBuckets)];
+            if (bucket.isEmpty()) {
+                current++;
+                continue;
+            }
+            int u = bucket.removeLast();
+            pending--;
+
+            // Skip stale entries of cells that were settled or improved since they were added
+            if (settled[u] || distances[u] != current) {
+                continue;
+            }
+            settled[u] = true;
+            settledCount++;
+            checkpoint(token, distances, targets.first());
+            if (targets.settle(u)) {
+                bound = distances[u];
+            }
+
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int v = grid.neighbor(u, k);
+                if (v < 0 || settled[v]) {
+                    continue;
+                }
+                long newDistance = current + grid.weight(v);
+                if (newDistance < distances[v]) {
+                    distances[v] = (int) newDistance;
+                    buckets[(int) (newDistance % numOfBuckets)].add(v);
+                    pending++;
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * Computes the distances with a binary heap keyed by the tentative distance.
+     * @return The number of settled cells.
+     */
+    private int binaryHeap(WeightedGrid grid, int[] distances, int source, Targets targets) {
+        CancellationToken token = CancellationToken.current();
+        boolean[] settled = new boolean[grid.size()];
+        IntMinHeap heap = new IntMinHeap();
+        heap.add(distances[source], source);
+        int bound = WeightedGrid.UNREACHED;
+        int settledCount = 0;
+
+        while (!heap.isEmpty()) {
+            int key = heap.peekKey();
+            int u = heap.poll();
+            if (settled[u] || key != distances[u]) {
+                continue;
+            }
+            if (key > bound) {
+                break;
+            }
+            settled[u] = true;
+            settledCount++;
+            checkpoint(token, distances, targets.first());
+            if (targets.settle(u)) {
+                bound = key;
+            }
+
+            for (int k = 0; k < WeightedGrid.ROW_OFFSETS.length; k++) {
+                int v = grid.neighbor(u, k);
+                if (v < 0 || settled[v]) {
+                    continue;
+                }
+                long newDistance = (long) key + grid.weight(v);
+                if (newDistance < distances[v]) {
+                    distances[v] = (int) newDistance;
+                    heap.add(distances[v], v);
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * Counts a settled cell on the CancellationToken of the search. When the token stops the search,
+     * the distance of the target found so far is added to the exception as the best path weight.
+     */
+    private static void checkpoint(CancellationToken token, int[] distances, int target) {
+        try {
+            token.checkpoint();
+        } catch (ComputationTimeoutException timeout) {
+            throw timeout.withBestWeight(target >= 0 && distances[target] != WeightedGrid.UNREACHED ? distances[target] : -1);
+        }
+    }
+
+    /**
+     * The targets of a search that were not settled yet.
+     */
+    private static final class Targets {
+        private final BitSet pending;
+        private final int first;
+        private int remaining;
+
+        Targets(int size, int[] targets) {
+            this.pending = new BitSet(size);
+            for (int target : targets) {
+                pending.set(target);
+            }
+            this.first = targets.length == 0 ? -1 : targets[0];
+            this.remaining = pending.cardinality();
+        }
+
+        /**
+         * Marks a settled cell.
+         * @return true if the cell was the last target not settled yet, so the search may stop past its distance.
+         */
+        boolean settle(int cell) {
+            if (remaining == 0 || !pending.get(cell)) {
+                return false;
+            }
+            pending.clear(cell);
+            return --remaining == 0;
+        }
+
+        /**
+         * Returns the first target, whose distance is reported as the best path weight when the search is stopped.
+         */
+        int first() {
+            return first;
+        }
+    }
+
+    /**
+     * A growable ring buffer of ints used as the deque of 0-1 BFS.
+     */
+    private static final class IntDeque {
+        private int[] elements = new int[64];
+        private int head = 0;
+        private int size = 0;
+
+        void addFirst(int value) {
+            ensureCapacity();
+            head = (head - 1 + elements.length) % elements.length;
+            elements[head] = value;
+            size++;
+        }
+
+        void addLast(int value) {
+            ensureCapacity();
+            elements[(head + size) % elements.length] = value;
+            size++;
+        }
+
+        int removeFirst() {
+            int value = elements[head];
+            head = (head + 1) % elements.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void ensureCapacity() {
+            if (size == elements.length) {
+                int[] grown = new int[elements.length << 1];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = elements[(head + i) % elements.length];
+                }
+                elements = grown;
+                head = 0;
+            }
+        }
+    }
+}
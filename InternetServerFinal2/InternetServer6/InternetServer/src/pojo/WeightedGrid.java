@@ -0,0 +1,228 @@
+package pojo;
+
+/*
+ * Explanation of how the scan works:
+
+ 1. A WeightedGrid is built once per Matrix by a single row-major scan of the primitive matrix.
+ 2. Every cell gets an id (row * columns + column) and its value is copied into a flat int array.
+ 3. While scanning, the minimum and maximum cell values are recorded.
+ 4. For every zero cell, the already scanned neighbors (left, upper-left, up, upper-right) are checked for another zero.
+    Two touching zeros is the case in which Dijkstra reports "infinite paths" and returns an empty set.
+ 5. From the weight range the scan picks the cheapest priority queue that still gives exact lightest paths:
+    0-1 BFS for binary weights, Dial's buckets for small weights and a binary heap for anything larger.
+ 6. Matrices the weighted engines can not handle (jagged rows or negative values) are left to the original Dijkstra.
+ */
+
+/**
+ * WeightedGrid is a flat, read-only view of a Matrix used by the weighted path engines.
+ * Cell ids are row-major and the neighbor order is the same as Matrix.getAllNeighborsIncludingDiagonals().
+ */
+public final class WeightedGrid {
+
+    /**
+     * The queue discipline chosen for a grid according to its weight range.
+     */
+    public enum Strategy {
+        ZERO_ONE_BFS, DIAL_BUCKETS, BINARY_HEAP, LEGACY
+    }
+
+    // Largest cell value for which Dial's bucket queue is preferred over a heap
+    static final int MAX_DIAL_WEIGHT = 64;
+
+    // Distance of a cell that was not reached yet
+    static final int UNREACHED = Integer.MAX_VALUE;
+
+    // The offsets of Matrix.getAllNeighborsIncludingDiagonals(), in the same order
+    static final int[] ROW_OFFSETS = {1, 0, -1, 0, 1, 1, -1, -1};
+    static final int[] COL_OFFSETS = {0, 1, 0, -1, -1, 1, -1, 1};
+
+    private final int rows;
+    private final int columns;
+    private final int[] weights;
+    private final int minWeight;
+    private final int maxWeight;
+    private final boolean zeroCellsTouch;
+    private final Strategy strategy;
+
+    /**
+     * Constructs a WeightedGrid by scanning the given matrix once.
+     * @param matrix The matrix to scan.
+     */
+    public WeightedGrid(Matrix matrix) {
+        int[][] primitiveMatrix = matrix.getPrimitiveMatrix();
+        this.rows = primitiveMatrix.length;
+        this.columns = rows == 0 ? 0 : primitiveMatrix[0].length;
+
+        boolean rectangular = columns > 0;
+        for (int[] row : primitiveMatrix) {
+            if (row.length != columns) {
+                rectangular = false;
+                break;
+            }
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        boolean touch = false;
+        this.weights = new int[rectangular ? rows * columns : 0];
+
+        if (rectangular) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    int value = primitiveMatrix[i][j];
+                    weights[i * columns + j] = value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+
+                    // Only the neighbors that were already scanned need to be checked
+                    if (value == 0 && !touch) {
+                        touch = (j > 0 && primitiveMatrix[i][j - 1] == 0)
+                                || (i > 0 && primitiveMatrix[i - 1][j] == 0)
+                                || (i > 0 && j > 0 && primitiveMatrix[i - 1][j - 1] == 0)
+                                || (i > 0 && j + 1 < columns && primitiveMatrix[i - 1][j + 1] == 0);
+                    }
+                }
+            }
+        }
+
+        this.minWeight = min;
+        this.maxWeight = max;
+        this.zeroCellsTouch = touch;
+
+        if (!rectangular || min < 0) {
+            this.strategy = Strategy.LEGACY;
+        } else if (max <= 1) {
+            this.strategy = Strategy.ZERO_ONE_BFS;
+        } else if (max <= MAX_DIAL_WEIGHT) {
+            this.strategy = Strategy.DIAL_BUCKETS;
+        } else {
+            this.strategy = Strategy.BINARY_HEAP;
+        }
+    }
+
+    /**
+     * Returns the id of the cell at the given row and column.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The id of the cell.
+     */
+    public int idOf(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Returns the id of the cell at the given index.
+     * @param index The index of the cell.
+     * @return The id of the cell.
+     */
+    public int idOf(Index index) {
+        return idOf(index.getRow(), index.getColumn());
+    }
+
+    /**
+     * Returns the index of the cell with the given id.
+     * @param id The id of the cell.
+     * @return A new Index object for the cell.
+     */
+    public Index indexOf(int id) {
+        return new Index(id / columns, id % columns);
+    }
+
+    /**
+     * Checks if an index lies inside the grid.
+     * @param index The index to check.
+     * @return true if the index is inside the grid, false otherwise.
+     */
+    public boolean contains(Index index) {
+        return index != null && index.getRow() >= 0 && index.getRow() < rows
+                && index.getColumn() >= 0 && index.getColumn() < columns;
+    }
+
+    /**
+     * Returns the id of the k-th neighbor of a cell, in the order of Matrix.getAllNeighborsIncludingDiagonals().
+     * @param id The id of the cell.
+     * @param k  The neighbor number, between 0 and 7.
+     * @return The id of the neighbor, or -1 if the neighbor is outside the grid.
+     */
+    public int neighbor(int id, int k) {
+        int newRow = id / columns + ROW_OFFSETS[k];
+        int newCol = id % columns + COL_OFFSETS[k];
+        if (newRow >= 0 && newRow < rows && newCol >= 0 && newCol < columns) {
+            return newRow * columns + newCol;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the weight of the cell with the given id.
+     * @param id The id of the cell.
+     * @return The value of the cell.
+     */
+    public int weight(int id) {
+        return weights[id];
+    }
+
+    /**
+     * Returns the number of rows of the grid.
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of cells of the grid.
+     * @return The number of cells.
+     */
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * Returns the number of bytes taken by the grid.
+     * @return The memory of the weight array, its header included.
+     */
+    public long memoryBytes() {
+        return 16 + 4L * weights.length;
+    }
+
+    /**
+     * Returns the smallest cell value.
+     * @return The minimum weight.
+     */
+    public int getMinWeight() {
+        return minWeight;
+    }
+
+    /**
+     * Returns the largest cell value.
+     * @return The maximum weight.
+     */
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Checks if two zero cells touch each other, in which case there are infinitely many lightest paths.
+     * @return true if two zero cells are neighbors, false otherwise.
+     */
+    public boolean hasTouchingZeroCells() {
+        return zeroCellsTouch;
+    }
+
+    /**
+     * Returns the queue discipline chosen for this grid.
+     * @return The strategy of the grid.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+}
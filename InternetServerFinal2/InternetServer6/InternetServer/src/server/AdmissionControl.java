@@ -0,0 +1,182 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+1. AdmissionControl decides, before a request runs, whether the server has room for it, so that an overloaded server
+   answers at once with a ServerBusy instead of queueing work without limit.
+2. Every admitted request holds its estimated cost (see CostEstimator) until it finishes. A request is refused when
+   the costs in flight plus its own would exceed the budget, set by -Dserver.admission.maxCost (10^8 cell visits by default).
+   A request that is larger than the whole budget is still admitted when nothing else runs, otherwise it could never run.
+3. A client (the host of the connection) may have at most -Dserver.admission.perClient requests in flight (8 by default),
+   so one client with many sessions cannot take the whole budget.
+4. The budget is reserved with a lock-free compare-and-set loop. The per-client counters are updated atomically per client
+   by the map that holds them, and a client is removed from the map when its last request finishes, so the map does not
+   grow with every host that ever connected.
+5. The suggested retry delay is the median computation time of the command so far, between 10 ms and 10 s.
+   Refused requests do not compute, so they do not pull the median down.
+ */
+
+/**
+ * The AdmissionControl class admits or refuses requests by their estimated cost and by the requests in flight per client.
+ */
+public class AdmissionControl {
+    private volatile static AdmissionControl instance;
+
+    private static final long MIN_RETRY_MILLIS = 10;
+    private static final long MAX_RETRY_MILLIS = 10_000;
+    private static final long DEFAULT_RETRY_MILLIS = 100;
+
+    private final long maxCost;
+    private final int maxPerClient;
+    private final AtomicLong costInFlight = new AtomicLong();
+    private final Map<String, Integer> requestsPerClient = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs an AdmissionControl.
+     * @param maxCost      The budget of estimated cell visits in flight.
+     * @param maxPerClient The largest number of requests in flight per client.
+     */
+    public AdmissionControl(long maxCost, int maxPerClient) {
+        this.maxCost = maxCost;
+        this.maxPerClient = maxPerClient;
+    }
+
+    /**
+     * Returns the server-wide AdmissionControl, creating it on the first call from the system properties.
+     * @return The server-wide AdmissionControl.
+     */
+    public static AdmissionControl get() {
+        if (instance == null) {
+            synchronized (AdmissionControl.class) {
+                if (instance == null) {
+                    instance = new AdmissionControl(Long.getLong("server.admission.maxCost", 100_000_000L),
+                            Integer.getInteger("server.admission.perClient", 8));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Tries to admit a request.
+     * @param client The client that sent the request.
+     * @param cost   The estimated cost of the request.
+     * @return A ticket that must be released when the request finishes, or null if the request is refused.
+     */
+    public Ticket tryAdmit(String client, long cost) {
+        boolean[] admitted = new boolean[1];
+        requestsPerClient.compute(client, (c, requests) -> {
+            int inFlight = requests == null ? 0 : requests;
+            if (inFlight >= maxPerClient) {
+                return requests;
+            }
+            admitted[0] = true;
+            return inFlight + 1;
+        });
+        if (!admitted[0]) {
+            rejected.increment();
+            return null;
+        }
+
+        long inFlight;
+        do {
+            inFlight = costInFlight.get();
+            if (inFlight > 0 && cost > maxCost - inFlight) {
+                leave(client);
+                rejected.increment();
+                return null;
+            }
+        } while (!costInFlight.compareAndSet(inFlight, inFlight + cost));
+        return new Ticket(client, cost);
+    }
+
+    /**
+     * Gives the place of a request of a client back, and forgets the client when it has no requests left in flight.
+     * @param client The client that sent the request.
+     */
+    private void leave(String client) {
+        requestsPerClient.computeIfPresent(client, (c, requests) -> requests > 1 ? requests - 1 : null);
+    }
+
+    /**
+     * Builds the busy response of a refused request.
+     * @param client  The client that sent the request.
+     * @param command The command of the request.
+     * @param cost    The estimated cost of the request.
+     * @return The busy response.
+     */
+    public ServerBusy busy(String client, String command, long cost) {
+        Integer clientRequests = requestsPerClient.get(client);
+        String reason = clientRequests != null && clientRequests >= maxPerClient
+                ? client + " has " + maxPerClient + " requests in flight"
+                : "\"" + command + "\" costs " + cost + " and " + costInFlight.get() + " of " + maxCost + " are in flight";
+        return new ServerBusy(reason, retryAfterMillis(command));
+    }
+
+    /**
+     * Suggests when to retry a command: after the median computation time of the command so far.
+     * @param command The command.
+     * @return The delay in milliseconds.
+     */
+    public long retryAfterMillis(String command) {
+        LatencyHistogram compute = MetricsRegistry.get().command(command).getCompute();
+        if (compute.getCount() == 0) {
+            return DEFAULT_RETRY_MILLIS;
+        }
+        return Math.max(MIN_RETRY_MILLIS, Math.min(MAX_RETRY_MILLIS, compute.getValueAtPercentile(50) / 1_000_000));
+    }
+
+    /**
+     * Returns the estimated cost of the admitted requests that did not finish.
+     * @return The cost in flight.
+     */
+    public long getCostInFlight() {
+        return costInFlight.get();
+    }
+
+    /**
+     * Returns the budget of estimated cost in flight.
+     * @return The budget.
+     */
+    public long getMaxCost() {
+        return maxCost;
+    }
+
+    /**
+     * Returns the number of refused requests.
+     * @return The number of refused requests.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * The Ticket class is the reservation of an admitted request. Releasing it more than once has no effect.
+     */
+    public final class Ticket {
+        private final String client;
+        private final long cost;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(String client, long cost) {
+            this.client = client;
+            this.cost = cost;
+        }
+
+        /**
+         * Gives the cost and the place of the request back.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                costInFlight.addAndGet(-cost);
+                leave(client);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the run of an algorithm on a matrix.
+ */
+@Name("server.AlgorithmRun")
+@Label("Algorithm Run")
+@Category("Internet Server")
+@Description("An algorithm ran on the matrix of a request")
+@StackTrace(false)
+public class AlgorithmRunEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int columns;
+
+    @Label("Cells Visited")
+    @Description("Cells (or partial paths, for the original Dijkstra) the algorithm visited")
+    public long cellsVisited;
+
+    @Label("Result Size")
+    @Description("Number of elements of the result, -1 if the result is not a collection or a number")
+    public long resultSize;
+}
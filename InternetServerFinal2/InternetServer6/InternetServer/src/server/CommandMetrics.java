@@ -0,0 +1,183 @@
+package server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The CommandMetrics class holds the counters and latency histograms of one protocol command.
+ * All the fields are lock-free, so every client handling thread records into the same instance.
+ */
+public class CommandMetrics {
+    private final String command;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram compute = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    /**
+     * Constructs the metrics of a command.
+     * @param command The name of the command.
+     */
+    public CommandMetrics(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Returns the name of the command.
+     * @return The name of the command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Records a received request.
+     */
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    /**
+     * Records a request that failed.
+     */
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Records a request that was refused with a ServerBusy response.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Records a request that ran past its deadline and was answered with a RequestTimeout response.
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Records a response written to the client.
+     * @param nanos The time to serialize and write the response.
+     * @param bytes The size of the response.
+     */
+    public void recordResponse(long nanos, long bytes) {
+        serialization.record(nanos);
+        responseBytes.add(bytes);
+    }
+
+    /**
+     * Records the time from reading a command to finishing its response.
+     * @param nanos The time of the whole request.
+     */
+    public void recordTotal(long nanos) {
+        total.record(nanos);
+    }
+
+    /**
+     * Wraps a callable so that the time it waits for a thread and the time it computes are recorded.
+     * The waiting time starts when this method is called, right before the callable is submitted,
+     * and is also emitted as a QueueWaitEvent.
+     * @param callable The callable to wrap.
+     * @param <T>      The type of the result.
+     * @return The wrapped callable.
+     */
+    public <T> Callable<T> timed(Callable<T> callable) {
+        QueueWaitEvent waitEvent = new QueueWaitEvent();
+        waitEvent.begin();
+        long submitted = System.nanoTime();
+        return () -> {
+            long started = System.nanoTime();
+            queueWait.record(started - submitted);
+            if (waitEvent.shouldCommit()) {
+                waitEvent.pool = "request executor";
+                waitEvent.command = command;
+                waitEvent.commit();
+            }
+            try {
+                return callable.call();
+            } finally {
+                compute.record(System.nanoTime() - started);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of requests received.
+     * @return The number of requests received.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of requests that failed.
+     * @return The number of requests that failed.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of requests that were refused because the server was busy.
+     * @return The number of refused requests.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of requests that ran past their deadline.
+     * @return The number of timed out requests.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Returns the number of bytes written in responses.
+     * @return The number of bytes written in responses.
+     */
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    /**
+     * Returns the time the computations waited for a thread.
+     * @return The time the computations waited for a thread.
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns the time of the computations.
+     * @return The time of the computations.
+     */
+    public LatencyHistogram getCompute() {
+        return compute;
+    }
+
+    /**
+     * Returns the time to serialize and write the responses.
+     * @return The time to serialize and write the responses.
+     */
+    public LatencyHistogram getSerialization() {
+        return serialization;
+    }
+
+    /**
+     * Returns the time from reading a command to finishing its response.
+     * @return The time from reading a command to finishing its response.
+     */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+}
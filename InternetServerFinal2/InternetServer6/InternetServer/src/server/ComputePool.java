@@ -0,0 +1,36 @@
+package server;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The ComputePool class holds the server-wide ForkJoinPool used by the parallel algorithms.
+ * Client handling stays on the clients pool of InternetServer; only CPU-bound work runs here.
+ */
+public class ComputePool {
+    private volatile static ForkJoinPool instance;
+
+    private ComputePool() {
+
+    }
+
+    /**
+     * Returns the compute pool, creating it on the first call with one worker per available processor.
+     * @return The server-wide ForkJoinPool.
+     */
+    public static ForkJoinPool get() {
+        if (instance == null) {
+            synchronized (ComputePool.class) {
+                if (instance == null) {
+                    ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+                        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        worker.setName("compute-" + worker.getPoolIndex());
+                        return worker;
+                    };
+                    instance = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), factory, null, false);
+                }
+            }
+        }
+        return instance;
+    }
+}
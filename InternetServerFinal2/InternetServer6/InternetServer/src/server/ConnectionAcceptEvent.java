@@ -0,0 +1,26 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for an accepted client connection.
+ */
+@Name("server.ConnectionAccept")
+@Label("Connection Accept")
+@Category("Internet Server")
+@Description("A client connection was accepted")
+@StackTrace(false)
+public class ConnectionAcceptEvent extends Event {
+
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Queued Clients")
+    @Description("Clients waiting for a thread of the clients pool when this one was accepted")
+    public int queuedClients;
+}
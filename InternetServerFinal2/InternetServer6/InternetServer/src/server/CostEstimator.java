@@ -0,0 +1,77 @@
+package server;
+
+/*
+1. CostEstimator estimates how much work a request is, in cells the algorithm is expected to visit,
+   from the command and the size of the matrix of the session. The estimates only need to order the requests
+   and to add up to a budget; they are not meant to predict a latency.
+2. "get neighbors" looks at 8 cells whatever the size of the matrix.
+3. "connected component", "same component" and "component size" label the whole matrix once, the first time
+   they are asked for on it, and "stream connected components" and "component statistics" visit every cell once.
+   Once the matrix is labeled, the MatrixHandler counts "same component" and "component size" as 1.
+4. "all connected component" and "submarines" run one search per component, but the search (DfsVisitTls) looks for
+   every cell it pushes in its working Stack with contains(), so a single large component still costs cells x cells.
+5. "all shortest paths" and "lightest paths" expand every cell toward its 8 neighbors, and so do the first pages
+   of their paged forms. A next page walks on from the cursor of the search, which is at most another pass over the cells.
+6. "approximate lightest path" builds its engine with one pass over the matrix.
+7. "landmarks" runs one full search per landmark. The number of landmarks is an argument that follows the command,
+   so a typical count is assumed. The batch path commands run one search per distinct source of their batch,
+   which also follows the command, so a typical number of sources is assumed.
+8. On a sparse matrix (pojo.SparseCells) the component commands visit only the stored cells, so their cost is
+   counted in stored cells instead of the area; the path commands build the dense form and cost the same as before.
+9. Uploads, updates, "close paths", "use matrix", "drop matrix", "matrices", "stats" and "stop" are not estimated:
+   they are cheap and the protocol has no reply to refuse them with. Nor is "bulk job", whose matrices follow the
+   command: the window of the job bounds the cores it takes (see pojo.BulkJob).
+ */
+
+/**
+ * The CostEstimator class estimates the cost of a request for the AdmissionControl.
+ */
+public final class CostEstimator {
+
+    // The number of landmarks assumed for a "landmarks" request
+    static final int TYPICAL_LANDMARKS = 16;
+    // The number of distinct sources assumed for a batch path request
+    static final int TYPICAL_BATCH_SOURCES = 8;
+
+    private CostEstimator() {
+
+    }
+
+    /**
+     * Estimates the cost of a request.
+     * @param command The command of the request.
+     * @param rows    The number of rows of the matrix of the session, 0 if there is no matrix.
+     * @param columns The number of columns of the matrix of the session, 0 if there is no matrix.
+     * @return The estimated number of cell visits, 0 for requests that are always admitted.
+     */
+    public static long estimate(String command, int rows, int columns) {
+        long cells = (long) rows * columns;
+        return switch (command) {
+            case "get neighbors" -> 8;
+            case "connected component", "same component", "component size", "stream connected components", "component statistics",
+                 "approximate lightest path" -> cells;
+            case "all connected component", "submarines" -> cells * cells;
+            case "all shortest paths", "lightest paths", "lightest paths page", "shortest paths page" -> cells * 8;
+            case "next paths page" -> cells;
+            case "landmarks" -> cells * 8 * TYPICAL_LANDMARKS;
+            case "batch lightest paths", "batch shortest paths" -> cells * 8 * TYPICAL_BATCH_SOURCES;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Estimates the cost of a request on a sparse matrix.
+     * @param command The command of the request.
+     * @param rows    The number of rows of the matrix of the session.
+     * @param columns The number of columns of the matrix of the session.
+     * @param stored  The number of cells of the matrix that are not 0.
+     * @return The estimated number of cell visits, 0 for requests that are always admitted.
+     */
+    public static long estimateSparse(String command, int rows, int columns, int stored) {
+        return switch (command) {
+            case "connected component", "same component", "component size", "stream connected components", "component statistics",
+                 "all connected component", "submarines" -> estimate(command, 1, stored);
+            default -> estimate(command, rows, columns);
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The CountingOutputStream class counts the bytes written to an output stream, to measure the size of the responses.
+ * It is used by the single thread that handles a client, so the count is a plain field.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    /**
+     * Constructs a CountingOutputStream.
+     * @param out The stream the bytes are written to.
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     * @return The number of bytes.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -2,19 +2,33 @@ package server;
 
 import pojo.MatrixHandler;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The InternetServer class represents a TCP server that can handle multiple clients concurrently.
  * It can solve different algorithmic problems using dedicated handler types.
  */
 public class InternetServer {
+    // The number of accepted clients that may wait for a thread; more clients are refused with a ServerBusy
+    private static final int CLIENTS_QUEUE_CAPACITY = Integer.getInteger("server.clients.queue", 64);
+    // The delay suggested to a refused client
+    private static final long REFUSED_CLIENT_RETRY_MILLIS = 1000;
+
     private final int port;
     /*
      Happens-Before guarantee does NOT ensure thread-safety nor executed quickly.
@@ -23,13 +37,16 @@ public class InternetServer {
      */
     private final AtomicBoolean stopServer;
 
-    private ThreadPoolExecutor clientsPool; // handle multiple clients concurrently
+    private volatile ThreadPoolExecutor clientsPool; // handle multiple clients concurrently
     /*
     ThreadPoolExecutor is a data structure that mainly contains 2 components:
     1. A dynamic array of threads
     2. Queue of tasks - Runnable/Callable tasks
      */
     private IHandler requestHandler;
+    private final Map<Long, Session> sessions; // The open sessions by id
+    private ObjectName managementName; // The name of the ServerManagementMBean, once it is registered
+    private final LongAdder refusedClients; // The clients that were refused because the clients queue was full
 
     /**
      * Creates a new instance of InternetServer with the specified port.
@@ -40,6 +57,8 @@ public class InternetServer {
         this.clientsPool = null;
         this.requestHandler = null;
         this.stopServer = new AtomicBoolean(false);
+        this.sessions = new ConcurrentSkipListMap<>();
+        this.refusedClients = new LongAdder();
     }
 
     /**
@@ -55,60 +74,186 @@ public class InternetServer {
          * we ought to define different executable paths (threads)
          */
         Runnable clientHandling = () -> {
+            // A bounded queue: once it is full the pool grows to its maximum size, and then clients are refused
             this.clientsPool = new ThreadPoolExecutor(
                     10, 15, 200, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<>()
+                    new ArrayBlockingQueue<>(CLIENTS_QUEUE_CAPACITY)
             );
+            registerPoolGauges();
+            registerManagementBean();
 
             try {
                 ServerSocket serverSocket = new ServerSocket(this.port, 50);
 
                 while (!stopServer.get()) {
-                    // listen + accept (phases 3+4) are done by accept method
-                    Runnable acceptThread = () -> {
+                    // listen + accept (phases 3+4) are done by accept method.
+                    // Accepting on this thread blocks until a client arrives, instead of starting a new accepting thread per loop.
+                    Socket clientToServerConnection = serverSocket.accept();
+                    // Replies are written whole, so Nagle's algorithm would only hold them back waiting for an ACK
+                    clientToServerConnection.setTcpNoDelay(true);
+                    Log.debug(() -> "Server: accepting client in " + Thread.currentThread().getName() + " Thread");
+
+                    Session session = new Session(clientToServerConnection);
+                    sessions.put(session.getId(), session);
+
+                    ConnectionAcceptEvent acceptEvent = new ConnectionAcceptEvent();
+                    if (acceptEvent.isEnabled()) {
+                        acceptEvent.remoteAddress = String.valueOf(clientToServerConnection.getRemoteSocketAddress());
+                        acceptEvent.queuedClients = clientsPool.getQueue().size();
+                        acceptEvent.commit();
+                    }
+                    // The time the client waits for a thread of the clients pool
+                    QueueWaitEvent waitEvent = new QueueWaitEvent();
+                    waitEvent.begin();
+
+                    // Once a client is accepted, pass it to the specific client handling thread
+                    Runnable specificClientHandling = () -> {
+                        if (waitEvent.shouldCommit()) {
+                            waitEvent.pool = "clients pool";
+                            waitEvent.commit();
+                        }
+                        Log.debug(() -> "Server: Handling a client in " + Thread.currentThread().getName() + " Thread");
+
+                        session.attach();
                         try {
-                            Socket clientToServerConnection = serverSocket.accept();
-                            System.out.println("Server: accepting client in " + Thread.currentThread().getName() + " Thread");
-
-
-                            // Once a client is accepted, pass it to the specific client handling thread
-                            Runnable specificClientHandling = () -> {
-                                System.out.println("Server: Handling a client in " + Thread.currentThread().getName() + " Thread");
-
-                                try {
-                                    requestHandler.handleClient(clientToServerConnection.getInputStream(),
-                                            clientToServerConnection.getOutputStream());
-                                } catch (IOException | ClassNotFoundException ioException) {
-                                    ioException.printStackTrace();
-                                }
-                                // We stopped handling the specific client
-                                try {
-                                    clientToServerConnection.getOutputStream().close();
-                                    clientToServerConnection.getInputStream().close();
-                                    clientToServerConnection.close();
-                                } catch (IOException ioException) {
-                                    //ioException.printStackTrace();
-                                    System.out.println("Socket is closed!");
-                                }
-                            };
-
-                            clientsPool.execute(specificClientHandling);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
+                            requestHandler.handleClient(clientToServerConnection.getInputStream(),
+                                    clientToServerConnection.getOutputStream());
+                        } catch (IOException | ClassNotFoundException ioException) {
+                            if (session.isCancelled()) {
+                                Log.info("Server: " + session + " was cancelled");
+                            } else {
+                                Log.error("Server: " + session + " failed", ioException);
+                            }
+                        } catch (RuntimeException failure) {
+                            // A bug in a command must not leave the socket open and the client waiting
+                            Log.error("Server: " + session + " failed", failure);
+                        } finally {
+                            session.detach();
+                            sessions.remove(session.getId());
+                            // A cancelled session may leave the interrupt flag set on this pool thread
+                            Thread.interrupted();
+                        }
+                        // We stopped handling the specific client
+                        try {
+                            clientToServerConnection.getOutputStream().close();
+                            clientToServerConnection.getInputStream().close();
+                            clientToServerConnection.close();
+                        } catch (IOException ioException) {
+                            //ioException.printStackTrace();
+                            Log.debug(() -> "Socket is closed!");
                         }
                     };
-                    new Thread(acceptThread).start();
+
+                    try {
+                        clientsPool.execute(specificClientHandling);
+                    } catch (RejectedExecutionException rejectedException) {
+                        sessions.remove(session.getId());
+                        refuseClient(clientToServerConnection);
+                    }
                 }
 
                 serverSocket.close();
             } catch (IOException ioException) {
-                ioException.printStackTrace();
+                Log.error("Server: the listening socket failed", ioException);
             }
         };
 
         new Thread(clientHandling).start();
     }
 
+    /**
+     * Answers a client that cannot be queued with a ServerBusy and closes its connection.
+     * The response is the first object of the stream, so the client reads it as the reply to its first request.
+     * @param clientToServerConnection The connection of the refused client.
+     */
+    private void refuseClient(Socket clientToServerConnection) {
+        ServerBusy busy = new ServerBusy("the clients queue is full", REFUSED_CLIENT_RETRY_MILLIS);
+        refusedClients.increment();
+        Log.sampled(Log.Level.WARN, "refused clients", () -> "Server: refused " + clientToServerConnection.getRemoteSocketAddress() + ", " + busy);
+        try (clientToServerConnection) {
+            ObjectOutputStream toClient = new ObjectOutputStream(clientToServerConnection.getOutputStream());
+            toClient.writeObject(busy);
+            toClient.flush();
+        } catch (IOException ioException) {
+            Log.debug(() -> "Server: a refused client closed its connection first");
+        }
+    }
+
+    /**
+     * Registers the occupancy of the clients pool and of the compute pool as gauges of the MetricsRegistry.
+     */
+    private void registerPoolGauges() {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.registerGauge("clients_pool_active_threads", () -> clientsPool.getActiveCount());
+        metrics.registerGauge("clients_pool_threads", () -> clientsPool.getPoolSize());
+        metrics.registerGauge("clients_pool_queued_clients", () -> clientsPool.getQueue().size());
+        metrics.registerGauge("clients_pool_completed_clients", () -> clientsPool.getCompletedTaskCount());
+        metrics.registerGauge("compute_pool_active_threads", () -> ComputePool.get().getActiveThreadCount());
+        metrics.registerGauge("compute_pool_queued_tasks", () -> ComputePool.get().getQueuedTaskCount());
+        metrics.registerGauge("compute_pool_steals", () -> ComputePool.get().getStealCount());
+        metrics.registerGauge("clients_refused", refusedClients::sum);
+        metrics.registerGauge("admission_cost_in_flight", () -> AdmissionControl.get().getCostInFlight());
+        metrics.registerGauge("admission_max_cost", () -> AdmissionControl.get().getMaxCost());
+        metrics.registerGauge("admission_rejected_requests", () -> AdmissionControl.get().getRejected());
+    }
+
+    /**
+     * Registers a ServerManagementMBean for this server in the platform MBean server,
+     * as server:type=InternetServer,port=(the port), so that it can be managed from JConsole or any JMX client.
+     */
+    private void registerManagementBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("server:type=InternetServer,port=" + port);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(new ServerManagement(this), name);
+            managementName = name;
+        } catch (JMException jmException) {
+            Log.warn("Server: management bean is not available: " + jmException.getMessage());
+        }
+    }
+
+    /**
+     * Removes the ServerManagementMBean of this server, if it was registered.
+     */
+    private void unregisterManagementBean() {
+        if (managementName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(managementName);
+            } catch (JMException jmException) {
+                Log.warn("Server: management bean was already removed");
+            }
+            managementName = null;
+        }
+    }
+
+    /**
+     * Returns the pool that serves the clients.
+     * @return The clients pool, or null if the server does not accept clients yet.
+     */
+    public ThreadPoolExecutor getClientsPool() {
+        return clientsPool;
+    }
+
+    /**
+     * Returns the open sessions.
+     * @return A live view of the sessions by id, in the order they were accepted.
+     */
+    public Map<Long, Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Serves the metrics in the Prometheus text format on http://127.0.0.1:metricsPort/metrics.
+     * @param metricsPort The local port of the metrics endpoint.
+     * @throws IOException If the port cannot be bound.
+     */
+    public void exposeMetrics(int metricsPort) throws IOException {
+        MetricsRegistry.get().startHttpEndpoint(metricsPort);
+    }
+
     /**
      * Stops the server and shuts down the client thread pool.
      */
@@ -118,18 +263,25 @@ public class InternetServer {
             if (stopServer.compareAndSet(false, true)) {
                 if (clientsPool != null)
                     clientsPool.shutdown();
+                MetricsRegistry.get().stopHttpEndpoint();
+                unregisterManagementBean();
             }
         }
     }
 
     /**
      * The main method of the server that starts the server on the specified port
-     * and supports clients using the MatrixHandler.
+     * and supports clients using the MatrixHandler. Its metrics are served on port 9010.
      * @param args The command-line arguments.
      */
     public static void main(String[] args) {
         InternetServer server = new InternetServer(8010);
         server.supportClients(new MatrixHandler());
+        try {
+            server.exposeMetrics(9010);
+        } catch (IOException ioException) {
+            Log.warn("Server: metrics endpoint is not available: " + ioException.getMessage());
+        }
 
         //server.stop();
     }
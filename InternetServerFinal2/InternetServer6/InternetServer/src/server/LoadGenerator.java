@@ -0,0 +1,494 @@
+package server;
+
+import pojo.Index;
+import pojo.MatrixHandler;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+1. LoadGenerator opens N concurrent sessions to an InternetServer, one socket and one thread per session.
+2. Every session uploads a random matrix of one of the configured sizes, then sends commands picked from a weighted mix.
+3. In closed-loop mode a session sends its next command as soon as the previous reply arrives, so the load adapts
+   to the speed of the server.
+4. In open-loop mode every session sends commands at a fixed rate. The latency of a command is measured from the time
+   it was due, not from the time it could be sent, so a stalled server shows up in the latency instead of slowing the load
+   down (no coordinated omission).
+5. Every command has a LatencyHistogram and an error counter. A reply that does not arrive within the timeout, or does not
+   have the expected type, is an error; the session then reconnects and uploads its matrix again.
+6. "matrix" uploads have no reply, so their latency is the time to write and flush the matrix.
+7. At the end the generator prints p50/p99/p99.9, the throughput and the errors of every command, and can write them as CSV or JSON.
+ */
+
+/**
+ * The LoadGenerator class drives concurrent sessions against an InternetServer and reports per-command latencies.
+ */
+public class LoadGenerator {
+
+    /**
+     * The commands the generator can send, with their weight in the default mix.
+     */
+    enum Command {
+        NEIGHBORS("get neighbors", 4),
+        COMPONENT("connected component", 2),
+        ALL_COMPONENTS("all connected component", 1),
+        SHORTEST("all shortest paths", 2),
+        SUBMARINES("submarines", 1),
+        LIGHTEST("lightest paths", 2),
+        UPLOAD("matrix", 0);
+
+        private final String text;
+        private final int defaultWeight;
+
+        Command(String text, int defaultWeight) {
+            this.text = text;
+            this.defaultWeight = defaultWeight;
+        }
+    }
+
+    /**
+     * The latencies and errors of one command.
+     */
+    static final class CommandStats {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder busy = new LongAdder();
+    }
+
+    private final String host;
+    private final int port;
+    private final int sessions;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final double ratePerSession; // commands per second of every session, 0 for closed loop
+    private final int[] sizes;
+    private final double density;
+    private final int pathSpan;
+    private final int timeoutMillis;
+    private final long seed;
+    private final Map<Command, Integer> mix;
+    private final Map<Command, CommandStats> stats = new EnumMap<>(Command.class);
+    private final LongAdder connectionErrors = new LongAdder();
+    private volatile long measuredNanos;
+
+    /**
+     * Constructs a LoadGenerator from "key=value" settings; missing keys take their default value.
+     * @param settings The settings, see main() for the keys.
+     */
+    public LoadGenerator(Map<String, String> settings) {
+        this.host = settings.getOrDefault("host", "127.0.0.1");
+        this.port = Integer.parseInt(settings.getOrDefault("port", "8010"));
+        this.sessions = Integer.parseInt(settings.getOrDefault("sessions", "8"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(settings.getOrDefault("duration", "30")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(settings.getOrDefault("warmup", "5")));
+        double rate = Double.parseDouble(settings.getOrDefault("rate", "0"));
+        this.ratePerSession = settings.getOrDefault("mode", "closed").equals("open") ? rate / sessions : 0;
+        if (settings.getOrDefault("mode", "closed").equals("open") && rate <= 0) {
+            throw new IllegalArgumentException("Open-loop mode needs a total rate, e.g. rate=200");
+        }
+        String[] sizeTexts = settings.getOrDefault("sizes", "10,30").split(",");
+        this.sizes = new int[sizeTexts.length];
+        for (int i = 0; i < sizeTexts.length; i++) {
+            this.sizes[i] = Integer.parseInt(sizeTexts[i].trim());
+        }
+        this.density = Double.parseDouble(settings.getOrDefault("density", "0.7"));
+        this.pathSpan = Integer.parseInt(settings.getOrDefault("pathSpan", "3"));
+        this.timeoutMillis = Integer.parseInt(settings.getOrDefault("timeout", "10000"));
+        this.seed = Long.parseLong(settings.getOrDefault("seed", "1"));
+        this.mix = parseMix(settings.get("mix"));
+        for (Command command : Command.values()) {
+            stats.put(command, new CommandStats());
+        }
+    }
+
+    /**
+     * Parses a command mix such as "neighbors:4,lightest:1"; null gives the default mix.
+     */
+    private static Map<Command, Integer> parseMix(String text) {
+        Map<Command, Integer> weights = new EnumMap<>(Command.class);
+        if (text == null) {
+            for (Command command : Command.values()) {
+                if (command.defaultWeight > 0) {
+                    weights.put(command, command.defaultWeight);
+                }
+            }
+            return weights;
+        }
+        for (String entry : text.split(",")) {
+            String[] parts = entry.split(":");
+            Command command = Command.valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            weights.put(command, parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        return weights;
+    }
+
+    /**
+     * Runs the sessions until the duration is over.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the sessions.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        CountDownLatch done = new CountDownLatch(sessions);
+
+        for (int s = 0; s < sessions; s++) {
+            Random random = new Random(seed * 31 + s);
+            Runnable session = () -> {
+                try {
+                    runSession(random, measureFrom, end);
+                } finally {
+                    done.countDown();
+                }
+            };
+            Thread thread = new Thread(session, "load-session-" + s);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        measuredNanos = Math.max(1, Math.min(System.nanoTime(), end) - measureFrom);
+    }
+
+    /**
+     * Runs one session: connects, uploads a matrix and sends commands until the end, reconnecting after errors.
+     */
+    private void runSession(Random random, long measureFrom, long end) {
+        int[][] cells = randomMatrix(random, sizes[random.nextInt(sizes.length)]);
+        int totalWeight = 0;
+        for (int weight : mix.values()) {
+            totalWeight += weight;
+        }
+        long intervalNanos = ratePerSession > 0 ? (long) (1e9 / ratePerSession) : 0;
+        long nextDue = System.nanoTime();
+
+        while (System.nanoTime() < end) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setSoTimeout(timeoutMillis);
+                socket.setTcpNoDelay(true);
+                ObjectOutputStream toServer = new ObjectOutputStream(socket.getOutputStream());
+                ObjectInputStream fromServer = new ObjectInputStream(socket.getInputStream());
+
+                long uploadStart = System.nanoTime();
+                toServer.writeObject(Command.UPLOAD.text);
+                toServer.writeObject(cells);
+                toServer.flush();
+                record(Command.UPLOAD, uploadStart, System.nanoTime(), measureFrom, end);
+
+                boolean healthy = true;
+                while (healthy && System.nanoTime() < end) {
+                    long sendTime;
+                    if (intervalNanos > 0) {
+                        nextDue += intervalNanos;
+                        long wait = nextDue - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        sendTime = nextDue;
+                    } else {
+                        sendTime = System.nanoTime();
+                    }
+                    Command command = pick(random, totalWeight);
+                    if (command == Command.UPLOAD) {
+                        cells = randomMatrix(random, sizes[random.nextInt(sizes.length)]);
+                    }
+                    Object reply = send(command, cells, random, toServer, fromServer);
+                    long now = System.nanoTime();
+                    if (reply instanceof ServerBusy busy) {
+                        // A refused request is counted apart; a closed loop waits as the server suggests
+                        if (now >= measureFrom && now < end) {
+                            stats.get(command).busy.increment();
+                        }
+                        if (intervalNanos == 0) {
+                            TimeUnit.MILLISECONDS.sleep(busy.getRetryAfterMillis());
+                        }
+                        continue;
+                    }
+                    if (reply instanceof RequestTimeout) {
+                        // A request that ran past its deadline failed, but the session is still in step
+                        if (now >= measureFrom && now < end) {
+                            stats.get(command).errors.increment();
+                        }
+                        continue;
+                    }
+                    healthy = isExpected(command, reply);
+                    if (healthy) {
+                        record(command, sendTime, now, measureFrom, end);
+                    } else if (now >= measureFrom && now < end) {
+                        stats.get(command).errors.increment();
+                    }
+                }
+                if (healthy) {
+                    toServer.writeObject("stop");
+                    toServer.flush();
+                }
+            } catch (IOException e) {
+                long now = System.nanoTime();
+                if (now >= measureFrom && now < end) {
+                    connectionErrors.increment();
+                }
+                sleepQuietly(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends one command and waits for its reply.
+     * @return The reply (the command itself for an upload, which has no reply), or null if the connection failed.
+     */
+    private Object send(Command command, int[][] cells, Random random, ObjectOutputStream toServer, ObjectInputStream fromServer) {
+        try {
+            toServer.writeObject(command.text);
+            switch (command) {
+                case UPLOAD -> {
+                    toServer.writeObject(cells);
+                    toServer.flush();
+                    return command;
+                }
+                case NEIGHBORS, COMPONENT -> toServer.writeObject(randomCell(random, cells, false));
+                case SHORTEST, LIGHTEST -> {
+                    Index source = randomCell(random, cells, true);
+                    toServer.writeObject(source);
+                    toServer.writeObject(nearbyCell(random, cells, source));
+                }
+                default -> {
+                }
+            }
+            toServer.flush();
+            return fromServer.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the type of a reply.
+     * @return true if the reply has the expected type, false if the session must reconnect.
+     */
+    private static boolean isExpected(Command command, Object reply) {
+        return switch (command) {
+            case NEIGHBORS -> reply instanceof List;
+            case SUBMARINES -> reply instanceof Integer;
+            default -> reply != null;
+        };
+    }
+
+    /**
+     * Records the latency of a command if it completed inside the measured window.
+     */
+    private void record(Command command, long sendTime, long now, long measureFrom, long end) {
+        if (now >= measureFrom && now < end) {
+            stats.get(command).latencies.record(now - sendTime);
+        }
+    }
+
+    /**
+     * Picks a command from the mix.
+     */
+    private Command pick(Random random, int totalWeight) {
+        int ticket = random.nextInt(totalWeight);
+        for (Map.Entry<Command, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty command mix");
+    }
+
+    /**
+     * Generates a square matrix of 0 and 1 cells.
+     */
+    private int[][] randomMatrix(Random random, int size) {
+        int[][] cells = new int[size][size];
+        for (int[] row : cells) {
+            for (int j = 0; j < size; j++) {
+                row[j] = random.nextDouble() < density ? 1 : 0;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Picks a random cell, with value 1 if required (BfsTls needs a source of value 1).
+     */
+    private Index randomCell(Random random, int[][] cells, boolean one) {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            int row = random.nextInt(cells.length);
+            int column = random.nextInt(cells[row].length);
+            if (!one || cells[row][column] == 1) {
+                return new Index(row, column);
+            }
+        }
+        cells[0][0] = 1; // only reached on almost empty matrices
+        return new Index(0, 0);
+    }
+
+    /**
+     * Picks a cell at most pathSpan rows and columns away from a source, so the number of paths stays bounded.
+     */
+    private Index nearbyCell(Random random, int[][] cells, Index source) {
+        int row = Math.min(cells.length - 1, Math.max(0, source.getRow() + random.nextInt(2 * pathSpan + 1) - pathSpan));
+        int column = Math.min(cells[0].length - 1, Math.max(0, source.getColumn() + random.nextInt(2 * pathSpan + 1) - pathSpan));
+        return new Index(row, column);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints a table of the results.
+     */
+    public void printReport() {
+        double seconds = measuredNanos / 1e9;
+        System.out.printf("%-26s %9s %7s %7s %10s %10s %10s %10s %10s%n",
+                "command", "count", "errors", "busy", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<Command, CommandStats> entry : stats.entrySet()) {
+            LatencyHistogram h = entry.getValue().latencies;
+            long errors = entry.getValue().errors.sum();
+            long busy = entry.getValue().busy.sum();
+            if (h.getCount() == 0 && errors == 0 && busy == 0) {
+                continue;
+            }
+            total += h.getCount();
+            System.out.printf(Locale.ROOT, "%-26s %9d %7d %7d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey().text, h.getCount(), errors, busy, h.getCount() / seconds,
+                    h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6,
+                    h.getValueAtPercentile(99.9) / 1e6, h.getMaxValue() / 1e6);
+        }
+        System.out.printf(Locale.ROOT, "total %d commands in %.1f s, %.1f ops/s, %d connection errors%n",
+                total, seconds, total / seconds, connectionErrors.sum());
+    }
+
+    /**
+     * Returns the results as rows of column name to value, one row per command.
+     */
+    private List<Map<String, Object>> rows() {
+        double seconds = measuredNanos / 1e9;
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<Command, CommandStats> entry : stats.entrySet()) {
+            LatencyHistogram h = entry.getValue().latencies;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("command", entry.getKey().text);
+            row.put("count", h.getCount());
+            row.put("errors", entry.getValue().errors.sum());
+            row.put("busy", entry.getValue().busy.sum());
+            row.put("throughput", h.getCount() / seconds);
+            row.put("meanMs", h.getMean() / 1e6);
+            row.put("p50Ms", h.getValueAtPercentile(50) / 1e6);
+            row.put("p99Ms", h.getValueAtPercentile(99) / 1e6);
+            row.put("p999Ms", h.getValueAtPercentile(99.9) / 1e6);
+            row.put("maxMs", h.getMaxValue() / 1e6);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the results as CSV, one line per command.
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            List<Map<String, Object>> rows = rows();
+            out.println(String.join(",", rows.get(0).keySet()));
+            for (Map<String, Object> row : rows) {
+                List<String> values = new ArrayList<>();
+                for (Object value : row.values()) {
+                    values.add(format(value));
+                }
+                out.println(String.join(",", values));
+            }
+        }
+    }
+
+    /**
+     * Writes the settings and the results as JSON.
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeJson(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.printf(Locale.ROOT, "{\"sessions\":%d,\"mode\":\"%s\",\"seconds\":%.3f,\"connectionErrors\":%d,\"commands\":[",
+                    sessions, ratePerSession > 0 ? "open" : "closed", measuredNanos / 1e9, connectionErrors.sum());
+            List<Map<String, Object>> rows = rows();
+            for (int i = 0; i < rows.size(); i++) {
+                out.print(i == 0 ? "{" : ",{");
+                int field = 0;
+                for (Map.Entry<String, Object> entry : rows.get(i).entrySet()) {
+                    Object value = entry.getValue();
+                    out.print((field++ == 0 ? "" : ",") + "\"" + entry.getKey() + "\":"
+                            + (value instanceof String ? "\"" + value + "\"" : format(value)));
+                }
+                out.print("}");
+            }
+            out.println("]}");
+        }
+    }
+
+    private static String format(Object value) {
+        return value instanceof Double d ? String.format(Locale.ROOT, "%.4f", d) : String.valueOf(value);
+    }
+
+    /**
+     * A sample usage of the LoadGenerator class.
+     * Arguments are "key=value" pairs:
+     * host, port, sessions, duration and warmup (seconds), mode (closed or open), rate (total commands per second in open mode),
+     * sizes (matrix sides, e.g. 10,30), density, pathSpan, mix (e.g. neighbors:4,lightest:1,upload:1), timeout (ms), seed,
+     * csv and json (output files), and embedded=true to start an InternetServer on the port in this process first.
+     * @param args Command-line arguments.
+     * @throws Exception If the output files cannot be written.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            settings.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+
+        InternetServer server = null;
+        if (Boolean.parseBoolean(settings.getOrDefault("embedded", "false"))) {
+            server = new InternetServer(Integer.parseInt(settings.getOrDefault("port", "8010")));
+            server.supportClients(new MatrixHandler());
+            Thread.sleep(500);
+        }
+
+        LoadGenerator generator = new LoadGenerator(settings);
+        generator.run();
+        generator.printReport();
+        if (settings.containsKey("csv")) {
+            generator.writeCsv(Path.of(settings.get("csv")));
+        }
+        if (settings.containsKey("json")) {
+            generator.writeJson(Path.of(settings.get("json")));
+        }
+        if (server != null) {
+            server.stop();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,355 @@
+package server;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/*
+1. Log is the logging layer of the server. A line has a level and is written only if its level is enabled;
+   the level is read from the system property server.log.level (DEBUG, INFO, WARN, ERROR or OFF, INFO by default).
+2. Messages that are expensive to build are passed as a Supplier, so nothing is built for a disabled level.
+3. Lines are not written by the thread that logs them. They are put in a ring buffer of fixed size and a single
+   writer thread takes them out in order, formats them and writes them in batches, so a request never waits for stdout.
+4. Many threads put lines at once: a thread claims the next slot with a compare-and-set on the tail sequence,
+   and stores its line in the slot. The writer waits for the slot to be filled, empties it and advances the head.
+   When the buffer is full the line is dropped and counted instead of blocking the request.
+5. render() caps the text of a matrix, a collection or any object, so a 1000x1000 matrix or a set of 100000 indices
+   is written as a short preview with its size.
+6. sampled() writes one of every server.log.sample lines of the same key (100 by default),
+   for lines that would otherwise be written on every request.
+7. With -Dserver.log.async=false the lines are written synchronously, which is useful when debugging a crash.
+ */
+
+/**
+ * The Log class writes leveled, size-capped and sampled log lines through an asynchronous ring buffer.
+ */
+public final class Log {
+
+    /**
+     * The levels of the log lines, from the most to the least verbose.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    // The number of slots of the ring buffer, a power of two
+    private static final int CAPACITY = 1 << 13;
+    private static final int MASK = CAPACITY - 1;
+    // The longest rendered value, in characters
+    private static final int MAX_RENDERED_CHARS = 256;
+    // The largest rendered part of a matrix
+    private static final int MAX_RENDERED_ROWS = 8;
+    private static final int MAX_RENDERED_COLUMNS = 16;
+
+    private static volatile Level level = Level.valueOf(System.getProperty("server.log.level", "INFO").toUpperCase());
+    private static final int sampleRate = Math.max(1, Integer.getInteger("server.log.sample", 100));
+    private static final boolean async = Boolean.parseBoolean(System.getProperty("server.log.async", "true"));
+    private static final PrintStream out = System.out;
+
+    private static final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong(); // The next slot to claim
+    private static volatile long head; // The next slot to write, advanced only by the writer
+    private static volatile boolean writerParked;
+    private static final LongAdder dropped = new LongAdder();
+    private static final Map<String, AtomicLong> samples = new ConcurrentHashMap<>();
+    private static final Thread writer;
+
+    static {
+        writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        if (async) {
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        }
+    }
+
+    private Log() {
+
+    }
+
+    /**
+     * Sets the lowest level that is written.
+     * @param newLevel The level.
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Returns whether lines of a level are written.
+     * @param lineLevel The level.
+     * @return true if the level is enabled.
+     */
+    public static boolean isEnabled(Level lineLevel) {
+        return lineLevel != Level.OFF && lineLevel.compareTo(level) >= 0;
+    }
+
+    /**
+     * Writes a debug line, building it only if the DEBUG level is enabled.
+     * @param message The supplier of the line.
+     */
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    /**
+     * Writes an info line.
+     * @param message The line.
+     */
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Writes a warning line.
+     * @param message The line.
+     */
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    /**
+     * Writes an error line with the stack trace of its cause.
+     * @param message The line.
+     * @param error   The cause of the error.
+     */
+    public static void error(String message, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            append(new Entry(Level.ERROR, message, error));
+        }
+    }
+
+    /**
+     * Writes a line if its level is enabled.
+     * @param lineLevel The level of the line.
+     * @param message   The line.
+     */
+    public static void log(Level lineLevel, String message) {
+        if (isEnabled(lineLevel)) {
+            append(new Entry(lineLevel, message, null));
+        }
+    }
+
+    /**
+     * Writes a line if its level is enabled, building it only in that case.
+     * @param lineLevel The level of the line.
+     * @param message   The supplier of the line.
+     */
+    public static void log(Level lineLevel, Supplier<String> message) {
+        if (isEnabled(lineLevel)) {
+            append(new Entry(lineLevel, message.get(), null));
+        }
+    }
+
+    /**
+     * Writes one of every server.log.sample lines of a key, for lines that are written on every request.
+     * The message is built only for the lines that are written.
+     * @param lineLevel The level of the line.
+     * @param key       The key that groups the lines, such as the name of a command.
+     * @param message   The supplier of the line.
+     */
+    public static void sampled(Level lineLevel, String key, Supplier<String> message) {
+        if (!isEnabled(lineLevel)) {
+            return;
+        }
+        long seen = samples.computeIfAbsent(key, k -> new AtomicLong()).getAndIncrement();
+        if (seen % sampleRate == 0) {
+            String suffix = sampleRate == 1 ? "" : " [1 of " + sampleRate + " " + key + " lines]";
+            append(new Entry(lineLevel, message.get() + suffix, null));
+        }
+    }
+
+    /**
+     * Writes one of every server.log.sample lines of a key, made of a message and a rendered value.
+     * The value is rendered only for the lines that are written.
+     * @param lineLevel The level of the line.
+     * @param key       The key that groups the lines, such as the name of a command.
+     * @param message   The beginning of the line.
+     * @param value     The value that ends the line, rendered with render(Object).
+     */
+    public static void sampled(Level lineLevel, String key, String message, Object value) {
+        sampled(lineLevel, key, () -> message + render(value));
+    }
+
+    /**
+     * Renders a value with at most MAX_RENDERED_CHARS characters. A collection is rendered element by element,
+     * so only the elements that are shown are converted to text, and its size is added when it is cut.
+     * @param value The value.
+     * @return The rendered value.
+     */
+    public static String render(Object value) {
+        if (value instanceof int[][] grid) {
+            return render(grid);
+        }
+        if (value instanceof Collection<?> collection) {
+            StringBuilder text = new StringBuilder("[");
+            Iterator<?> iterator = collection.iterator();
+            while (iterator.hasNext() && text.length() < MAX_RENDERED_CHARS) {
+                text.append(render(iterator.next()));
+                if (iterator.hasNext()) {
+                    text.append(", ");
+                }
+            }
+            if (iterator.hasNext()) {
+                text.append("... (").append(collection.size()).append(" elements)");
+            }
+            return text.append(']').toString();
+        }
+        String text = String.valueOf(value);
+        if (text.length() <= MAX_RENDERED_CHARS) {
+            return text;
+        }
+        return text.substring(0, MAX_RENDERED_CHARS) + "... (" + text.length() + " chars)";
+    }
+
+    /**
+     * Renders the top left corner of a matrix, with at most MAX_RENDERED_ROWS rows of MAX_RENDERED_COLUMNS values,
+     * followed by the size of the matrix.
+     * @param grid The matrix.
+     * @return The rendered matrix, one row per line.
+     */
+    public static String render(int[][] grid) {
+        StringBuilder text = new StringBuilder();
+        int columns = grid.length == 0 ? 0 : grid[0].length;
+        text.append(grid.length).append('x').append(columns).append(" matrix");
+        for (int i = 0; i < Math.min(grid.length, MAX_RENDERED_ROWS); i++) {
+            int[] row = grid[i].length > MAX_RENDERED_COLUMNS ? Arrays.copyOf(grid[i], MAX_RENDERED_COLUMNS) : grid[i];
+            text.append('\n').append(Arrays.toString(row));
+            if (grid[i].length > MAX_RENDERED_COLUMNS) {
+                text.setLength(text.length() - 1);
+                text.append(", ...]");
+            }
+        }
+        if (grid.length > MAX_RENDERED_ROWS) {
+            text.append("\n...");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the number of lines that were dropped because the ring buffer was full.
+     * @return The number of dropped lines.
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until the writer has written every line that was logged before this call, for at most one second.
+     */
+    public static void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (async && head < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+        out.flush();
+    }
+
+    /**
+     * Puts a line in the ring buffer, or writes it at once when the log is synchronous.
+     */
+    private static void append(Entry entry) {
+        if (!async) {
+            synchronized (out) {
+                out.print(entry.format(new StringBuilder()));
+            }
+            return;
+        }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.set((int) (sequence & MASK), entry);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Takes the lines out of the ring buffer in order and writes them, one batch for every run of available lines.
+     */
+    private static void writeLoop() {
+        StringBuilder batch = new StringBuilder(1 << 16);
+        long reportedDrops = 0;
+        while (true) {
+            long next = head;
+            Entry entry = slots.get((int) (next & MASK));
+            if (entry != null) {
+                slots.set((int) (next & MASK), null);
+                head = next + 1;
+                entry.format(batch);
+                if (batch.length() < (1 << 16)) {
+                    continue;
+                }
+            } else if (next < tail.get()) {
+                // The slot was claimed but its line is not stored yet
+                Thread.onSpinWait();
+                continue;
+            }
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                batch.append(Instant.now()).append(" WARN  [log-writer] ").append(drops - reportedDrops)
+                        .append(" log lines were dropped, the log buffer was full\n");
+                reportedDrops = drops;
+            }
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+                continue;
+            }
+            writerParked = true;
+            if (head == tail.get()) {
+                LockSupport.parkNanos(10_000_000L);
+            }
+            writerParked = false;
+        }
+    }
+
+    /**
+     * A logged line, formatted by the writer.
+     */
+    private static final class Entry {
+        private final long millis;
+        private final Level level;
+        private final String thread;
+        private final String message;
+        private final Throwable error;
+
+        private Entry(Level level, String message, Throwable error) {
+            this.millis = System.currentTimeMillis();
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+            this.error = error;
+        }
+
+        private StringBuilder format(StringBuilder text) {
+            text.append(Instant.ofEpochMilli(millis)).append(' ').append(String.format("%-5s", level))
+                    .append(" [").append(thread).append("] ").append(message).append('\n');
+            if (error != null) {
+                StringWriter trace = new StringWriter();
+                error.printStackTrace(new PrintWriter(trace));
+                text.append(trace);
+            }
+            return text;
+        }
+    }
+}
@@ -0,0 +1,908 @@
+package server;
+
+import pojo.BatchPathResult;
+import pojo.CompactPaths;
+import pojo.ComponentStatistics;
+import pojo.HierarchicalPath;
+import pojo.Index;
+import pojo.Matrix;
+import pojo.MatrixHandler;
+import pojo.Node;
+import pojo.TraversableMatrix;
+import pojo.WeightAwareDijkstra;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+1. MatrixClient is a reusable client of the matrix server for other services. Every command of MatrixHandler has
+   a method that returns a CompletableFuture of its result, so a caller never blocks on the network.
+2. The client keeps a pool of persistent connections, each switched to the pipelined mode of the server:
+   a connection carries many requests at once, and a reader thread per connection completes the futures
+   by the correlation ids of the responses, in the order the server finishes them.
+   Every connection asks for "compact paths", so paths cross the network as CompactPaths and are decoded here.
+3. A matrix is uploaded once into a MatrixHandle. The matrix is sent to a connection only when a request for it
+   goes there and the connection does not hold that version of it yet, so requests for the same matrix reuse
+   the upload. A request goes to the connection with the fewest requests in flight, counting an upload as
+   UPLOAD_PENALTY requests, so a matrix tends to stay on the connections that already hold it.
+   Every request of a handle names its matrix ("h" and the id of the handle, see Request.withMatrix), so the session
+   of a connection holds the matrices of several handles at once and the requests of different handles are mixed
+   on a connection without uploading them again. When the server dropped a matrix to make room for others, the
+   request fails with MatrixHandler.NO_MATRIX_NAMED; the client forgets that the connections hold the matrix and
+   sends the request again, which uploads it. drop() frees the matrix of a handle on the server.
+4. An update of a handle is sent as a "matrix update" to the connections that hold the previous version;
+   the others upload the new version when they are used for it again.
+5. The writes of a connection are guarded by a ReentrantLock instead of synchronized, so callers on virtual threads
+   do not pin their carrier thread while a write waits for the socket.
+6. Every response records its latency, from the write of the request to the arrival of its response,
+   in a LatencyHistogram of its command; busy replies are only counted. latencyReport() prints them.
+7. The admission control of the server limits the requests in flight of a client host, so the client keeps at most
+   -Dclient.maxInFlight queries in flight over all its connections (8 by default, the limit of the server).
+   The other queries wait in a queue and are sent as responses arrive. A query the server still refuses as busy
+   (see ServerBusy), for example because of other clients on the same host, is sent again after the delay
+   the server suggests, up to -Dclient.busyRetries times (20 by default).
+8. A future that does not get a result completes with a MatrixClientException: the server stayed busy,
+   the request ran past its deadline (the exception carries the RequestTimeout and its partial result),
+   the request failed, or the connection was lost. A lost connection is opened again on its next use.
+9. Dependent stages that are not *Async run on the reader thread of the connection, so they should not block.
+ */
+
+/**
+ * The MatrixClient class is an asynchronous client of the matrix server with a pool of pipelined connections.
+ */
+public final class MatrixClient implements AutoCloseable {
+
+    // The number of requests in flight an upload is counted as when a connection is chosen
+    static final int UPLOAD_PENALTY = 4;
+    // The number of times a request the server refused as busy is sent again before its future fails
+    static final int MAX_BUSY_RETRIES = Integer.getInteger("client.busyRetries", 20);
+    // The largest number of requests of the client in flight, as the server admits from one host by default
+    static final int MAX_IN_FLIGHT = Math.max(1, Integer.getInteger("client.maxInFlight", 8));
+
+    private final String host;
+    private final int port;
+    private final List<Connection> connections;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong nextHandle = new AtomicLong(1);
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LongAdder busyReplies = new LongAdder();
+    private final Semaphore permits = new Semaphore(MAX_IN_FLIGHT);
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>(); // The requests waiting for a permit
+    private volatile int deadlineMillis; // The deadline of the requests, 0 for the default of the server
+    private volatile boolean closed;
+
+    /**
+     * Constructs a MatrixClient and opens its connections.
+     * @param host        The host of the server.
+     * @param port        The port of the server.
+     * @param connections The number of connections of the pool.
+     * @throws IOException If a connection cannot be opened.
+     */
+    public MatrixClient(String host, int port, int connections) throws IOException {
+        if (connections < 1) {
+            throw new IllegalArgumentException("A MatrixClient needs at least one connection");
+        }
+        this.host = host;
+        this.port = port;
+        this.connections = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            Connection connection = new Connection(i);
+            connection.lock.lock();
+            try {
+                connection.open();
+            } catch (IOException ioException) {
+                // Do not leave the connections opened so far behind
+                close();
+                throw ioException;
+            } finally {
+                connection.lock.unlock();
+            }
+            this.connections.add(connection);
+        }
+    }
+
+    /**
+     * Creates a handle of a matrix. Nothing is sent until a request uses the handle.
+     * @param matrix The values of the matrix, copied by the handle.
+     * @return The handle to pass to the requests.
+     */
+    public MatrixHandle upload(int[][] matrix) {
+        return new MatrixHandle(nextHandle.getAndIncrement(), copyOf(matrix));
+    }
+
+    /**
+     * Changes one value of a matrix, on the connections that hold it and for the later uploads.
+     * @param handle The handle of the matrix.
+     * @param index  The index of the value.
+     * @param value  The new value.
+     * @return A future completed once the connections that hold the matrix applied the update.
+     */
+    public CompletableFuture<Void> update(MatrixHandle handle, Index index, int value) {
+        long version;
+        handle.lock.lock();
+        try {
+            // Copy on write, so that an upload in progress keeps serializing the version it started with
+            int[][] cells = copyOf(handle.cells);
+            cells[index.getRow()][index.getColumn()] = value;
+            handle.cells = cells;
+            version = ++handle.version;
+        } finally {
+            handle.lock.unlock();
+        }
+
+        List<CompletableFuture<Object>> acks = new ArrayList<>();
+        for (Connection connection : connections) {
+            connection.lock.lock();
+            try {
+                Long held = connection.loaded.get(handle.id);
+                if (!connection.broken && held != null && held == version - 1) {
+                    acks.add(connection.request(handle.name, "matrix update", index, value));
+                    connection.loaded.put(handle.id, version);
+                }
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Frees the matrix of a handle on the connections that hold it. A later request of the handle uploads it again.
+     * @param handle The handle of the matrix.
+     * @return A future completed once the connections dropped the matrix.
+     */
+    public CompletableFuture<Void> drop(MatrixHandle handle) {
+        List<CompletableFuture<Object>> acks = new ArrayList<>();
+        for (Connection connection : connections) {
+            connection.lock.lock();
+            try {
+                if (!connection.broken && connection.loaded.remove(handle.id) != null) {
+                    acks.add(connection.request(null, "drop matrix", handle.name));
+                }
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Builds landmark tables for a matrix, on a connection now and on every connection that uploads it later.
+     * @param handle         The handle of the matrix.
+     * @param numOfLandmarks The number of landmarks.
+     * @return A future of the description of the landmarks.
+     */
+    public CompletableFuture<String> landmarks(MatrixHandle handle, int numOfLandmarks) {
+        handle.lock.lock();
+        try {
+            handle.landmarks = numOfLandmarks;
+            // The connections that hold the matrix without the landmarks upload it again when they are used for it
+            handle.version++;
+        } finally {
+            handle.lock.unlock();
+        }
+        Connection connection = choose(handle);
+        connection.lock.lock();
+        try {
+            connection.ensureOpen();
+            return connection.load(handle).thenApply(String.class::cast);
+        } catch (IOException ioException) {
+            return CompletableFuture.failedFuture(new MatrixClientException("Cannot connect to " + host + ":" + port, ioException));
+        } finally {
+            connection.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the deadline of the next requests on every connection.
+     * @param millis The deadline in milliseconds, 0 for the default of the server.
+     * @return A future completed once every connection applied the deadline.
+     */
+    public CompletableFuture<Void> deadline(int millis) {
+        deadlineMillis = millis;
+        List<CompletableFuture<Object>> acks = new ArrayList<>();
+        for (Connection connection : connections) {
+            connection.lock.lock();
+            try {
+                if (!connection.broken) {
+                    acks.add(connection.request(null, "deadline", millis));
+                }
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Finds the neighbors of a cell.
+     * @param handle The handle of the matrix.
+     * @param index  The cell.
+     * @return A future of the neighbors.
+     */
+    public CompletableFuture<List<Index>> getNeighbors(MatrixHandle handle, Index index) {
+        return send(handle, "get neighbors", index);
+    }
+
+    /**
+     * Finds the connected component of a cell, without diagonal steps.
+     * @param handle The handle of the matrix.
+     * @param index  The cell.
+     * @return A future of the cells of the component, empty if the cell has no component.
+     */
+    public CompletableFuture<Set<Index>> connectedComponent(MatrixHandle handle, Index index) {
+        return send(handle, "connected component", index);
+    }
+
+    /**
+     * Checks if two cells are in the same connected component, without diagonal steps.
+     * @param handle The handle of the matrix.
+     * @param first  A cell.
+     * @param second Another cell.
+     * @return A future of true if both cells are in a component and it is the same one.
+     */
+    public CompletableFuture<Boolean> sameComponent(MatrixHandle handle, Index first, Index second) {
+        return send(handle, "same component", first, second);
+    }
+
+    /**
+     * Finds the size of the connected component of a cell, without diagonal steps.
+     * @param handle The handle of the matrix.
+     * @param index  The cell.
+     * @return A future of the number of cells of the component, 0 if the cell has no component.
+     */
+    public CompletableFuture<Integer> componentSize(MatrixHandle handle, Index index) {
+        return send(handle, "component size", index);
+    }
+
+    /**
+     * Finds all the connected components of a matrix, with diagonal steps.
+     * @param handle The handle of the matrix.
+     * @return A future of the components.
+     */
+    public CompletableFuture<HashSet<HashSet<Index>>> allConnectedComponents(MatrixHandle handle) {
+        return send(handle, "all connected component");
+    }
+
+    /**
+     * Computes the statistics of the connected components of a matrix, with diagonal steps.
+     * @param handle  The handle of the matrix.
+     * @param minSize The smallest size of the components whose summaries are listed.
+     * @return A future of the statistics.
+     */
+    public CompletableFuture<ComponentStatistics> componentStatistics(MatrixHandle handle, int minSize) {
+        return send(handle, "component statistics", minSize);
+    }
+
+    /**
+     * Finds all the shortest paths between two cells.
+     * @param handle      The handle of the matrix.
+     * @param source      The source cell.
+     * @param destination The destination cell.
+     * @return A future of the paths, empty if the destination is not reachable.
+     */
+    public CompletableFuture<List<List<Node<Index>>>> allShortestPaths(MatrixHandle handle, Index source, Index destination) {
+        return this.<CompactPaths>send(handle, "all shortest paths", source, destination).thenApply(CompactPaths::toNodePaths);
+    }
+
+    /**
+     * Counts the valid submarines of a matrix.
+     * @param handle The handle of the matrix.
+     * @return A future of the number of submarines.
+     */
+    public CompletableFuture<Integer> submarines(MatrixHandle handle) {
+        return send(handle, "submarines");
+    }
+
+    /**
+     * Finds all the lightest paths between two cells.
+     * @param handle      The handle of the matrix.
+     * @param source      The source cell.
+     * @param destination The destination cell.
+     * @return A future of the paths, empty if there are infinitely many.
+     */
+    public CompletableFuture<Collection<List<Node<Index>>>> lightestPaths(MatrixHandle handle, Index source, Index destination) {
+        return this.<CompactPaths>send(handle, "lightest paths", source, destination).thenApply(CompactPaths::toNodePaths);
+    }
+
+    /**
+     * Finds an approximate lightest path with the hierarchical engine of the server.
+     * @param handle      The handle of the matrix.
+     * @param source      The source cell.
+     * @param destination The destination cell.
+     * @return A future of the path and its lower bound.
+     */
+    public CompletableFuture<HierarchicalPath> approximateLightestPath(MatrixHandle handle, Index source, Index destination) {
+        return send(handle, "approximate lightest path", source, destination);
+    }
+
+    /**
+     * Finds the lightest paths of a batch of pairs, with one search per distinct source.
+     * @param handle The handle of the matrix.
+     * @param batch  The rows of the batch, each a source followed by its destinations.
+     * @return A future of the paths of every pair.
+     */
+    public CompletableFuture<BatchPathResult> batchLightestPaths(MatrixHandle handle, Index[][] batch) {
+        return send(handle, "batch lightest paths", (Object) batch);
+    }
+
+    /**
+     * Finds the shortest paths of a batch of pairs, with one search per distinct source.
+     * @param handle The handle of the matrix.
+     * @param batch  The rows of the batch, each a source followed by its destinations.
+     * @return A future of the paths of every pair.
+     */
+    public CompletableFuture<BatchPathResult> batchShortestPaths(MatrixHandle handle, Index[][] batch) {
+        return send(handle, "batch shortest paths", (Object) batch);
+    }
+
+    /**
+     * Reads the metrics of the server.
+     * @return A future of the metrics table.
+     */
+    public CompletableFuture<String> stats() {
+        return send(null, "stats");
+    }
+
+    /**
+     * Sends a request on the connection chosen for its matrix, uploading the matrix first if the connection needs it.
+     * @param handle    The handle of the matrix, or null for requests that do not use one.
+     * @param command   The command.
+     * @param arguments The arguments of the command.
+     * @param <T>       The type of the result.
+     * @return A future of the result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> send(MatrixHandle handle, String command, Object... arguments) {
+        return (CompletableFuture<T>) attempt(handle, command, arguments, MAX_BUSY_RETRIES);
+    }
+
+    /**
+     * Sends a request, and sends it again after the suggested delay while the server answers that it is busy,
+     * or at once with a new upload when the server dropped the matrix.
+     */
+    private CompletableFuture<Object> attempt(MatrixHandle handle, String command, Object[] arguments, int retries) {
+        return whenPermitted(handle, command, arguments).exceptionallyCompose(failure -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (retries > 0 && !closed && cause instanceof MatrixClientException clientException
+                    && clientException.getReply() instanceof ServerBusy busy) {
+                Executor later = CompletableFuture.delayedExecutor(busy.getRetryAfterMillis(), TimeUnit.MILLISECONDS);
+                return CompletableFuture.supplyAsync(() -> null, later)
+                        .thenCompose(ignored -> attempt(handle, command, arguments, retries - 1));
+            }
+            if (retries > 0 && !closed && handle != null && cause instanceof MatrixClientException
+                    && cause.getMessage() != null && cause.getMessage().startsWith(MatrixHandler.NO_MATRIX_NAMED)) {
+                for (Connection connection : connections) {
+                    connection.loaded.remove(handle.id);
+                }
+                return attempt(handle, command, arguments, retries - 1);
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    /**
+     * Sends a request once as soon as fewer than MAX_IN_FLIGHT requests of the client are in flight.
+     * A request that has to wait is queued, and sent by the response that frees its permit, so the caller never blocks.
+     */
+    private CompletableFuture<Object> whenPermitted(MatrixHandle handle, String command, Object[] arguments) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        waiting.add(() -> sendOnce(handle, command, arguments).whenComplete((value, failure) -> {
+            permits.release();
+            sendWaiting();
+            if (failure != null) {
+                result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                result.complete(value);
+            }
+        }));
+        sendWaiting();
+        return result;
+    }
+
+    /**
+     * Sends the queued requests while there are permits.
+     */
+    private void sendWaiting() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                // Another thread took the request; a request queued later sends itself
+                permits.release();
+                return;
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * Sends a request once, on the connection chosen for its matrix.
+     */
+    private CompletableFuture<Object> sendOnce(MatrixHandle handle, String command, Object[] arguments) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new MatrixClientException("The client is closed", (Object) null));
+        }
+        Connection connection = choose(handle);
+        connection.lock.lock();
+        try {
+            connection.ensureOpen();
+            if (handle != null) {
+                connection.load(handle);
+            }
+            return connection.request(handle == null ? null : handle.name, command, arguments);
+        } catch (IOException ioException) {
+            return CompletableFuture.failedFuture(new MatrixClientException("Cannot connect to " + host + ":" + port, ioException));
+        } finally {
+            connection.lock.unlock();
+        }
+    }
+
+    /**
+     * Chooses the connection with the fewest requests in flight, counting an upload of the matrix as UPLOAD_PENALTY requests.
+     */
+    private Connection choose(MatrixHandle handle) {
+        Connection best = null;
+        int bestScore = Integer.MAX_VALUE;
+        for (Connection connection : connections) {
+            int score = connection.inFlight.get() + (handle == null || connection.holds(handle) ? 0 : UPLOAD_PENALTY);
+            if (score < bestScore) {
+                best = connection;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the latencies the client measured, by command.
+     * @return The histogram of every command, in nanoseconds.
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Map.copyOf(latencies);
+    }
+
+    /**
+     * Returns the number of requests the server refused as busy, each sent again or failed.
+     * @return The number of busy replies.
+     */
+    public long getBusyReplies() {
+        return busyReplies.sum();
+    }
+
+    /**
+     * Formats the latencies the client measured as a text table.
+     * @return One line per command with its count and its p50, p99 and p99.9 in milliseconds,
+     *         and the number of busy replies.
+     */
+    public String latencyReport() {
+        StringBuilder report = new StringBuilder(String.format("%-28s %8s %10s %10s %10s%n", "command", "count", "p50 ms", "p99 ms", "p99.9 ms"));
+        new TreeMap<>(latencies).forEach((command, histogram) -> report.append(String.format("%-28s %8d %10.3f %10.3f %10.3f%n",
+                command, histogram.getCount(), histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6)));
+        report.append(String.format("%-28s %8d%n", "busy replies", busyReplies.sum()));
+        return report.toString();
+    }
+
+    /**
+     * Ends the sessions of the connections once their requests were answered, and closes them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Connection connection : connections) {
+            connection.lock.lock();
+            try {
+                connection.stop();
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+        for (Connection connection : connections) {
+            connection.awaitClosed();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // The connection is gone either way
+        }
+    }
+
+    private static int[][] copyOf(int[][] matrix) {
+        int[][] copy = new int[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = matrix[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * A matrix of the client, uploaded to the connections that need it.
+     */
+    public static final class MatrixHandle {
+        private final long id;
+        private final String name; // The name of the matrix in the sessions of the server
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile int[][] cells;
+        private volatile long version;
+        private volatile int landmarks;
+
+        private MatrixHandle(long id, int[][] cells) {
+            this.id = id;
+            this.name = "h" + id;
+            this.cells = cells;
+        }
+
+        /**
+         * Returns the id of the handle in its client.
+         * @return The id.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Returns the number of updates and landmark builds of the matrix since it was uploaded.
+         * @return The version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public String toString() {
+            return "MatrixHandle " + id + " v" + version + " (" + cells.length + " rows)";
+        }
+    }
+
+    /**
+     * A request sent on a connection and not answered yet.
+     */
+    private record Pending(String command, long sentAt, CompletableFuture<Object> future) {
+    }
+
+    /**
+     * A persistent pipelined connection. Its fields are written under its lock, except by its reader thread.
+     */
+    private final class Connection {
+        private final int number;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private Socket socket;
+        private ObjectOutputStream toServer;
+        private Thread reader;
+        private volatile boolean broken = true;
+        private final Map<Long, Long> loaded = new ConcurrentHashMap<>(); // The version of every matrix the session holds, by handle id
+
+        Connection(int number) {
+            this.number = number;
+        }
+
+        /**
+         * Opens the connection and switches its session to the pipelined mode. Called under the lock.
+         */
+        void open() throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            toServer = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            toServer.flush();
+            ObjectInputStream fromServer = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            toServer.writeObject("pipeline");
+            toServer.flush();
+            loaded.clear();
+            broken = false;
+            Socket opened = socket;
+            reader = Thread.ofVirtual().name("matrix-client-reader-" + number).start(() -> readLoop(opened, fromServer));
+            request(null, "compact paths", true);
+            if (deadlineMillis > 0) {
+                request(null, "deadline", deadlineMillis);
+            }
+        }
+
+        /**
+         * Opens the connection again if it was lost. Called under the lock.
+         */
+        void ensureOpen() throws IOException {
+            if (broken) {
+                if (reader != null) {
+                    // A write failure leaves the reader blocked on the socket until it is closed
+                    closeQuietly(socket);
+                    awaitClosed();
+                }
+                open();
+            }
+        }
+
+        /**
+         * Checks if the session of the connection holds the current version of a matrix.
+         */
+        boolean holds(MatrixHandle handle) {
+            Long held = loaded.get(handle.id);
+            return held != null && held == handle.version;
+        }
+
+        /**
+         * Uploads a matrix to the session of the connection if it does not hold its current version. Called under the lock.
+         * @return The future of the landmarks built with the upload, or of the upload itself.
+         */
+        CompletableFuture<Object> load(MatrixHandle handle) {
+            int[][] cells;
+            long version;
+            int landmarks;
+            handle.lock.lock();
+            try {
+                cells = handle.cells;
+                version = handle.version;
+                landmarks = handle.landmarks;
+            } finally {
+                handle.lock.unlock();
+            }
+            Long held = loaded.get(handle.id);
+            if (held != null && held == version) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Object> uploaded = request(handle.name, "matrix", (Object) cells);
+            if (landmarks > 0) {
+                uploaded = request(handle.name, "landmarks", landmarks);
+            }
+            loaded.put(handle.id, version);
+            return uploaded;
+        }
+
+        /**
+         * Writes a request. Called under the lock.
+         * @param matrix The name of the matrix of the request, or null for a request of the whole session.
+         * @return The future of its result.
+         */
+        CompletableFuture<Object> request(String matrix, String command, Object... arguments) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            long id = nextId.getAndIncrement();
+            pending.put(id, new Pending(command, System.nanoTime(), future));
+            inFlight.incrementAndGet();
+            try {
+                toServer.writeObject(new Request(id, command, arguments).withMatrix(matrix));
+                // Forget the written objects, so a matrix written again is sent with its current values
+                toServer.reset();
+                toServer.flush();
+            } catch (IOException ioException) {
+                fail(new MatrixClientException("Connection " + number + " to " + host + ":" + port + " was lost", ioException));
+            }
+            return future;
+        }
+
+        /**
+         * Ends the session once its requests were answered. Called under the lock.
+         */
+        void stop() {
+            if (broken) {
+                return;
+            }
+            try {
+                toServer.writeObject(new Request(nextId.getAndIncrement(), "stop"));
+                toServer.flush();
+            } catch (IOException ioException) {
+                fail(new MatrixClientException("Connection " + number + " to " + host + ":" + port + " was lost", ioException));
+            }
+        }
+
+        /**
+         * Waits until the reader of the connection read its last response.
+         */
+        void awaitClosed() {
+            try {
+                reader.join();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Completes the futures by the ids of the responses until the connection closes.
+         */
+        private void readLoop(Socket opened, ObjectInputStream fromServer) {
+            MatrixClientException failure = new MatrixClientException("Connection " + number + " to " + host + ":" + port
+                    + " was closed", (Object) null);
+            try {
+                while (true) {
+                    Object read = fromServer.readObject();
+                    if (!(read instanceof Response response)) {
+                        // The server refuses the connection itself, for example with a ServerBusy when its queue is full
+                        failure = new MatrixClientException("The server refused the connection: " + read, read);
+                        break;
+                    }
+                    complete(response);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (!pending.isEmpty()) {
+                    failure = new MatrixClientException("Connection " + number + " to " + host + ":" + port + " was lost", e);
+                }
+            } finally {
+                fail(failure);
+                closeQuietly(opened);
+            }
+        }
+
+        /**
+         * Completes the future of a response and records its latency.
+         */
+        private void complete(Response response) {
+            Pending request = pending.remove(response.getId());
+            if (request == null) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            Object result = response.getResult();
+            if (result instanceof ServerBusy) {
+                // A refusal is counted apart, so the latencies are those of the requests that ran
+                busyReplies.increment();
+            } else {
+                latencies.computeIfAbsent(request.command(), command -> new LatencyHistogram())
+                        .record(System.nanoTime() - request.sentAt());
+            }
+            if (response.isFailed()) {
+                request.future().completeExceptionally(new MatrixClientException(response.getError(), (Object) null));
+            } else if (result instanceof ServerBusy || result instanceof RequestTimeout) {
+                request.future().completeExceptionally(new MatrixClientException(result.toString(), result));
+            } else {
+                request.future().complete(result);
+            }
+        }
+
+        /**
+         * Marks the connection as lost and fails the requests that were not answered.
+         */
+        private void fail(MatrixClientException failure) {
+            broken = true;
+            loaded.clear();
+            for (Long id : List.copyOf(pending.keySet())) {
+                Pending request = pending.remove(id);
+                if (request != null) {
+                    inFlight.decrementAndGet();
+                    request.future().completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until a server on a port serves clients: connects, reads the header of its stream and says "stop".
+     * @param host          The host of the server.
+     * @param port          The port of the server.
+     * @param timeoutMillis How long to wait for the server.
+     * @throws IOException          If the server does not accept connections before the timeout.
+     * @throws InterruptedException If the thread is interrupted while it waits.
+     */
+    private static void awaitServer(String host, int port, long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            try (Socket probe = new Socket(host, port)) {
+                ObjectOutputStream out = new ObjectOutputStream(probe.getOutputStream());
+                out.writeObject("stop");
+                out.flush();
+                new ObjectInputStream(probe.getInputStream());
+                return;
+            } catch (ConnectException refused) {
+                // The accept thread of the server did not bind its port yet
+                if (System.nanoTime() - deadline > 0) {
+                    throw refused;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * A sample usage of the MatrixClient class: starts a local InternetServer, sends lightest path queries for
+     * two matrices from virtual threads through 1 and then 4 pooled connections, prints the client latencies,
+     * and checks every result against WeightAwareDijkstra run locally on the same matrix.
+     * Exits with status 1 if a result differs or the sample fails.
+     * @param args Command-line arguments: port, queries and matrix size.
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8030;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        InternetServer server = new InternetServer(port);
+        server.supportClients(new MatrixHandler());
+        int status = 1;
+        try {
+            awaitServer("127.0.0.1", port, 10_000);
+            status = runSample(port, queries, size) == 0 ? 0 : 1;
+        } catch (Exception e) {
+            Log.error("MatrixClient sample failed", e);
+        } finally {
+            server.stop();
+        }
+        // The accept thread of the server still waits for a client
+        System.exit(status);
+    }
+
+    /**
+     * Runs the queries of the sample against a server and checks their results.
+     * @param port    The port of the server.
+     * @param queries The number of queries per pool size.
+     * @param size    The number of rows and columns of the matrices.
+     * @return The number of results that differ from the local ones.
+     * @throws Exception If the client fails.
+     */
+    private static int runSample(int port, int queries, int size) throws Exception {
+        Random random = new Random(7);
+        int[][][] matrices = new int[2][size][size];
+        for (int[][] matrix : matrices) {
+            for (int[] row : matrix) {
+                for (int j = 0; j < size; j++) {
+                    row[j] = 1 + random.nextInt(200);
+                }
+            }
+        }
+
+        TraversableMatrix[] local = {new TraversableMatrix(new Matrix(matrices[0])), new TraversableMatrix(new Matrix(matrices[1]))};
+        WeightAwareDijkstra dijkstra = new WeightAwareDijkstra();
+        int mismatches = 0;
+        for (int numOfConnections : new int[]{1, 4}) {
+            try (MatrixClient client = new MatrixClient("127.0.0.1", port, numOfConnections);
+                 ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+                MatrixHandle[] handles = {client.upload(matrices[0]), client.upload(matrices[1])};
+                long start = System.nanoTime();
+                Index[][] pairs = new Index[queries][];
+                List<CompletableFuture<Collection<List<Node<Index>>>>> answers = new ArrayList<>();
+                for (int q = 0; q < queries; q++) {
+                    MatrixHandle handle = handles[q % 2];
+                    Index source = new Index(random.nextInt(size), random.nextInt(size));
+                    Index destination = new Index(random.nextInt(size), random.nextInt(size));
+                    pairs[q] = new Index[]{source, destination};
+                    // Every caller blocks on its own virtual thread, as a service handling one request per thread would
+                    answers.add(CompletableFuture.supplyAsync(() -> client.lightestPaths(handle, source, destination).join(), callers));
+                }
+                long paths = answers.stream().mapToLong(answer -> answer.join().size()).sum();
+                System.out.printf("%d connections: %d queries in %d ms, %d lightest paths%n",
+                        numOfConnections, queries, (System.nanoTime() - start) / 1_000_000, paths);
+                System.out.print(client.latencyReport());
+
+                int differ = 0;
+                for (int q = 0; q < queries; q++) {
+                    HashSet<List<Node<Index>>> expected = dijkstra.findLightestPaths(local[q % 2], pairs[q][0], pairs[q][1]);
+                    if (!expected.equals(new HashSet<>(answers.get(q).join()))) {
+                        differ++;
+                        System.out.printf("query %d from %s to %s: %d paths, %d expected%n",
+                                q, pairs[q][0], pairs[q][1], answers.get(q).join().size(), expected.size());
+                    }
+                }
+                System.out.printf("%d connections: %d of %d results differ from the local Dijkstra%n", numOfConnections, differ, queries);
+                mismatches += differ;
+            }
+        }
+        return mismatches;
+    }
+}
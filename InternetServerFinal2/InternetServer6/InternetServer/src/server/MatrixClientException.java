@@ -0,0 +1,56 @@
+package server;
+
+/**
+ * The MatrixClientException completes the future of a MatrixClient request that did not produce a result:
+ * the server refused it, it ran past its deadline, it failed on the server, or the connection was lost.
+ */
+public class MatrixClientException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object reply;
+
+    /**
+     * Constructs the exception of a request the server answered without a result.
+     * @param message Why the request has no result.
+     * @param reply   The reply of the server: a ServerBusy, a RequestTimeout, or null if the request failed.
+     */
+    public MatrixClientException(String message, Object reply) {
+        super(message);
+        this.reply = reply;
+    }
+
+    /**
+     * Constructs the exception of a request whose connection failed.
+     * @param message Why the request has no result.
+     * @param cause   The failure of the connection.
+     */
+    public MatrixClientException(String message, Throwable cause) {
+        super(message, cause);
+        this.reply = null;
+    }
+
+    /**
+     * Returns the reply of the server, such as a ServerBusy with a suggested retry delay,
+     * or a RequestTimeout with the partial result of the request.
+     * @return The reply, or null if the server did not answer with one.
+     */
+    public Object getReply() {
+        return reply;
+    }
+
+    /**
+     * Checks if the server refused the request because it was busy, so the request may be retried.
+     * @return true if the reply is a ServerBusy.
+     */
+    public boolean isBusy() {
+        return reply instanceof ServerBusy;
+    }
+
+    /**
+     * Checks if the request ran past its deadline.
+     * @return true if the reply is a RequestTimeout.
+     */
+    public boolean isTimeout() {
+        return reply instanceof RequestTimeout;
+    }
+}
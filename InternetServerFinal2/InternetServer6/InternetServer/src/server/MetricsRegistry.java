@@ -0,0 +1,214 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The MetricsRegistry class holds the server-wide metrics: a CommandMetrics per protocol command and named gauges
+ * (such as the occupancy of the thread pools). It renders them as a text table for the "stats" command
+ * and in the Prometheus text format for scrapers.
+ */
+public class MetricsRegistry {
+    private volatile static MetricsRegistry instance;
+
+    // The latency percentiles that are exported
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, CommandMetrics> commands = new ConcurrentSkipListMap<>();
+    private final Map<String, CommandMetrics> lanes = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private HttpServer httpServer;
+
+    private MetricsRegistry() {
+
+    }
+
+    /**
+     * Returns the registry, creating it on the first call.
+     * @return The server-wide registry.
+     */
+    public static MetricsRegistry get() {
+        if (instance == null) {
+            synchronized (MetricsRegistry.class) {
+                if (instance == null) {
+                    instance = new MetricsRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the metrics of a command, creating them on the first call.
+     * @param command The name of the command.
+     * @return The metrics of the command.
+     */
+    public CommandMetrics command(String command) {
+        return commands.computeIfAbsent(command, CommandMetrics::new);
+    }
+
+    /**
+     * Returns the metrics of a lane of the RequestScheduler, creating them on the first call.
+     * Only the requests, the queue wait and the computation time of a lane are recorded.
+     * @param lane The name of the lane.
+     * @return The metrics of the lane.
+     */
+    public CommandMetrics lane(String lane) {
+        return lanes.computeIfAbsent(lane, CommandMetrics::new);
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     * @param name  The name of the gauge, in the Prometheus naming style (e.g. clients_pool_active_threads).
+     * @param value The supplier of the current value.
+     */
+    public void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Renders the metrics as a human-readable table, with latencies in milliseconds.
+     * @return The table.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-26s %9s %7s %7s %7s %12s %9s %9s %9s %9s %9s%n", "command", "requests", "errors",
+                "busy", "timeout", "bytes", "wait p99", "cpu p50", "cpu p99", "write p99", "total p99"));
+        for (Map.Entry<String, CommandMetrics> entry : commands.entrySet()) {
+            CommandMetrics metrics = entry.getValue();
+            text.append(String.format(Locale.ROOT, "%-26s %9d %7d %7d %7d %12d %9.3f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(),
+                    metrics.getRequests(), metrics.getErrors(), metrics.getRejected(), metrics.getTimeouts(), metrics.getResponseBytes(),
+                    metrics.getQueueWait().getValueAtPercentile(99) / 1e6,
+                    metrics.getCompute().getValueAtPercentile(50) / 1e6,
+                    metrics.getCompute().getValueAtPercentile(99) / 1e6,
+                    metrics.getSerialization().getValueAtPercentile(99) / 1e6,
+                    metrics.getTotal().getValueAtPercentile(99) / 1e6));
+        }
+        if (!lanes.isEmpty()) {
+            text.append(String.format(Locale.ROOT, "%-26s %9s %9s %9s %9s %9s%n", "lane", "requests",
+                    "wait p50", "wait p99", "cpu p50", "cpu p99"));
+            for (Map.Entry<String, CommandMetrics> entry : lanes.entrySet()) {
+                CommandMetrics metrics = entry.getValue();
+                text.append(String.format(Locale.ROOT, "%-26s %9d %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(),
+                        metrics.getRequests(),
+                        metrics.getQueueWait().getValueAtPercentile(50) / 1e6,
+                        metrics.getQueueWait().getValueAtPercentile(99) / 1e6,
+                        metrics.getCompute().getValueAtPercentile(50) / 1e6,
+                        metrics.getCompute().getValueAtPercentile(99) / 1e6));
+            }
+        }
+        for (Map.Entry<String, LongSupplier> gauge : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+            text.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Renders the metrics in the Prometheus text exposition format.
+     * Counters are suffixed with _total and latencies are summaries in seconds.
+     * @return The metrics text.
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        counter(text, "matrix_server_requests_total", "Requests received", commands, "command", CommandMetrics::getRequests);
+        counter(text, "matrix_server_errors_total", "Requests that failed", commands, "command", CommandMetrics::getErrors);
+        counter(text, "matrix_server_rejected_total", "Requests refused because the server was busy", commands, "command", CommandMetrics::getRejected);
+        counter(text, "matrix_server_timeouts_total", "Requests that ran past their deadline", commands, "command", CommandMetrics::getTimeouts);
+        counter(text, "matrix_server_response_bytes_total", "Bytes written in responses", commands, "command", CommandMetrics::getResponseBytes);
+        summary(text, "matrix_server_queue_wait_seconds", "Time computations waited for a thread", commands, "command", CommandMetrics::getQueueWait);
+        summary(text, "matrix_server_compute_seconds", "Time of the computations", commands, "command", CommandMetrics::getCompute);
+        summary(text, "matrix_server_serialization_seconds", "Time to serialize and write responses", commands, "command", CommandMetrics::getSerialization);
+        summary(text, "matrix_server_request_seconds", "Time from reading a command to finishing its response", commands, "command", CommandMetrics::getTotal);
+        counter(text, "matrix_server_lane_requests_total", "Computations submitted to a lane", lanes, "lane", CommandMetrics::getRequests);
+        summary(text, "matrix_server_lane_queue_wait_seconds", "Time computations waited in a lane", lanes, "lane", CommandMetrics::getQueueWait);
+        summary(text, "matrix_server_lane_compute_seconds", "Time of the computations of a lane", lanes, "lane", CommandMetrics::getCompute);
+        for (Map.Entry<String, LongSupplier> gauge : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+            String name = "matrix_server_" + gauge.getKey();
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            text.append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Appends a counter with one sample per command or lane.
+     */
+    private void counter(StringBuilder text, String name, String help, Map<String, CommandMetrics> metrics,
+                         String labelName, ToLongFunction<CommandMetrics> value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, CommandMetrics> entry : metrics.entrySet()) {
+            text.append(name).append('{').append(labelName).append("=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(value.applyAsLong(entry.getValue())).append('\n');
+        }
+    }
+
+    /**
+     * Appends a summary with the quantiles, the sum and the count of one histogram of every command or lane.
+     */
+    private void summary(StringBuilder text, String name, String help, Map<String, CommandMetrics> metrics,
+                         String labelName, Function<CommandMetrics, LatencyHistogram> histogram) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+        for (Map.Entry<String, CommandMetrics> entry : metrics.entrySet()) {
+            LatencyHistogram h = histogram.apply(entry.getValue());
+            String label = labelName + "=\"" + escape(entry.getKey()) + "\"";
+            for (double quantile : QUANTILES) {
+                text.append(String.format(Locale.ROOT, "%s{%s,quantile=\"%s\"} %.9f%n",
+                        name, label, quantile, h.getValueAtPercentile(quantile * 100) / 1e9));
+            }
+            text.append(String.format(Locale.ROOT, "%s_sum{%s} %.9f%n", name, label, h.getSum() / 1e9));
+            text.append(String.format(Locale.ROOT, "%s_count{%s} %d%n", name, label, h.getCount()));
+        }
+    }
+
+    /**
+     * Escapes a label value; the command names come from the clients.
+     */
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Serves the Prometheus text on http://127.0.0.1:port/metrics. Only the loopback interface is bound.
+     * @param port The port to listen on.
+     * @throws IOException If the port cannot be bound.
+     */
+    public synchronized void startHttpEndpoint(int port) throws IOException {
+        if (httpServer != null) {
+            return;
+        }
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+    }
+
+    /**
+     * Stops the HTTP endpoint, if it was started.
+     */
+    public synchronized void stopHttpEndpoint() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+}
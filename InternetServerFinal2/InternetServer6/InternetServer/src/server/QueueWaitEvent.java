@@ -0,0 +1,26 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the time a task waited for a thread: a client waiting for the clients pool,
+ * or a computation waiting for the executor of its request.
+ */
+@Name("server.QueueWait")
+@Label("Queue Wait")
+@Category("Internet Server")
+@Description("Time from submitting a task to a pool until a thread started it")
+@StackTrace(false)
+public class QueueWaitEvent extends Event {
+
+    @Label("Pool")
+    public String pool;
+
+    @Label("Command")
+    public String command;
+}
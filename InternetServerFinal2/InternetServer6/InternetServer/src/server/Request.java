@@ -0,0 +1,84 @@
+package server;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The Request class is one request of a pipelined session: a command, its arguments and an id chosen by the client.
+ * The server answers it with a Response that carries the same id, so the client can match the replies
+ * that arrive in another order than the requests.
+ */
+public class Request implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final String command;
+    @SuppressWarnings("serial") // Declared as Object since the arguments are the objects of the lock-step protocol, which are all serializable
+    private final Object[] arguments;
+    private final String matrix;
+
+    /**
+     * Constructs a request.
+     * @param id        The correlation id, copied to the Response.
+     * @param command   The command, one of the commands of the lock-step protocol.
+     * @param arguments The arguments of the command, in the order the lock-step command sends them.
+     */
+    public Request(long id, String command, Object... arguments) {
+        this(id, command, null, arguments);
+    }
+
+    private Request(long id, String command, String matrix, Object[] arguments) {
+        this.id = id;
+        this.command = command;
+        this.matrix = matrix;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Returns a copy of the request that works on a named matrix of the session instead of the current one.
+     * An upload creates the name; any other request fails if the session does not hold a matrix by that name.
+     * @param matrix The name of the matrix, or null for the current matrix.
+     * @return The request with the matrix.
+     */
+    public Request withMatrix(String matrix) {
+        return new Request(id, command, matrix, arguments);
+    }
+
+    /**
+     * Returns the correlation id of the request.
+     * @return The id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the command of the request.
+     * @return The command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the arguments of the command.
+     * @return The arguments.
+     */
+    public Object[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the name of the matrix the request works on.
+     * @return The name, or null for the current matrix of the session.
+     */
+    public String getMatrix() {
+        return matrix;
+    }
+
+    @Override
+    public String toString() {
+        return "Request " + id + ": \"" + command + "\" " + Arrays.toString(arguments)
+                + (matrix == null ? "" : " on \"" + matrix + "\"");
+    }
+}
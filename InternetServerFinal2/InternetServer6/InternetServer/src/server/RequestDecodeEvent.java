@@ -0,0 +1,25 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the deserialization of one argument of a request.
+ */
+@Name("server.RequestDecode")
+@Label("Request Decode")
+@Category("Internet Server")
+@Description("An argument of a request was read from the ObjectInputStream")
+@StackTrace(false)
+public class RequestDecodeEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Argument Type")
+    public String argumentType;
+}
@@ -0,0 +1,116 @@
+package server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+1. RequestScheduler runs the computations of the requests in two lanes, so that a cheap lookup never waits behind
+   a heavy analysis. Each lane is a ThreadPoolExecutor with its own threads and its own queue.
+2. A request goes to the cheap lane when its estimated cost (see CostEstimator) is at most -Dserver.scheduler.cheapCost
+   cell visits (100000 by default, a connected component of a 300x300 matrix), and to the heavy lane otherwise.
+3. The heavy lane has one thread per core, so heavy analyses can use every core but never more threads than cores;
+   the ones that do not fit wait in the heavy queue. The cheap lane has its own threads (at least 2), which are
+   mostly idle, so a cheap lookup starts at once even while every heavy thread computes.
+4. The queues are not bounded here: the AdmissionControl limits the cost and the number of requests in flight
+   before they are submitted.
+5. Every lane records its requests, queue wait and computation time in a CommandMetrics of the MetricsRegistry,
+   exported with a lane label, together with gauges of its queue length and busy threads.
+ */
+
+/**
+ * The RequestScheduler class runs the computations of the requests in a cheap lane and a heavy lane, chosen by cost.
+ */
+public class RequestScheduler {
+    private volatile static RequestScheduler instance;
+
+    private final long cheapCostLimit;
+    private final ThreadPoolExecutor cheapLane;
+    private final ThreadPoolExecutor heavyLane;
+    private final CommandMetrics cheapMetrics;
+    private final CommandMetrics heavyMetrics;
+
+    /**
+     * Constructs a RequestScheduler.
+     * @param cheapCostLimit The largest estimated cost of a request in the cheap lane.
+     * @param cheapThreads   The number of threads of the cheap lane.
+     * @param heavyThreads   The number of threads of the heavy lane.
+     */
+    public RequestScheduler(long cheapCostLimit, int cheapThreads, int heavyThreads) {
+        this.cheapCostLimit = cheapCostLimit;
+        this.cheapLane = lane("cheap", cheapThreads);
+        this.heavyLane = lane("heavy", heavyThreads);
+        this.cheapMetrics = MetricsRegistry.get().lane("cheap");
+        this.heavyMetrics = MetricsRegistry.get().lane("heavy");
+        MetricsRegistry.get().registerGauge("cheap_lane_queued_tasks", () -> cheapLane.getQueue().size());
+        MetricsRegistry.get().registerGauge("cheap_lane_active_threads", cheapLane::getActiveCount);
+        MetricsRegistry.get().registerGauge("heavy_lane_queued_tasks", () -> heavyLane.getQueue().size());
+        MetricsRegistry.get().registerGauge("heavy_lane_active_threads", heavyLane::getActiveCount);
+    }
+
+    /**
+     * Returns the server-wide RequestScheduler, creating it on the first call from the system properties.
+     * @return The server-wide RequestScheduler.
+     */
+    public static RequestScheduler get() {
+        if (instance == null) {
+            synchronized (RequestScheduler.class) {
+                if (instance == null) {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    instance = new RequestScheduler(Long.getLong("server.scheduler.cheapCost", 100_000L),
+                            Math.max(2, cores), cores);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the thread pool of a lane, with daemon threads named after the lane.
+     */
+    private static ThreadPoolExecutor lane(String name, int threads) {
+        AtomicInteger nextThread = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, name + "-lane-" + nextThread.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), factory);
+    }
+
+    /**
+     * Submits a computation to the lane of its cost.
+     * @param cost     The estimated cost of the request.
+     * @param callable The computation.
+     * @param <T>      The type of the result.
+     * @return The future result.
+     */
+    public <T> Future<T> submit(long cost, Callable<T> callable) {
+        boolean cheap = isCheap(cost);
+        CommandMetrics laneMetrics = cheap ? cheapMetrics : heavyMetrics;
+        laneMetrics.recordRequest();
+        long submitted = System.nanoTime();
+        return (cheap ? cheapLane : heavyLane).submit(() -> {
+            long started = System.nanoTime();
+            laneMetrics.getQueueWait().record(started - submitted);
+            try {
+                return callable.call();
+            } finally {
+                laneMetrics.getCompute().record(System.nanoTime() - started);
+            }
+        });
+    }
+
+    /**
+     * Returns whether a request of a cost runs in the cheap lane.
+     * @param cost The estimated cost of the request.
+     * @return true for the cheap lane, false for the heavy lane.
+     */
+    public boolean isCheap(long cost) {
+        return cost <= cheapCostLimit;
+    }
+}
@@ -0,0 +1,96 @@
+package server;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * The RequestTimeout class is the response the server sends instead of a result when a request runs past its deadline.
+ * The computation was stopped; the response tells how far it got and carries the part of the result it found, if any.
+ */
+public class RequestTimeout implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String command;
+    private final long elapsedMillis;
+    private final long deadlineMillis;
+    private final long expansions;
+    private final long bestWeight;
+    private final Serializable partialResult;
+
+    /**
+     * Constructs a timeout response.
+     * @param command        The command that timed out.
+     * @param elapsedMillis  The time from reading the command to stopping its computation, in milliseconds.
+     * @param deadlineMillis The deadline of the request, in milliseconds.
+     * @param expansions     The number of cells the computation expanded.
+     * @param bestWeight     The weight of the lightest path to the destination found so far, or -1.
+     * @param partialResult  The part of the result found so far, or null.
+     */
+    public RequestTimeout(String command, long elapsedMillis, long deadlineMillis, long expansions,
+                          long bestWeight, Serializable partialResult) {
+        this.command = command;
+        this.elapsedMillis = elapsedMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.expansions = expansions;
+        this.bestWeight = bestWeight;
+        this.partialResult = partialResult;
+    }
+
+    /**
+     * Returns the command that timed out.
+     * @return The command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the time from reading the command to stopping its computation.
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the deadline of the request.
+     * @return The deadline in milliseconds.
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Returns the number of cells the computation expanded before it was stopped.
+     * @return The number of expanded cells, counted every CancellationToken.CHECK_INTERVAL cells.
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Returns the weight of the lightest path to the destination found before the computation was stopped.
+     * @return The weight, or -1 if the command has no path or the destination was not reached.
+     */
+    public long getBestWeight() {
+        return bestWeight;
+    }
+
+    /**
+     * Returns the part of the result found before the computation was stopped,
+     * such as the connected components or the lightest paths found so far.
+     * @return The partial result, or null if there is none.
+     */
+    public Serializable getPartialResult() {
+        return partialResult;
+    }
+
+    @Override
+    public String toString() {
+        String partial = partialResult == null ? "no partial result"
+                : partialResult instanceof Collection<?> collection ? "a partial result of " + collection.size() + " elements"
+                : "a partial result";
+        return "Request timed out: \"" + command + "\" stopped after " + elapsedMillis + " ms (deadline " + deadlineMillis
+                + " ms), " + expansions + " cells expanded, best path weight " + bestWeight + ", " + partial;
+    }
+}
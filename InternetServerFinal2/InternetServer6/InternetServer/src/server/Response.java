@@ -0,0 +1,77 @@
+package server;
+
+import java.io.Serializable;
+
+/**
+ * The Response class is the reply to one Request of a pipelined session.
+ * It carries the id of the request and either its result or the reason it failed.
+ * A request that was refused or ran past its deadline has a ServerBusy or a RequestTimeout as its result.
+ */
+public class Response implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final String command;
+    @SuppressWarnings("serial") // Declared as Object since the results are the replies of the lock-step protocol, which are all serializable
+    private final Object result;
+    private final String error;
+
+    /**
+     * Constructs a response.
+     * @param id      The correlation id of the request.
+     * @param command The command of the request.
+     * @param result  The result of the request, null for the commands that have no result or if it failed.
+     * @param error   Why the request failed, or null if it did not.
+     */
+    public Response(long id, String command, Object result, String error) {
+        this.id = id;
+        this.command = command;
+        this.result = result;
+        this.error = error;
+    }
+
+    /**
+     * Returns the correlation id of the request.
+     * @return The id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the command of the request.
+     * @return The command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the result of the request.
+     * @return The result, a ServerBusy or a RequestTimeout, or null.
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * Returns why the request failed.
+     * @return The error, or null if the request did not fail.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Returns whether the request failed.
+     * @return true if there is an error.
+     */
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Response " + id + " to \"" + command + "\": " + (error != null ? "failed, " + error : Log.render(result));
+    }
+}
@@ -0,0 +1,30 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the serialization of a response to the client.
+ */
+@Name("server.ResponseEncode")
+@Label("Response Encode")
+@Category("Internet Server")
+@Description("A response was written to the ObjectOutputStream")
+@StackTrace(false)
+public class ResponseEncodeEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Response Type")
+    public String responseType;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
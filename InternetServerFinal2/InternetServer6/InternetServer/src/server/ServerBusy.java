@@ -0,0 +1,45 @@
+package server;
+
+import java.io.Serializable;
+
+/**
+ * The ServerBusy class is the response the server sends instead of a result when it is overloaded.
+ * The request was not run; the client may retry it after the suggested delay or give it up.
+ */
+public class ServerBusy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+    private final long retryAfterMillis;
+
+    /**
+     * Constructs a busy response.
+     * @param reason           Why the request was not admitted.
+     * @param retryAfterMillis The suggested delay before a retry, in milliseconds.
+     */
+    public ServerBusy(String reason, long retryAfterMillis) {
+        this.reason = reason;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns why the request was not admitted.
+     * @return The reason.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns the suggested delay before a retry.
+     * @return The delay in milliseconds.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Server busy: " + reason + ", retry after " + retryAfterMillis + " ms";
+    }
+}
@@ -0,0 +1,109 @@
+package server;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * The ServerManagement class implements the ServerManagementMBean of an InternetServer.
+ * The clients pool is read on every call, since the server creates it when it starts accepting clients.
+ */
+public class ServerManagement implements ServerManagementMBean {
+    private final InternetServer server;
+
+    /**
+     * Constructs the management surface of a server.
+     * @param server The managed server.
+     */
+    public ServerManagement(InternetServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public int getActiveCount() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    @Override
+    public int getQueuedCount() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getCompletedTaskCount();
+    }
+
+    @Override
+    public int getPoolSize() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getPoolSize();
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getCorePoolSize();
+    }
+
+    @Override
+    public void setCorePoolSize(int corePoolSize) {
+        resizePool(corePoolSize, Math.max(corePoolSize, getMaximumPoolSize()));
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        return pool == null ? 0 : pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        if (maximumPoolSize < getCorePoolSize()) {
+            throw new IllegalArgumentException("The maximum size " + maximumPoolSize + " is lower than the core size " + getCorePoolSize());
+        }
+        resizePool(getCorePoolSize(), maximumPoolSize);
+    }
+
+    @Override
+    public synchronized void resizePool(int corePoolSize, int maximumPoolSize) {
+        ThreadPoolExecutor pool = server.getClientsPool();
+        if (pool == null) {
+            throw new IllegalStateException("The server does not accept clients yet");
+        }
+        if (corePoolSize < 1 || maximumPoolSize < corePoolSize) {
+            throw new IllegalArgumentException("Expected 1 <= core size <= maximum size, got " + corePoolSize + " and " + maximumPoolSize);
+        }
+        // ThreadPoolExecutor rejects a core size above the maximum size, so grow the maximum first and shrink it last
+        if (maximumPoolSize >= pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(maximumPoolSize);
+            pool.setCorePoolSize(corePoolSize);
+        } else {
+            pool.setCorePoolSize(corePoolSize);
+            pool.setMaximumPoolSize(maximumPoolSize);
+        }
+        Log.info("Server: clients pool resized to core " + corePoolSize + ", maximum " + maximumPoolSize);
+    }
+
+    @Override
+    public int getSessionCount() {
+        return server.getSessions().size();
+    }
+
+    @Override
+    public String[] getSessions() {
+        return server.getSessions().values().stream().map(Session::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public boolean cancelSession(long sessionId) {
+        Session session = server.getSessions().get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        Log.info("Server: cancelling " + session);
+        session.cancel();
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package server;
+
+/**
+ * The ServerManagementMBean interface is the JMX management surface of an InternetServer.
+ * It exposes the occupancy of the clients pool, lets the pool be resized while the server runs,
+ * and lists the open sessions so that a runaway one can be cancelled.
+ */
+public interface ServerManagementMBean {
+
+    /**
+     * Returns the number of threads of the clients pool that serve a client.
+     * @return The number of active threads.
+     */
+    int getActiveCount();
+
+    /**
+     * Returns the number of accepted clients that wait for a thread of the clients pool.
+     * @return The number of queued clients.
+     */
+    int getQueuedCount();
+
+    /**
+     * Returns the number of clients the clients pool finished serving.
+     * @return The number of completed clients.
+     */
+    long getCompletedCount();
+
+    /**
+     * Returns the current number of threads of the clients pool.
+     * @return The number of threads.
+     */
+    int getPoolSize();
+
+    /**
+     * Returns the core size of the clients pool.
+     * @return The core size.
+     */
+    int getCorePoolSize();
+
+    /**
+     * Sets the core size of the clients pool.
+     * @param corePoolSize The new core size, between 1 and the maximum size.
+     */
+    void setCorePoolSize(int corePoolSize);
+
+    /**
+     * Returns the maximum size of the clients pool.
+     * @return The maximum size.
+     */
+    int getMaximumPoolSize();
+
+    /**
+     * Sets the maximum size of the clients pool.
+     * @param maximumPoolSize The new maximum size, not lower than the core size.
+     */
+    void setMaximumPoolSize(int maximumPoolSize);
+
+    /**
+     * Sets both sizes of the clients pool, in the order that keeps the core size not above the maximum size.
+     * @param corePoolSize    The new core size.
+     * @param maximumPoolSize The new maximum size.
+     */
+    void resizePool(int corePoolSize, int maximumPoolSize);
+
+    /**
+     * Returns the number of open sessions.
+     * @return The number of sessions.
+     */
+    int getSessionCount();
+
+    /**
+     * Describes the open sessions: their id, client, matrix size, connection time and current command.
+     * @return One line per session.
+     */
+    String[] getSessions();
+
+    /**
+     * Cancels an open session.
+     * @param sessionId The id of the session.
+     * @return true if the session was found and cancelled, false if there is no such session.
+     */
+    boolean cancelSession(long sessionId);
+}
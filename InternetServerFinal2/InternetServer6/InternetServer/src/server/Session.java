@@ -0,0 +1,186 @@
+package server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Session class describes one connected client while it is served: the command it is running,
+ * the size of its matrix and how long it has been connected. A session can be cancelled from another thread.
+ */
+public class Session {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    // The session served by the current thread of the clients pool
+    private static final ThreadLocal<Session> current = new ThreadLocal<>();
+
+    private final long id;
+    private final String remoteAddress;
+    private final Socket socket;
+    private final long connectedAt;
+    private volatile Thread handlingThread;
+    private volatile String currentCommand;
+    private volatile long commandStartedAt;
+    private volatile int rows;
+    private volatile int columns;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a session for an accepted connection.
+     * @param socket The connection to the client.
+     */
+    public Session(Socket socket) {
+        this.id = nextId.getAndIncrement();
+        this.socket = socket;
+        this.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+        this.connectedAt = System.nanoTime();
+    }
+
+    /**
+     * Returns the session served by the current thread.
+     * @return The session, or null if the current thread does not serve a session.
+     */
+    public static Session current() {
+        return current.get();
+    }
+
+    /**
+     * Marks the current thread as the thread that serves this session, until detach is called.
+     */
+    public void attach() {
+        handlingThread = Thread.currentThread();
+        current.set(this);
+    }
+
+    /**
+     * Removes the session from the current thread.
+     */
+    public void detach() {
+        current.remove();
+        handlingThread = null;
+    }
+
+    /**
+     * Records that the session started a command.
+     * @param command The name of the command.
+     */
+    public void commandStarted(String command) {
+        commandStartedAt = System.nanoTime();
+        currentCommand = command;
+    }
+
+    /**
+     * Records that the session finished its command and waits for the next one.
+     */
+    public void commandFinished() {
+        currentCommand = null;
+    }
+
+    /**
+     * Records the size of the matrix the session uploaded.
+     * @param rows    The number of rows.
+     * @param columns The number of columns.
+     */
+    public void setMatrixSize(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Cancels the session: the connection is closed and the thread that serves it is interrupted,
+     * so a blocked read, write or wait for a result fails and the session ends.
+     * A computation that already runs finishes on its own thread, but its result is not sent.
+     */
+    public void cancel() {
+        cancelled = true;
+        try {
+            socket.close();
+        } catch (IOException ioException) {
+            Log.debug(() -> "Session " + id + ": the connection was already closed");
+        }
+        Thread thread = handlingThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Returns whether the session was cancelled.
+     * @return true if cancel was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the id of the session, unique within the server process.
+     * @return The id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the address of the client.
+     * @return The remote address.
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Returns the host of the client, which identifies the client for the per-client limits.
+     * @return The IP address of the client.
+     */
+    public String getClientHost() {
+        return socket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Returns the command the session is running.
+     * @return The command, or null if the session waits for a command.
+     */
+    public String getCurrentCommand() {
+        return currentCommand;
+    }
+
+    /**
+     * Returns how long the current command has been running.
+     * @return The elapsed time in milliseconds, 0 if the session waits for a command.
+     */
+    public long getCommandMillis() {
+        return currentCommand == null ? 0 : (System.nanoTime() - commandStartedAt) / 1_000_000;
+    }
+
+    /**
+     * Returns how long the client has been connected.
+     * @return The elapsed time in milliseconds.
+     */
+    public long getConnectedMillis() {
+        return (System.nanoTime() - connectedAt) / 1_000_000;
+    }
+
+    /**
+     * Returns the number of rows of the matrix of the session.
+     * @return The number of rows, 0 if no matrix was uploaded.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the matrix of the session.
+     * @return The number of columns, 0 if no matrix was uploaded.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        String command = getCurrentCommand();
+        return "session " + id + " from " + remoteAddress + ", matrix " + rows + "x" + columns
+                + ", connected " + getConnectedMillis() + " ms, "
+                + (command == null ? "idle" : "running \"" + command + "\" for " + getCommandMillis() + " ms");
+    }
+}
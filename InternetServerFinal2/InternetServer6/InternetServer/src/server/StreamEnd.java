@@ -0,0 +1,76 @@
+package server;
+
+import java.io.Serializable;
+
+/**
+ * The StreamEnd class is the last object of a streamed response, written after its items.
+ * It tells how many items were sent and whether the stream ended because its request ran past its deadline or failed.
+ */
+public class StreamEnd implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String command;
+    private final long items;
+    private final RequestTimeout timeout;
+    private final String error;
+
+    /**
+     * Constructs the end of a stream.
+     * @param command The command of the stream.
+     * @param items   The number of items sent before this end.
+     * @param timeout The timeout that stopped the stream, or null.
+     * @param error   Why the stream failed, or null.
+     */
+    public StreamEnd(String command, long items, RequestTimeout timeout, String error) {
+        this.command = command;
+        this.items = items;
+        this.timeout = timeout;
+        this.error = error;
+    }
+
+    /**
+     * Returns the command of the stream.
+     * @return The command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the number of items sent before this end.
+     * @return The number of items.
+     */
+    public long getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the timeout that stopped the stream before its last item.
+     * @return The timeout, or null if the stream did not run past its deadline.
+     */
+    public RequestTimeout getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns why the stream failed.
+     * @return The reason, or null if the stream did not fail.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Checks if every item of the stream was sent.
+     * @return true if the stream neither timed out nor failed.
+     */
+    public boolean isComplete() {
+        return timeout == null && error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "End of \"" + command + "\" after " + items + " items"
+                + (timeout != null ? ": " + timeout : error != null ? ": " + error : "");
+    }
+}